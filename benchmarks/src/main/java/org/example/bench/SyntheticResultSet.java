@@ -0,0 +1,155 @@
+package org.example.bench;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Выборка в памяти с колонками запроса налоговой справки — заменяет БД в бенчмарках.
+ *
+ * Строки генерируются один раз детерминированно (фиксированный seed), затем по ним
+ * можно проходить сколько угодно раз через {@link #open()}. Поддерживаются только
+ * методы, которые вызывает маппинг DAO: next, close, getString/getInt/getDate/
+ * getTimestamp/getBigDecimal по имени колонки и wasNull.
+ */
+public final class SyntheticResultSet {
+
+    private static final String[] SURNAMES = {"Иванов", "Петрова", "Сидоров", "Кузнецова", "Смирнов", "Волкова"};
+    private static final String[] FIRSTNAMES = {"Иван", "Мария", "Пётр", "Анна", "Сергей", "Ольга"};
+    /** Разделы процедур (general_procedures_lev_2.id → название), на которые ссылается category_ids. */
+    public static final Map<Integer, String> CATEGORIES = Map.of(
+            1, "Терапия", 2, "Хирургия", 3, "Ортопедия", 4, "Ортодонтия", 5, "Гигиена");
+
+    private static final String[] MIDDLENAMES = {"Иванович", "Петровна", "Сергеевич", "Алексеевна", null};
+
+    private final String[] columns;
+    private final Object[][] rows;
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private SyntheticResultSet(String[] columns, Object[][] rows) {
+        this.columns = columns;
+        this.rows = rows;
+        for (int i = 0; i < columns.length; i++) {
+            index.put(columns[i], i);
+        }
+    }
+
+    /** Строки в формате запроса {@code findAccountsForTaxReport}. */
+    public static SyntheticResultSet taxReportRows(int count, long seed) {
+        String[] columns = {
+                "id", "patient_id", "practice_id", "date_created", "total", "rebate", "amount_paid",
+                "payment_timestamp", "account_date", "surname", "firstname", "middlename",
+                "dob", "inn", "doctors_list", "category_ids"
+        };
+        SplittableRandom random = new SplittableRandom(seed);
+        LocalDate yearStart = LocalDate.of(2024, 1, 1);
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            LocalDate created = yearStart.plusDays(random.nextInt(365));
+            BigDecimal total = BigDecimal.valueOf(random.nextInt(500, 150_000));
+            rows[i] = new Object[]{
+                    100_000 + i,
+                    1 + random.nextInt(count / 4 + 1),
+                    1 + random.nextInt(3),
+                    Date.valueOf(created),
+                    total,
+                    BigDecimal.ZERO,
+                    total,
+                    random.nextInt(10) == 0 ? null : Timestamp.valueOf(created.plusDays(random.nextInt(3)).atTime(12, 0)),
+                    Date.valueOf(created),
+                    SURNAMES[random.nextInt(SURNAMES.length)],
+                    FIRSTNAMES[random.nextInt(FIRSTNAMES.length)],
+                    MIDDLENAMES[random.nextInt(MIDDLENAMES.length)],
+                    Date.valueOf(LocalDate.of(1950 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(28))),
+                    random.nextInt(3) == 0 ? null : String.valueOf(500_000_000_000L + random.nextLong(99_999_999_999L)),
+                    doctorsList(random),
+                    categoryIds(random)
+            };
+        }
+        return new SyntheticResultSet(columns, rows);
+    }
+
+    /** Значения doctors_list в том виде, как их хранит Dental4Windows: ",34," / ",12,34," / "". */
+    private static String doctorsList(SplittableRandom random) {
+        int n = random.nextInt(10);
+        if (n == 0) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(",");
+        int doctors = n < 8 ? 1 : 2;
+        for (int d = 0; d < doctors; d++) {
+            sb.append(1 + random.nextInt(60)).append(',');
+        }
+        return sb.toString();
+    }
+
+    /** Значения LIST(DISTINCT level_2_id): "1" / "1,3" / null (счёт без позиций). */
+    private static String categoryIds(SplittableRandom random) {
+        int n = random.nextInt(8);
+        if (n == 0) {
+            return null;
+        }
+        int first = 1 + random.nextInt(CATEGORIES.size());
+        return n < 6 ? String.valueOf(first) : first + "," + (1 + random.nextInt(CATEGORIES.size()));
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    /** Значение колонки в строке — для бенчмарков, которым нужны исходные данные без ResultSet. */
+    public Object value(int row, String column) {
+        return rows[row][index.get(column)];
+    }
+
+    /** Открывает новый курсор, стоящий перед первой строкой. */
+    public ResultSet open() {
+        int[] cursor = {-1};
+        boolean[] lastNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(
+                ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> ++cursor[0] < rows.length;
+                    case "close" -> null;
+                    case "isClosed" -> false;
+                    case "wasNull" -> lastNull[0];
+                    case "getString", "getInt", "getLong", "getDate", "getTimestamp", "getBigDecimal", "getObject" -> {
+                        Object v = column(cursor[0], args[0]);
+                        lastNull[0] = v == null;
+                        yield convert(method.getName(), v);
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "SyntheticResultSet[" + rows.length + " rows]";
+                    default -> throw new SQLException("Не поддерживается в синтетической выборке: " + method.getName());
+                });
+    }
+
+    private Object column(int row, Object key) throws SQLException {
+        if (row < 0 || row >= rows.length) {
+            throw new SQLException("Курсор вне выборки");
+        }
+        Integer i = key instanceof Integer n ? Integer.valueOf(n - 1) : index.get((String) key);
+        if (i == null || i < 0 || i >= columns.length) {
+            throw new SQLException("Нет колонки " + key);
+        }
+        return rows[row][i];
+    }
+
+    private static Object convert(String getter, Object v) {
+        return switch (getter) {
+            case "getInt" -> v == null ? 0 : ((Number) v).intValue();
+            case "getLong" -> v == null ? 0L : ((Number) v).longValue();
+            case "getString" -> v == null ? null : v.toString();
+            default -> v;
+        };
+    }
+}
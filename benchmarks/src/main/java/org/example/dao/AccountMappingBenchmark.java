@@ -0,0 +1,62 @@
+package org.example.dao;
+
+import org.example.bench.SyntheticResultSet;
+import org.example.model.MedicalAccount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маппинг строк выборки в {@link MedicalAccount} так, как это делает
+ * {@link AccountDao#findAccountsForTaxReport}: {@code mapAccount}, включая разбор doctors_list
+ * и маски разделов процедур.
+ * Результат — время на всю выборку из {@code rows} строк.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountMappingBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private SyntheticResultSet data;
+    private AccountDao dao;
+    private CategoryDictionary categories;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = SyntheticResultSet.taxReportRows(rows, 42);
+        categories = CategoryDictionary.of(SyntheticResultSet.CATEGORIES);
+        // Справочник врачей не нужен: маппинг до подстановки ФИО врача
+        dao = new AccountDao(new StaffDirectory(Map::of, Duration.ofDays(1)), categories);
+    }
+
+    @Benchmark
+    public void mapAccounts(Blackhole bh) throws SQLException {
+        try (ResultSet rs = data.open()) {
+            while (rs.next()) {
+                bh.consume(dao.mapAccount(rs, categories));
+            }
+        }
+    }
+}
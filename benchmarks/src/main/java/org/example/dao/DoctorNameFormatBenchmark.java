@@ -0,0 +1,39 @@
+package org.example.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Форматирование ФИО врача "Фамилия И.О." — {@code String.format} из {@code getDoctorNameById}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoctorNameFormatBenchmark {
+
+    public String surname = "Кузнецова";
+    public String firstname = "Анна";
+    public String middlename = "Сергеевна";
+
+    @Benchmark
+    public String fullName() {
+        return AccountDao.formatDoctorName(surname, firstname, middlename);
+    }
+
+    @Benchmark
+    public String withoutMiddleName() {
+        return AccountDao.formatDoctorName(surname, firstname, null);
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.dao;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор поля doctors_list на типичных значениях: {@link DoctorsList} против прежнего
+ * варианта на {@code split(",")} + {@code matches("\\d+")}, оставленного здесь как база для сравнения.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoctorsListParsingBenchmark {
+
+    @Param({",34,", ",12,34,", " , 7 ,", ""})
+    public String doctorsList;
+
+    @Benchmark
+    public int[] parse() {
+        return DoctorsList.parse(doctorsList);
+    }
+
+    @Benchmark
+    public int first() {
+        return DoctorsList.first(doctorsList);
+    }
+
+    @Benchmark
+    public Integer splitAndMatchesBaseline() {
+        if (doctorsList != null && !doctorsList.trim().isEmpty()) {
+            for (String idStr : doctorsList.split(",")) {
+                idStr = idStr.trim();
+                if (idStr.matches("\\d+")) {
+                    try {
+                        return Integer.parseInt(idStr);
+                    } catch (NumberFormatException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Patient#getFullName()} — вызывается на каждую ячейку таблицы пациентов и при поиске.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatientFullNameBenchmark {
+
+    private Patient full;
+    private Patient surnameOnly;
+
+    @Setup
+    public void setUp() {
+        full = new Patient();
+        full.setSurname("Иванов");
+        full.setFirstname("Иван");
+        full.setMiddlename("Иванович");
+
+        surnameOnly = new Patient();
+        surnameOnly.setSurname("Петрова");
+    }
+
+    @Benchmark
+    public String fullName() {
+        return full.getFullName();
+    }
+
+    @Benchmark
+    public String surnameOnly() {
+        return surnameOnly.getFullName();
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.report;
+
+import org.example.bench.SyntheticResultSet;
+import org.example.dao.CategoryDictionary;
+import org.example.model.MedicalAccount;
+import org.example.model.TaxCertificate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Суммирование оплат филиала за год по пациентам: {@link CertificateAggregator} (счета идут
+ * по пациенту, копейки в {@code long}) против {@code HashMap<Integer, BigDecimal>}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CertificateAggregatorBenchmark {
+
+    @Param({"100000"})
+    public int rows;
+
+    private List<MedicalAccount> accounts;
+    private final CertificateAggregator aggregator = new CertificateAggregator(2024, 1, CategoryDictionary.ALL);
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        SyntheticResultSet data = SyntheticResultSet.taxReportRows(rows, 42);
+        accounts = new ArrayList<>(rows);
+        try (ResultSet rs = data.open()) {
+            while (rs.next()) {
+                MedicalAccount acc = new MedicalAccount();
+                acc.setPatientId(rs.getInt("patient_id"));
+                acc.setAmountPaid(rs.getBigDecimal("amount_paid"));
+                accounts.add(acc);
+            }
+        }
+        // Порядок курсора streamAccountsByPatient
+        accounts.sort(Comparator.comparingInt(MedicalAccount::getPatientId));
+    }
+
+    @Benchmark
+    public List<TaxCertificate> certificateAggregator() {
+        List<TaxCertificate> certificates = new ArrayList<>(rows / 4);
+        CertificateAggregator.groupByPatient(accounts.iterator(),
+                group -> certificates.add(aggregator.aggregate(group)));
+        return certificates;
+    }
+
+    @Benchmark
+    public Map<Integer, BigDecimal> bigDecimalMapBaseline() {
+        Map<Integer, BigDecimal> totals = new HashMap<>();
+        for (MedicalAccount acc : accounts) {
+            if (acc.getAmountPaid() != null) {
+                totals.merge(acc.getPatientId(), acc.getAmountPaid(), BigDecimal::add);
+            }
+        }
+        return totals;
+    }
+}
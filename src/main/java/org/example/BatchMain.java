@@ -0,0 +1,293 @@
+package org.example;
+
+import org.example.dao.AccountDao;
+import org.example.dao.DaoExecutor;
+import org.example.dao.DatabaseConnection;
+import org.example.dao.StaffDirectory;
+import org.example.dao.TaxDataRepository;
+import org.example.model.TaxReferenceSettings;
+import org.example.report.BatchProgress;
+import org.example.report.CertificateBatchJob;
+import org.example.report.CertificateRenderer;
+import org.example.report.FnsXmlExporter;
+import org.example.report.PdfCertificateRenderer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Пакетная выгрузка справок из командной строки — для ночных и годовых запусков по расписанию
+ * на сервере без графики. JavaFX здесь не загружается и не инициализируется.
+ *
+ * <pre>
+ *   java -cp target/dental-tax-reference.jar org.example.BatchMain --year 2024 --practice 2 --out /srv/spravki
+ *   java -jar target/dental-tax-reference.jar --batch --year 2024 --patient 1517
+ *   java -cp target/dental-tax-reference.jar org.example.BatchMain --year 2024 --format xml --max-file-mb 5
+ * </pre>
+ *
+ * Jar собирает {@code mvn package} со всеми зависимостями; драйвер SQL Anywhere в него не входит
+ * и подключается из {@code lib/sajdbc4.jar} рядом с jar (см. {@code Class-Path} в манифесте).
+ *
+ * Реквизиты клиники берутся из файла {@code --settings} в формате {@code .properties}: ключи
+ * совпадают с полями {@link TaxReferenceSettings} ({@code inn}, {@code kpp}, {@code taxOrgCode},
+ * {@code procedureCategories} — через запятую и т.д.).
+ *
+ * С {@code --format xml} справки пишутся не отдельными PDF, а XML-файлами для ФНС
+ * ({@link FnsXmlExporter}), разбитыми по {@code --max-file-mb}.
+ *
+ * Ход выгрузки печатается в stderr, итог — одной строкой в stdout. Коды завершения
+ * (по мотивам sysexits.h) — см. константы {@code EXIT_*}.
+ */
+public final class BatchMain {
+
+    /** Все справки записаны. */
+    public static final int EXIT_OK = 0;
+    /** Выгрузка прошла, но по части пациентов справки не получились. */
+    public static final int EXIT_PARTIAL = 1;
+    /** Неверные аргументы командной строки. */
+    public static final int EXIT_USAGE = 64;
+    /** База данных недоступна или запрос не выполнился. */
+    public static final int EXIT_UNAVAILABLE = 69;
+    /** Внутренняя ошибка. */
+    public static final int EXIT_SOFTWARE = 70;
+    /** Ошибка записи файлов. */
+    public static final int EXIT_IO = 74;
+    /** Не читается файл настроек. */
+    public static final int EXIT_CONFIG = 78;
+    /** Выгрузка прервана. */
+    public static final int EXIT_INTERRUPTED = 130;
+
+    private static final long PRINT_INTERVAL_MILLIS = 5_000;
+
+    private static final String USAGE = """
+            Использование: BatchMain [параметры]
+              --year ГОД           год справок (по умолчанию — прошлый)
+              --practice ID        филиал, 0 — все (по умолчанию 0)
+              --patient ID         только один пациент
+              --out ПАПКА          папка выгрузки (по умолчанию exportPath из настроек)
+              --settings ФАЙЛ      реквизиты клиники (.properties, ключи — поля TaxReferenceSettings)
+              --threads N          потоков формирования справок
+              --server-totals      суммы по пациентам считает сервер
+              --format pdf|xml     PDF по пациенту (по умолчанию) или XML для ФНС
+              --max-file-mb N      предельный размер XML-файла, МБ (по умолчанию 10)
+              --help               эта справка
+            Коды завершения: 0 — готово, 1 — есть ошибки по пациентам, 64 — неверные аргументы,
+            69 — БД недоступна, 74 — ошибка записи, 78 — ошибка настроек, 130 — прервано.
+            """;
+
+    /** Разобранные аргументы командной строки. */
+    static final class Arguments {
+        final CertificateBatchJob.Options options = new CertificateBatchJob.Options();
+        Path settingsFile;
+        boolean xml;
+        long maxFileBytes = 10L * 1024 * 1024;
+        boolean help;
+
+        static Arguments parse(String[] args) {
+            Arguments parsed = new Arguments();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--batch" -> { } // ключ запуска через Launcher
+                    case "--help", "-h" -> parsed.help = true;
+                    case "--server-totals" -> parsed.options.setServerAggregation(true);
+                    case "--year" -> parsed.options.setYear(intValue(arg, value(args, ++i, arg), 1900, 2999));
+                    case "--practice" -> parsed.options.setPracticeId(intValue(arg, value(args, ++i, arg), 0, Integer.MAX_VALUE));
+                    case "--patient" -> parsed.options.setPatientId(intValue(arg, value(args, ++i, arg), 1, Integer.MAX_VALUE));
+                    case "--threads" -> parsed.options.setRenderThreads(intValue(arg, value(args, ++i, arg), 1, 256));
+                    case "--out" -> parsed.options.setOutputDir(Path.of(value(args, ++i, arg)));
+                    case "--settings" -> parsed.settingsFile = Path.of(value(args, ++i, arg));
+                    case "--max-file-mb" -> parsed.maxFileBytes = intValue(arg, value(args, ++i, arg), 1, 2048) * 1024L * 1024;
+                    case "--format" -> {
+                        String format = value(args, ++i, arg);
+                        if (!format.equals("pdf") && !format.equals("xml")) {
+                            throw new IllegalArgumentException("Неизвестный формат: " + format);
+                        }
+                        parsed.xml = format.equals("xml");
+                    }
+                    default -> throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                }
+            }
+            return parsed;
+        }
+
+        private static String value(String[] args, int index, String name) {
+            if (index >= args.length || args[index].startsWith("--")) {
+                throw new IllegalArgumentException("Не задано значение " + name);
+            }
+            return args[index];
+        }
+
+        private static int intValue(String name, String value, int min, int max) {
+            try {
+                int n = Integer.parseInt(value.trim());
+                if (n < min || n > max) {
+                    throw new IllegalArgumentException("Недопустимое значение " + name + ": " + value);
+                }
+                return n;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Ожидалось число для " + name + ": " + value);
+            }
+        }
+    }
+
+    private BatchMain() {
+    }
+
+    public static void main(String[] args) {
+        int code = run(args, System.out, System.err, TaxDataRepository::shared, PdfCertificateRenderer::new);
+        // Пул соединений и фоновые потоки не должны задерживать выход
+        DaoExecutor.shutdownShared(Duration.ofSeconds(3));
+        DatabaseConnection.shutdown(Duration.ofSeconds(5));
+        System.exit(code);
+    }
+
+    /**
+     * Выполняет выгрузку по аргументам командной строки.
+     *
+     * @return код завершения процесса
+     */
+    static int run(String[] args, PrintStream out, PrintStream err,
+                   Supplier<TaxDataRepository> repository, Supplier<CertificateRenderer> renderer) {
+        Arguments arguments;
+        try {
+            arguments = Arguments.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.print(USAGE);
+            return EXIT_USAGE;
+        }
+        if (arguments.help) {
+            out.print(USAGE);
+            return EXIT_OK;
+        }
+
+        TaxReferenceSettings settings;
+        try {
+            settings = loadSettings(arguments.settingsFile);
+        } catch (IOException | IllegalArgumentException e) {
+            err.println("Ошибка файла настроек " + arguments.settingsFile + ": " + e.getMessage());
+            return EXIT_CONFIG;
+        }
+        CertificateBatchJob.Options options = arguments.options;
+        if (options.getOutputDir() == null) {
+            options.setOutputDir(Path.of(settings.getExportPath()));
+        }
+
+        try {
+            TaxDataRepository source = repository.get();
+            if (source instanceof AccountDao) {
+                // Справочник врачей загружаем сразу: иначе фамилии доберутся поштучными запросами
+                StaffDirectory.shared().refresh();
+            }
+
+            if (arguments.xml) {
+                return exportXml(source, settings, arguments, out);
+            }
+
+            AtomicLong lastPrinted = new AtomicLong();
+            CertificateBatchJob job = new CertificateBatchJob(source, settings, renderer.get(), options,
+                    progress -> printProgress(err, progress, lastPrinted));
+            BatchProgress result = job.run();
+
+            out.println("Записано " + result.written() + " справок за " + options.getYear() + " г. в "
+                    + options.getOutputDir() + ", ошибок " + result.failed()
+                    + " (" + result.elapsedMillis() / 1000 + " с)");
+            return result.failed() > 0 ? EXIT_PARTIAL : EXIT_OK;
+        } catch (SQLException e) {
+            err.println("Ошибка БД: " + e.getMessage());
+            return EXIT_UNAVAILABLE;
+        } catch (IOException e) {
+            err.println("Ошибка записи: " + e.getMessage());
+            return EXIT_IO;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Выгрузка прервана");
+            return EXIT_INTERRUPTED;
+        } catch (RuntimeException e) {
+            err.println("Ошибка выгрузки: " + e);
+            return EXIT_SOFTWARE;
+        }
+    }
+
+    private static int exportXml(TaxDataRepository source, TaxReferenceSettings settings,
+                                 Arguments arguments, PrintStream out) throws SQLException, IOException {
+        CertificateBatchJob.Options batch = arguments.options;
+        FnsXmlExporter.Options options = new FnsXmlExporter.Options();
+        options.setPracticeId(batch.getPracticeId());
+        options.setYear(batch.getYear());
+        options.setPatientId(batch.getPatientId());
+        options.setOutputDir(batch.getOutputDir());
+        options.setFetchSize(batch.getFetchSize());
+        options.setMaxFileBytes(arguments.maxFileBytes);
+
+        FnsXmlExporter.Result result = new FnsXmlExporter(source, settings, options).export();
+        out.println("Записано " + result.certificates() + " справок за " + options.getYear() + " г. в "
+                + result.files().size() + " XML-файл(ов) в " + options.getOutputDir()
+                + " (" + result.elapsedMillis() / 1000 + " с)");
+        return EXIT_OK;
+    }
+
+    private static void printProgress(PrintStream err, BatchProgress progress, AtomicLong lastPrinted) {
+        long now = System.currentTimeMillis();
+        long last = lastPrinted.get();
+        if (!progress.finished() && now - last >= PRINT_INTERVAL_MILLIS && lastPrinted.compareAndSet(last, now)) {
+            err.println(progress);
+        }
+    }
+
+    /** Настройки по умолчанию, поверх которых — значения из файла (если задан). */
+    static TaxReferenceSettings loadSettings(Path file) throws IOException {
+        TaxReferenceSettings settings = new TaxReferenceSettings();
+        if (file == null) {
+            return settings;
+        }
+        Properties p = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            p.load(reader);
+        }
+        settings.setClinicName(p.getProperty("clinicName", settings.getClinicName()));
+        settings.setInn(p.getProperty("inn", settings.getInn()));
+        settings.setKpp(p.getProperty("kpp", settings.getKpp()));
+        settings.setCreatorFullName(p.getProperty("creatorFullName", settings.getCreatorFullName()));
+        settings.setTaxOrgCode(p.getProperty("taxOrgCode", settings.getTaxOrgCode()));
+        settings.setDocumentName(p.getProperty("documentName", settings.getDocumentName()));
+        settings.setEcpSignerName(p.getProperty("ecpSignerName", settings.getEcpSignerName()));
+        settings.setExportPath(p.getProperty("exportPath", settings.getExportPath()));
+        settings.setCopiesCount(intProperty(p, "copiesCount", settings.getCopiesCount()));
+        settings.setOrgType(intProperty(p, "orgType", settings.getOrgType()));
+        settings.setSignerType(intProperty(p, "signerType", settings.getSignerType()));
+        settings.setProcedureType(intProperty(p, "procedureType", settings.getProcedureType()));
+        String categories = p.getProperty("procedureCategories");
+        if (categories != null) {
+            Set<String> set = new LinkedHashSet<>();
+            Arrays.stream(categories.split(",")).map(String::trim).filter(s -> !s.isEmpty()).forEach(set::add);
+            settings.setProcedureCategories(set);
+        }
+        return settings;
+    }
+
+    private static int intProperty(Properties p, String key, int defaultValue) {
+        String value = p.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ожидалось число для " + key + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example;
+
+import javafx.application.Application;
+
+/**
+ * Точка входа собранного jar ({@code Main-Class}).
+ *
+ * Сам класс не наследует {@link Application}: иначе запускатель Java проверяет и поднимает
+ * JavaFX ещё до {@code main()} (или падает с «JavaFX runtime components are missing»,
+ * если JavaFX лежит в classpath, а не в module path). Поэтому:
+ * • {@code --batch} передаёт управление {@link BatchMain} — JavaFX не загружается вовсе;
+ * • без него запускается окно {@link MainApp}.
+ */
+public final class Launcher {
+
+    private Launcher() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && "--batch".equals(args[0])) {
+            BatchMain.main(args);
+            return;
+        }
+        Application.launch(MainApp.class, args);
+    }
+}
@@ -2,12 +2,29 @@ package org.example;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import org.example.dao.DaoExecutor;
+import org.example.dao.DatabaseConnection;
+import org.example.dao.StaffDirectory;
+import org.example.metrics.MetricsRegistry;
+import org.example.search.PatientSearchService;
+import org.example.sync.AccountSyncService;
 import org.example.ui.TaxReferenceView;
 
+import java.time.Duration;
+
 public class MainApp extends Application {
     @Override
     public void start(Stage primaryStage) {
         try {
+            // Прогреваем справочник врачей в фоне, пока строится окно
+            StaffDirectory.shared().start();
+            // Индекс поиска пациентов тоже загружается в фоне
+            PatientSearchService.shared().start();
+            // Кэш оплаченных счетов: первая загрузка и догрузка изменений в фоне
+            AccountSyncService.shared().start();
+            // Сводка метрик в журнал раз в d4w.metrics.logSeconds
+            MetricsRegistry.shared().startLogging();
+
             TaxReferenceView view = new TaxReferenceView();
 
             primaryStage.setScene(view.getScene());
@@ -21,7 +38,20 @@ public class MainApp extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        // Сначала даём завершиться фоновым задачам, затем закрываем пул соединений
+        DaoExecutor.shutdownShared(Duration.ofSeconds(3));
+        AccountSyncService.shared().stop();
+        PatientSearchService.shared().stop();
+        StaffDirectory.shared().stop();
+        MetricsRegistry.shared().stopLogging();
+        // Закрываем пул соединений, дав фоновым запросам несколько секунд на завершение
+        DatabaseConnection.shutdown(Duration.ofSeconds(5));
+    }
+
+    /** Запуск окна из IDE и {@code mvn javafx:run}; jar запускается через {@link Launcher}. */
     public static void main(String[] args) {
         launch(args);
     }
-}
\ No newline at end of file
+}
@@ -1,47 +1,142 @@
 package org.example.dao;
 
 import org.example.model.MedicalAccount;
+import org.example.model.Money;
 import org.example.model.Patient;
+import org.example.metrics.QueryMetrics;
 import java.sql.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * DAO-класс для работы со счетами пациентов (patients_accounts)
  * и формирования данных для справки ФНС.
+ *
+ * Рабочая реализация {@link TaxDataRepository}: филиалы читает {@link PracticeDao},
+ * справочники категорий и сотрудников — {@link CategoryDictionary} и {@link StaffDirectory}.
  */
-public class AccountDao {
+public class AccountDao implements TaxDataRepository {
+
+    private static final String UNKNOWN_DOCTOR = "Неизвестный врач";
+    private static final int STAFF_BATCH_SIZE = 500;
+    private static final int DOCTOR_CHUNK_SIZE = 1_000; // счетов курсора на один запрос неизвестных врачей
+    private static final String ORDER_BY_DATE = "pa.date_created DESC";
+    private static final String ORDER_BY_PATIENT = "pa.send_acc_to_pat_id, pa.date_created";
+
+    // Метрики запросов: время по фазам, строки, ошибки (см. QueryMetrics)
+    private static final QueryMetrics FIND_ACCOUNTS = QueryMetrics.of("findAccountsForTaxReport");
+    private static final QueryMetrics STREAM_ACCOUNTS = QueryMetrics.of("streamAccountsForTaxReport");
+    private static final QueryMetrics PATIENT_TOTALS = QueryMetrics.of("findPatientTotalsForTaxReport");
+    private static final QueryMetrics CHANGE_STAMP = QueryMetrics.of("findChangeStamp");
+    private static final QueryMetrics ACCOUNT_CHANGES = QueryMetrics.of("forEachAccountChange");
+    private static final QueryMetrics PATIENTS_BY_QUERY = QueryMetrics.of("findPatientsByQuery");
+    private static final QueryMetrics PATIENT_ACTIVITY = QueryMetrics.of("forEachPatientActivity");
+    private static final QueryMetrics DOCTOR_NAMES = QueryMetrics.of("loadDoctorNames");
+
+    /** Колонки и соединения выборки счетов; условия WHERE добавляются к нему. */
+    private static final String ACCOUNTS_SELECT = """
+        SELECT
+            pa.id,
+            pa.send_acc_to_pat_id AS patient_id,
+            pa.practice_id,
+            pa.number,
+            pa.date_created,
+            pa.total,
+            COALESCE(pa.rebate, 0) AS rebate,
+            pa.amount_paid,
+            pa.doctors_list,                      --добавим врача
+            pa.ts_4_update AS payment_timestamp,  -- добавим дату платежа
+            p.surname,
+            p.firstname,
+            p.middlename,
+            p.dob,
+            p.itn AS inn,
+            (
+                -- Разделы (general_procedures_lev_2.id) позиций счёта. Подзапрос связан со счётом,
+                -- поэтому читает позиции только отобранных счетов, а не всю таблицу
+                SELECT LIST(DISTINCT gp.level_2_id)
+                FROM dba.patients_accounts_items pai
+                JOIN dba.general_procedures gp ON gp.procedure_id = pai.procedure_id
+                WHERE pai.account_id = pa.id
+            ) AS category_ids                     -- разделы процедур счёта: "3,17"
+        FROM dba.patients_accounts pa
+        JOIN dba.patients p ON pa.send_acc_to_pat_id = p.patient_id
+        """;
+
+    private final StaffDirectory staffDirectory;
+    private final CategoryDictionary categoryDictionary; // null — общий словарь
+    private final PracticeDao practiceDao = new PracticeDao();
+
+    public AccountDao() {
+        this(StaffDirectory.shared());
+    }
+
+    public AccountDao(StaffDirectory staffDirectory) {
+        this(staffDirectory, null);
+    }
+
+    /**
+     * @param categoryDictionary словарь категорий процедур; null — общий
+     *                           ({@link CategoryDictionary#shared()}, загружается при первом запросе)
+     */
+    public AccountDao(StaffDirectory staffDirectory, CategoryDictionary categoryDictionary) {
+        this.staffDirectory = staffDirectory;
+        this.categoryDictionary = categoryDictionary;
+    }
+
+    /** Словарь категорий, по которому счета получают маску категорий. */
+    @Override
+    public CategoryDictionary categoryDictionary() throws SQLException {
+        return categoryDictionary != null ? categoryDictionary : CategoryDictionary.shared();
+    }
+
+    @Override
+    public CategoryDictionary loadCategories() throws SQLException {
+        return CategoryDictionary.loadFromDatabase();
+    }
+
+    @Override
+    public Map<String, Integer> loadAllPractices(QueryHandle handle) throws SQLException {
+        return practiceDao.loadAllPractices(handle);
+    }
+
+    @Override
+    public Map<Integer, String> loadStaff() throws SQLException {
+        return StaffDirectory.loadFromDatabase();
+    }
 
     /**
-     * Загружает список всех доступных категорий процедур из БД.
+     * Список всех доступных категорий процедур (из снимка {@link ReferenceDataService}).
      * Исключает служебные категории: "Финансы", "Устаревшие", "Сертификаты".
      *
      * @return список названий категорий (например, "Терапия", "Ортодонтия")
      * @throws SQLException если произошла ошибка при работе с БД
      */
     public List<String> loadAllCategories() throws SQLException {
-        String sql = """
-            SELECT DISTINCT description
-            FROM dba.general_procedures_lev_2
-            WHERE level_1_id = 0
-              AND description NOT IN ('Финансы', 'Устаревшие', 'Сертификаты')
-            ORDER BY description
-            """;
-
-        List<String> categories = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                categories.add(rs.getString("description"));
-            }
-        }
-        return categories;
+        return new ArrayList<>(ReferenceDataService.shared().categoryNames());
     }
     // Метод для фио врача в фоомате Иванов И.И.
     public String getDoctorNameById(int doctorId) throws SQLException {
+        String cached = staffDirectory.findName(doctorId);
+        if (cached != null) {
+            return cached;
+        }
+
         String sql = """
         SELECT surname, firstname, middlename
         FROM dba.staff
@@ -54,18 +149,83 @@ public class AccountDao {
             stmt.setInt(1, doctorId);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    String surname = rs.getString("surname");
-                    String first = rs.getString("firstname");
-                    String middle = rs.getString("middlename");
-                    return String.format("%s %s.%s.",
-                            surname,
-                            first != null && !first.isEmpty() ? first.substring(0, 1) : "",
-                            middle != null && !middle.isEmpty() ? middle.substring(0, 1) : ""
-                    ).trim();
+                    return formatDoctorName(
+                            rs.getString("surname"),
+                            rs.getString("firstname"),
+                            rs.getString("middlename"));
+                }
+            }
+        }
+        return UNKNOWN_DOCTOR; // fallback
+    }
+
+    /**
+     * Загружает ФИО сразу нескольких врачей одним запросом (по {@code IN}-списку).
+     * Для больших наборов id запрос разбивается на пачки по {@value #STAFF_BATCH_SIZE}.
+     *
+     * @param doctorIds member_id сотрудников
+     * @return member_id → "Иванов И.И." (только найденные активные сотрудники)
+     */
+    public Map<Integer, String> getDoctorNamesByIds(Collection<Integer> doctorIds) throws SQLException {
+        if (doctorIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getDoctorNamesByIds(conn, doctorIds, null);
+        }
+    }
+
+    private Map<Integer, String> getDoctorNamesByIds(Connection conn, Collection<Integer> doctorIds, QueryHandle handle)
+            throws SQLException {
+        Map<Integer, String> names = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(doctorIds));
+
+        for (int from = 0; from < ids.size(); from += STAFF_BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + STAFF_BATCH_SIZE, ids.size()));
+            String sql = """
+                SELECT member_id, surname, firstname, middlename
+                FROM dba.staff
+                WHERE is_active = 'Y'
+                  AND member_id IN (%s)
+                """.formatted(String.join(",", Collections.nCopies(batch.size(), "?")));
+
+            QueryMetrics.Sample sample = DOCTOR_NAMES.start(batch);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    stmt.setInt(i + 1, batch.get(i));
+                }
+                QueryHandle.attach(handle, stmt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    sample.executed();
+                    while (rs.next()) {
+                        long m = sample.mapStart();
+                        names.put(rs.getInt("member_id"), formatDoctorName(
+                                rs.getString("surname"),
+                                rs.getString("firstname"),
+                                rs.getString("middlename")));
+                        sample.mapped(m);
+                    }
+                    sample.fetched();
+                } finally {
+                    QueryHandle.detach(handle);
                 }
+            } catch (SQLException | RuntimeException e) {
+                sample.failed();
+                throw e;
+            } finally {
+                sample.stop();
             }
         }
-        return "Неизвестный врач"; // fallback
+        return names;
+    }
+
+    /** Форматирует ФИО сотрудника как "Иванов И.И.". */
+    static String formatDoctorName(String surname, String first, String middle) {
+        return String.format("%s %s.%s.",
+                surname,
+                first != null && !first.isEmpty() ? first.substring(0, 1) : "",
+                middle != null && !middle.isEmpty() ? middle.substring(0, 1) : ""
+        ).trim();
     }
 
     /**
@@ -74,8 +234,13 @@ public class AccountDao {
      * Особенности:
      * • Номер счёта берётся из {patients_accounts.id} (поле {number} не используется — всегда NULL в вашей БД).
      * • Дата оплаты — {ts_4_update} (момент последнего обновления счёта, обычно совпадает с оплатой).
-     * • Врач определяется по {doctors_list}, например ',34,' → staff.member_id = 34.
+     * • Врачи определяются по {doctors_list}, например ',34,57,' → staff.member_id 34 и 57;
+     *   в счёт попадают все врачи ({@link MedicalAccount#getDoctorIds()}), ФИО — через запятую.
      * • Фильтрация по пациенту через {send_acc_to_pat_id}.
+     * • ФИО врачей берутся из {@link StaffDirectory}; отсутствующие в кэше подгружаются
+     *   одним пакетным запросом к dba.staff, поэтому число запросов не зависит от количества счетов.
+     * • Разделы процедур счёта приходят тем же запросом (LIST по позициям счёта) и хранятся
+     *   как маска {@link MedicalAccount#getCategoryMask()} по {@link CategoryDictionary}.
 
      * @param practiceId ID филиала (0 = все филиалы)
      * @param startDate  начало периода (включительно)
@@ -83,41 +248,530 @@ public class AccountDao {
      * @param patientId  ID пациента (может быть null — тогда без фильтра)
      * @return список счетов
      */
+    @Override
     public List<MedicalAccount> findAccountsForTaxReport(
             int practiceId,
             LocalDate startDate,
             LocalDate endDate,
             Integer patientId
     ) throws SQLException {
+        return findAccountsForTaxReport(practiceId, startDate, endDate, patientId, null);
+    }
+
+    /**
+     * То же, что {@link #findAccountsForTaxReport(int, LocalDate, LocalDate, Integer)},
+     * но запросы выполняются под управлением {@code handle}: с его таймаутом
+     * и с возможностью отмены из другого потока.
+     *
+     * @param handle ручка отмены/таймаута (может быть null)
+     */
+    @Override
+    public List<MedicalAccount> findAccountsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            QueryHandle handle
+    ) throws SQLException {
+
+        TaxReportQuery query = buildTaxReportQuery(practiceId, startDate, endDate, patientId, ORDER_BY_DATE);
+        CategoryDictionary categories = categoryDictionary();
+
+        QueryMetrics.Sample sample = FIND_ACCOUNTS.start(query.params());
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.sql())) {
 
+            query.bind(stmt);
+            QueryHandle.attach(handle, stmt);
 
+            List<MedicalAccount> accounts = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    // ФИО врачей подставим после выборки
+                    long m = sample.mapStart();
+                    accounts.add(mapAccount(rs, categories));
+                    sample.mapped(m);
+                }
+                sample.fetched();
+            } finally {
+                QueryHandle.detach(handle);
+            }
+
+            resolveDoctorNames(conn, accounts, new HashMap<>(), handle);
+            return accounts;
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Потоковый вариант {@link #findAccountsForTaxReport}: счета передаются в {@code consumer}
+     * по одному, по мере чтения курсора, и не накапливаются в памяти.
+     * Подходит для выгрузок по всему филиалу за год ({@code patientId == null}).
+     *
+     * Курсор открывается как forward-only / read-only, строки подтягиваются с сервера
+     * пачками по {@code fetchSize}. ФИО врачей берутся из {@link StaffDirectory};
+     * отсутствующие в нём догружаются по одному разу на врача за всю выгрузку.
+     *
+     * @param fetchSize сколько строк запрашивать с сервера за раз (0 — по умолчанию драйвера)
+     * @param consumer  обработчик счетов; вызывается в текущем потоке
+     */
+    public void forEachAccountForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            int fetchSize,
+            Consumer<MedicalAccount> consumer
+    ) throws SQLException {
+        try (Stream<MedicalAccount> accounts = streamAccountsForTaxReport(
+                practiceId, startDate, endDate, patientId, fetchSize)) {
+            accounts.forEach(consumer);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Потоковый вариант {@link #findAccountsForTaxReport} в виде {@link Stream}.
+     *
+     * Поток держит соединение и курсор до закрытия, поэтому его обязательно
+     * закрывать (try-with-resources). Ошибки чтения курсора пробрасываются
+     * как {@link UncheckedSQLException}.
+     *
+     * @param fetchSize сколько строк запрашивать с сервера за раз (0 — по умолчанию драйвера)
+     */
+    public Stream<MedicalAccount> streamAccountsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            int fetchSize
+    ) throws SQLException {
+        return streamAccounts(
+                buildTaxReportQuery(practiceId, startDate, endDate, patientId, ORDER_BY_DATE), fetchSize);
+    }
+
+    /**
+     * То же, что {@link #streamAccountsForTaxReport}, но счета упорядочены по пациенту:
+     * все счета одного пациента идут подряд. Используется пакетной выгрузкой справок,
+     * чтобы суммировать по пациенту, не держа в памяти весь год.
+     */
+    @Override
+    public Stream<MedicalAccount> streamAccountsByPatient(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            int fetchSize
+    ) throws SQLException {
+        return streamAccounts(
+                buildTaxReportQuery(practiceId, startDate, endDate, patientId, ORDER_BY_PATIENT), fetchSize);
+    }
+
+    /**
+     * Итоги за период по пациентам, посчитанные на сервере: {@code SUM(amount_paid)},
+     * {@code SUM(rebate)} и число счетов с {@code GROUP BY} пациента.
+     * Условия отбора счетов — те же, что у {@link #findAccountsForTaxReport}, но по сети
+     * передаётся одна строка на пациента, а не на счёт.
+     *
+     * @return итоги, упорядоченные по id пациента
+     */
+    @Override
+    public List<PatientTotals> findPatientTotalsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId
+    ) throws SQLException {
+        return findPatientTotalsForTaxReport(practiceId, startDate, endDate, patientId, null);
+    }
+
+    /** То же, что {@link #findPatientTotalsForTaxReport(int, LocalDate, LocalDate, Integer)}, с возможностью отмены запроса. */
+    @Override
+    public List<PatientTotals> findPatientTotalsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            QueryHandle handle
+    ) throws SQLException {
         String sql = """
         SELECT
-            pa.id,
-            pa.number,
-            pa.date_created,
-            pa.total,
-            COALESCE(pa.rebate, 0) AS rebate,
-            pa.amount_paid,
-            pa.doctors_list,                      --добавим врача
-            pa.ts_4_update AS payment_timestamp,  -- добавим дату платежа
+            pa.send_acc_to_pat_id AS patient_id,
             p.surname,
             p.firstname,
             p.middlename,
             p.dob,
             p.itn AS inn,
-            'Без категории' AS category
+            SUM(pa.amount_paid) AS amount_paid,
+            SUM(COALESCE(pa.rebate, 0)) AS rebate,
+            COUNT(*) AS account_count
         FROM dba.patients_accounts pa
         JOIN dba.patients p ON pa.send_acc_to_pat_id = p.patient_id
         WHERE pa.amount_paid > 0
           AND pa.date_created >= ?
           AND pa.date_created <= ?
         """;
+        List<Object> params = new ArrayList<>();
+        sql += taxReportFilter(practiceId, startDate, endDate, patientId, params);
+        sql += """
+
+        GROUP BY pa.send_acc_to_pat_id, p.surname, p.firstname, p.middlename, p.dob, p.itn
+        ORDER BY pa.send_acc_to_pat_id
+        """;
+        TaxReportQuery query = new TaxReportQuery(sql, params);
+
+        QueryMetrics.Sample sample = PATIENT_TOTALS.start(query.params());
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.sql())) {
+
+            query.bind(stmt);
+            QueryHandle.attach(handle, stmt);
+
+            List<PatientTotals> totals = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    long m = sample.mapStart();
+                    totals.add(new PatientTotals(
+                            rs.getInt("patient_id"),
+                            rs.getString("surname"),
+                            rs.getString("firstname"),
+                            rs.getString("middlename"),
+                            rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null,
+                            rs.getString("inn"),
+                            Money.toKopecks(rs.getBigDecimal("amount_paid")),
+                            Money.toKopecks(rs.getBigDecimal("rebate")),
+                            rs.getInt("account_count")));
+                    sample.mapped(m);
+                }
+                sample.fetched();
+            } finally {
+                QueryHandle.detach(handle);
+            }
+            return totals;
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Отметка изменений счетов периода: максимальный {@code ts_4_update} и число строк.
+     *
+     * Условия — те же, что у {@link #findAccountsForTaxReport}, но без {@code amount_paid > 0}:
+     * отмена оплаты тоже меняет отметку. Удаление счёта уменьшает число строк.
+     * Запрос читает одну таблицу без соединений и намного дешевле самой выборки,
+     * поэтому по нему проверяют, не устарел ли закэшированный результат.
+     */
+    @Override
+    public ChangeStamp findChangeStamp(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            QueryHandle handle
+    ) throws SQLException {
+        String sql = """
+        SELECT MAX(pa.ts_4_update) AS max_update, COUNT(*) AS row_count
+        FROM dba.patients_accounts pa
+        WHERE pa.date_created >= ?
+          AND pa.date_created <= ?
+        """;
+        List<Object> params = new ArrayList<>();
+        sql += taxReportFilter(practiceId, startDate, endDate, patientId, params);
+        TaxReportQuery query = new TaxReportQuery(sql, params);
+
+        QueryMetrics.Sample sample = CHANGE_STAMP.start(query.params());
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.sql())) {
+
+            query.bind(stmt);
+            QueryHandle.attach(handle, stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                sample.executed();
+                rs.next();
+                Timestamp maxUpdate = rs.getTimestamp("max_update");
+                ChangeStamp stamp = new ChangeStamp(maxUpdate != null ? maxUpdate.toLocalDateTime() : null, rs.getInt("row_count"));
+                sample.fetched();
+                return stamp;
+            } finally {
+                QueryHandle.detach(handle);
+            }
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Счета, изменённые начиная с {@code changedSince} ({@code patients_accounts.ts_4_update}),
+     * для инкрементальной синхронизации локального кэша.
+     *
+     * В отличие от {@link #findAccountsForTaxReport}, отдаются и счета с нулевой оплатой:
+     * кэш должен узнать, что счёт перестал быть оплаченным. Строки читаются потоково,
+     * ФИО врачей подставляются как в {@link #streamAccountsForTaxReport}.
+     *
+     * @param createdFrom  нижняя граница даты счёта (окно кэша)
+     * @param changedSince нижняя граница ts_4_update включительно (null — все счета окна)
+     */
+    @Override
+    public void forEachAccountChange(
+            LocalDate createdFrom,
+            LocalDateTime changedSince,
+            Consumer<AccountChange> consumer
+    ) throws SQLException {
+        String sql = ACCOUNTS_SELECT + """
+        WHERE pa.date_created >= ?
+        """;
+        List<Object> params = new ArrayList<>();
+        params.add(Date.valueOf(createdFrom));
+        if (changedSince != null) {
+            sql += " AND pa.ts_4_update >= ?";
+            params.add(Timestamp.valueOf(changedSince));
+        }
+        TaxReportQuery query = new TaxReportQuery(sql, params);
+        CategoryDictionary categories = categoryDictionary();
+
+        QueryMetrics.Sample sample = ACCOUNT_CHANGES.start(query.params());
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(query.sql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(1_000);
+            query.bind(stmt);
+            Map<Integer, String> unknownDoctors = new HashMap<>();
+            List<MedicalAccount> chunk = new ArrayList<>(DOCTOR_CHUNK_SIZE);
+            List<LocalDateTime> chunkUpdatedAt = new ArrayList<>(DOCTOR_CHUNK_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    long m = sample.mapStart();
+                    chunk.add(mapAccount(rs, categories));
+                    Timestamp updated = rs.getTimestamp("payment_timestamp");
+                    chunkUpdatedAt.add(updated != null ? updated.toLocalDateTime() : null);
+                    sample.mapped(m);
+                    if (chunk.size() == DOCTOR_CHUNK_SIZE) {
+                        acceptChanges(conn, chunk, chunkUpdatedAt, unknownDoctors, consumer);
+                    }
+                }
+                acceptChanges(conn, chunk, chunkUpdatedAt, unknownDoctors, consumer);
+                sample.fetched();
+            }
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Отдаёт потребителю пачку изменённых счетов, подставив ФИО врачей: неизвестных
+     * врачей пачки догружает одним запросом, а не по запросу на врача. Пачка очищается.
+     */
+    private void acceptChanges(Connection conn, List<MedicalAccount> chunk, List<LocalDateTime> updatedAt,
+                               Map<Integer, String> unknownDoctors, Consumer<AccountChange> consumer)
+            throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        resolveDoctorNames(conn, chunk, unknownDoctors, null);
+        for (int i = 0; i < chunk.size(); i++) {
+            consumer.accept(new AccountChange(chunk.get(i), updatedAt.get(i)));
+        }
+        chunk.clear();
+        updatedAt.clear();
+    }
+
+    private Stream<MedicalAccount> streamAccounts(TaxReportQuery query, int fetchSize) throws SQLException {
+
+        CategoryDictionary categories = categoryDictionary();
+        QueryMetrics.Sample sample = STREAM_ACCOUNTS.start(query.params());
+        Connection conn;
+        PreparedStatement stmt = null;
+        ResultSet rs;
+        try {
+            conn = DatabaseConnection.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            sample.stop();
+            throw e;
+        }
+        try {
+            stmt = conn.prepareStatement(query.sql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            query.bind(stmt);
+            rs = stmt.executeQuery();
+            sample.executed();
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            sample.stop();
+            closeQuietly(stmt);
+            closeQuietly(conn);
+            throw e;
+        }
+
+        final PreparedStatement openStmt = stmt;
+        Map<Integer, String> unknownDoctors = new HashMap<>(); // врачи, которых нет в StaffDirectory
+        int chunkSize = fetchSize > 0 ? fetchSize : DOCTOR_CHUNK_SIZE;
+
+        // Счета читаются пачками по chunkSize строк: неизвестных врачей пачки догружаем
+        // одним запросом, а не по запросу на каждого врача посреди курсора
+        Spliterator<MedicalAccount> cursor = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final ArrayDeque<MedicalAccount> ready = new ArrayDeque<>();
+            private final List<MedicalAccount> chunk = new ArrayList<>();
+
+            @Override
+            public boolean tryAdvance(Consumer<? super MedicalAccount> action) {
+                try {
+                    if (ready.isEmpty() && !readChunk()) {
+                        return false;
+                    }
+                    action.accept(ready.poll());
+                    return true;
+                } catch (SQLException e) {
+                    sample.failed();
+                    throw new UncheckedSQLException(e);
+                }
+            }
+
+            private boolean readChunk() throws SQLException {
+                chunk.clear();
+                while (chunk.size() < chunkSize && rs.next()) {
+                    long m = sample.mapStart();
+                    chunk.add(mapAccount(rs, categories));
+                    sample.mapped(m);
+                }
+                if (chunk.isEmpty()) {
+                    return false;
+                }
+                resolveDoctorNames(conn, chunk, unknownDoctors, null);
+                ready.addAll(chunk);
+                return true;
+            }
+        };
+
+        // fetch — от выполнения до закрытия потока, вместе с обработкой у потребителя
+        return StreamSupport.stream(cursor, false).onClose(() -> {
+            sample.fetched();
+            sample.stop();
+            closeQuietly(rs);
+            closeQuietly(openStmt);
+            closeQuietly(conn);
+        });
+    }
+
+    /**
+     * Подставляет ФИО врачей в счета. ФИО берутся из кэша справочника сотрудников
+     * и {@code unknownDoctors}; остальных врачей догружает в {@code unknownDoctors}
+     * одним пакетным запросом к dba.staff.
+     */
+    private void resolveDoctorNames(Connection conn, List<MedicalAccount> accounts,
+                                    Map<Integer, String> unknownDoctors, QueryHandle handle) throws SQLException {
+        Set<Integer> missingIds = new HashSet<>();
+        for (MedicalAccount acc : accounts) {
+            for (int doctorId : acc.getDoctorIds()) {
+                if (staffDirectory.findName(doctorId) == null && !unknownDoctors.containsKey(doctorId)) {
+                    missingIds.add(doctorId);
+                }
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            Map<Integer, String> loaded = getDoctorNamesByIds(conn, missingIds, handle);
+            for (Integer doctorId : missingIds) {
+                unknownDoctors.put(doctorId, loaded.getOrDefault(doctorId, UNKNOWN_DOCTOR));
+            }
+        }
+        for (MedicalAccount acc : accounts) {
+            acc.setDoctorName(joinDoctorNames(acc.getDoctorIds(), unknownDoctors));
+        }
+    }
+
+    /**
+     * ФИО всех врачей счёта через запятую: "Иванов И.И., Петров П.П.".
+     * Имя ищется в {@link StaffDirectory}, затем в {@code loadedNames}.
+     */
+    private String joinDoctorNames(int[] doctorIds, Map<Integer, String> loadedNames) {
+        if (doctorIds.length == 0) {
+            return "";
+        }
+        if (doctorIds.length == 1) {
+            return doctorName(doctorIds[0], loadedNames);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int doctorId : doctorIds) {
+            if (!sb.isEmpty()) {
+                sb.append(", ");
+            }
+            sb.append(doctorName(doctorId, loadedNames));
+        }
+        return sb.toString();
+    }
+
+    private String doctorName(int doctorId, Map<Integer, String> loadedNames) {
+        String name = staffDirectory.findName(doctorId);
+        return name != null ? name : loadedNames.getOrDefault(doctorId, UNKNOWN_DOCTOR);
+    }
+
+    /** SQL выборки счетов для справки и значения его параметров. */
+    private record TaxReportQuery(String sql, List<Object> params) {
+        void bind(PreparedStatement stmt) throws SQLException {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+        }
+    }
+
+    private TaxReportQuery buildTaxReportQuery(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            String orderBy
+    ) {
+        String sql = ACCOUNTS_SELECT + """
+        WHERE pa.amount_paid > 0
+          AND pa.date_created >= ?
+          AND pa.date_created <= ?
+        """;
 
         List<Object> params = new ArrayList<>();
+        sql += taxReportFilter(practiceId, startDate, endDate, patientId, params);
+
+        // Иначе найденные платежи без категории
+        sql += " ORDER BY " + orderBy;
+
+        return new TaxReportQuery(sql, params);
+    }
+
+    /**
+     * Параметры периода и дополнительные условия WHERE выборки счетов для справки.
+     * Сам SQL должен заканчиваться условиями по датам с двумя "?".
+     */
+    private static String taxReportFilter(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            List<Object> params
+    ) {
         params.add(Date.valueOf(startDate));
         params.add(Date.valueOf(endDate));
 
+        String sql = "";
         // Фильтр по филиалу — только если practiceId > 0
         if (practiceId > 0) {
             sql += " AND pa.practice_id = ?";
@@ -129,78 +783,79 @@ public class AccountDao {
             sql += " AND pa.send_acc_to_pat_id = ?";
             params.add(patientId);
         }
+        return sql;
+    }
 
-        // Иначе найденные платежи без категории
-        sql += " ORDER BY pa.date_created DESC";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+    /** Заполняет счёт из текущей строки выборки (id врачей без ФИО). Пакетный доступ — для бенчмарков. */
+    MedicalAccount mapAccount(ResultSet rs, CategoryDictionary categories) throws SQLException {
+        MedicalAccount acc = new MedicalAccount();
+        acc.setId(rs.getInt("id"));
+        acc.setPatientId(rs.getInt("patient_id"));
+        acc.setPracticeId(rs.getInt("practice_id"));
+        // В Dental4Windows номер счёта отображается как id,
+        // так как поле `number` не заполняется (всегда NULL).
+        // Используем id как номер счёта — это соответствует поведению оригинальной утилиты.
+        acc.setNumber(String.valueOf(rs.getInt("id")));
+        acc.setDateCreated(rs.getDate("date_created").toLocalDate());
+        acc.setTotal(rs.getBigDecimal("total"));
+        acc.setRebate(rs.getBigDecimal("rebate"));
+        acc.setAmountPaid(rs.getBigDecimal("amount_paid"));
 
-            for (int i = 0; i < params.size(); i++) {
-                stmt.setObject(i + 1, params.get(i));
-            }
+        // Получаем timestamp → конвертируем в LocalDate
+        Timestamp tsUpdate = rs.getTimestamp("payment_timestamp");
+        LocalDate paymentDate = tsUpdate != null
+                ? tsUpdate.toLocalDateTime().toLocalDate()
+                : rs.getDate("account_date") != null
+                ? rs.getDate("account_date").toLocalDate()
+                : null;
 
-            List<MedicalAccount> accounts = new ArrayList<>();
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    MedicalAccount acc = new MedicalAccount();
-                    acc.setId(rs.getInt("id"));
-                    // В Dental4Windows номер счёта отображается как id,
-                    // так как поле `number` не заполняется (всегда NULL).
-                    // Используем id как номер счёта — это соответствует поведению оригинальной утилиты.
-                    acc.setNumber(String.valueOf(rs.getInt("id")));
-                    acc.setDateCreated(rs.getDate("date_created").toLocalDate());
-                    acc.setTotal(rs.getBigDecimal("total"));
-                    acc.setRebate(rs.getBigDecimal("rebate"));
-                    acc.setAmountPaid(rs.getBigDecimal("amount_paid"));
-
-                    // Разбираем doctors_list и получаем ФИО
-                    String doctorsList = rs.getString("doctors_list");
-                    String doctorName = "";
-                    if (doctorsList != null && !doctorsList.trim().isEmpty()) {
-                        // Разбираем ",34," → "34"
-                        String[] ids = doctorsList.split(",");
-                        for (String idStr : ids) {
-                            idStr = idStr.trim();
-                            if (idStr.matches("\\d+")) {
-                                try {
-                                    int id = Integer.parseInt(idStr);
-                                    doctorName = getDoctorNameById(id); // Берём первого (обычно 1 врач)
-                                    break;
-                                } catch (Exception e) {
-                                    // ignore
-                                }
-                            }
-                        }
-                    }
+        acc.setPaymentDate(paymentDate);
+        acc.setSurname(rs.getString("surname"));
+        acc.setFirstname(rs.getString("firstname"));
+        acc.setMiddlename(rs.getString("middlename"));
+        acc.setBirthDate(rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null);
+        acc.setInn(rs.getString("inn"));
+        acc.setDoctorIds(DoctorsList.parse(rs.getString("doctors_list")));
+        acc.setCategoryIds(rs.getString("category_ids"));
+        long categoryMask = categories.maskOfIds(acc.getCategoryIds());
+        acc.setCategoryMask(categoryMask);
+        acc.setCategory(categories.describe(categoryMask));
+        return acc;
+    }
 
-                    acc.setDoctorName(doctorName);
-                    // Получаем timestamp → конвертируем в LocalDate
-                    Timestamp tsUpdate = rs.getTimestamp("payment_timestamp");
-                    LocalDate paymentDate = tsUpdate != null
-                            ? tsUpdate.toLocalDateTime().toLocalDate()
-                            : rs.getDate("account_date") != null
-                            ? rs.getDate("account_date").toLocalDate()
-                            : null;
-
-                    acc.setPaymentDate(paymentDate);
-                    acc.setSurname(rs.getString("surname"));
-                    acc.setFirstname(rs.getString("firstname"));
-                    acc.setMiddlename(rs.getString("middlename"));
-                    acc.setBirthDate(rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null);
-                    acc.setInn(rs.getString("inn"));
-                    accounts.add(acc);
-                }
-            }
-            return accounts;
+    private static void closeQuietly(AutoCloseable resource) {
+        if (resource == null) {
+            return;
+        }
+        try {
+            resource.close();
+        } catch (Exception ignored) {
+            // ресурс и так освобождаем
         }
     }
 
     /**
      * Поиск пациентов по ФИО или номеру карты.
      * ВНИМАНИЕ: patients_cart_num — строка, ищем точное совпадение.
+     *
+     * Запрос с {@code LIKE '%...%'} просматривает всю таблицу пациентов; для интерактивного
+     * поиска используйте {@link org.example.search.PatientSearchService}, а этот метод —
+     * пока индекс не загружен.
      */
+    @Override
     public List<Patient> findPatientsByQuery(int practiceId, String query) throws SQLException {
+        return findPatientsByQuery(practiceId, query, null);
+    }
+
+    /**
+     * То же, что {@link #findPatientsByQuery(int, String)}, но запрос можно отменить
+     * из другого потока через {@code handle} (например, когда пользователь продолжил ввод).
+     *
+     * @param handle ручка отмены (может быть null)
+     * @throws SQLException в том числе если запрос был отменён
+     */
+    @Override
+    public List<Patient> findPatientsByQuery(int practiceId, String query, QueryHandle handle) throws SQLException {
         String sql = """
             SELECT DISTINCT
                 p.patient_id,
@@ -233,6 +888,7 @@ public class AccountDao {
 
         sql += " ORDER BY p.surname, p.firstname";
 
+        QueryMetrics.Sample sample = PATIENTS_BY_QUERY.start(params);
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
@@ -240,21 +896,133 @@ public class AccountDao {
                 stmt.setObject(i + 1, params.get(i));
             }
 
+            QueryHandle.attach(handle, stmt);
             List<Patient> patients = new ArrayList<>();
             try (ResultSet rs = stmt.executeQuery()) {
+                sample.executed();
                 while (rs.next()) {
-                    Patient p = new Patient();
-                    p.setId(rs.getInt("patient_id"));
-                    p.setSurname(rs.getString("surname"));
-                    p.setFirstname(rs.getString("firstname"));
-                    p.setMiddlename(rs.getString("middlename"));
-                    p.setBirthDate(rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null);
-                    p.setInn(rs.getString("itn"));
-                    p.setCardNumber(rs.getString("patients_cart_num"));
-                    patients.add(p);
+                    long m = sample.mapStart();
+                    patients.add(mapPatient(rs));
+                    sample.mapped(m);
                 }
+                sample.fetched();
+            } finally {
+                QueryHandle.detach(handle);
             }
             return patients;
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+    }
+
+    /**
+     * Пациент и филиал, в котором у него есть счета, с моментом последнего изменения этих счетов.
+     * Используется для построения индекса поиска пациентов.
+     */
+    public record PatientActivity(Patient patient, int practiceId, LocalDateTime lastUpdate) {
+    }
+
+    /** Отметка изменений счетов периода (см. {@link #findChangeStamp}). */
+    public record ChangeStamp(LocalDateTime maxUpdate, int rowCount) {
+    }
+
+    /**
+     * Изменённый счёт и момент его изменения (ts_4_update) — см. {@link #forEachAccountChange}.
+     */
+    public record AccountChange(MedicalAccount account, LocalDateTime updatedAt) {
+    }
+
+    /**
+     * Итог пациента за период (см. {@link #findPatientTotalsForTaxReport}).
+     * Суммы — в копейках ({@link Money}).
+     */
+    public record PatientTotals(
+            int patientId,
+            String surname,
+            String firstname,
+            String middlename,
+            LocalDate birthDate,
+            String inn,
+            long amountPaidKopecks,
+            long rebateKopecks,
+            int accountCount) {
+    }
+
+    /**
+     * Перебирает пациентов, у которых есть счета, с разбивкой по филиалам.
+     * Курсор читается потоково, без накопления списка в памяти.
+     *
+     * @param changedSince только пациенты со счетами, изменёнными в этот момент или позже
+     *                     (null — все пациенты); перекрытие с прошлой загрузкой задаёт вызывающий
+     * @param consumer     обработчик строк; вызывается в текущем потоке
+     */
+    @Override
+    public void forEachPatientActivity(LocalDateTime changedSince, Consumer<PatientActivity> consumer)
+            throws SQLException {
+        String sql = """
+            SELECT
+                p.patient_id,
+                p.surname,
+                p.firstname,
+                p.middlename,
+                p.dob,
+                p.itn,
+                p.patients_cart_num,
+                pa.practice_id,
+                MAX(pa.ts_4_update) AS last_update
+            FROM dba.patients p
+            JOIN dba.patients_accounts pa ON pa.send_acc_to_pat_id = p.patient_id
+            """;
+        if (changedSince != null) {
+            sql += " WHERE pa.ts_4_update >= ?";
+        }
+        sql += """
+             GROUP BY p.patient_id, p.surname, p.firstname, p.middlename,
+                      p.dob, p.itn, p.patients_cart_num, pa.practice_id
+            """;
+
+        QueryMetrics.Sample sample = PATIENT_ACTIVITY.start(Collections.singletonList(changedSince));
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(1_000);
+            if (changedSince != null) {
+                stmt.setTimestamp(1, Timestamp.valueOf(changedSince));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    long m = sample.mapStart();
+                    Timestamp lastUpdate = rs.getTimestamp("last_update");
+                    PatientActivity activity = new PatientActivity(
+                            mapPatient(rs),
+                            rs.getInt("practice_id"),
+                            lastUpdate != null ? lastUpdate.toLocalDateTime() : null);
+                    sample.mapped(m);
+                    consumer.accept(activity);
+                }
+                sample.fetched();
+            }
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
         }
     }
-}
\ No newline at end of file
+
+    private Patient mapPatient(ResultSet rs) throws SQLException {
+        Patient p = new Patient();
+        p.setId(rs.getInt("patient_id"));
+        p.setSurname(rs.getString("surname"));
+        p.setFirstname(rs.getString("firstname"));
+        p.setMiddlename(rs.getString("middlename"));
+        p.setBirthDate(rs.getDate("dob") != null ? rs.getDate("dob").toLocalDate() : null);
+        p.setInn(rs.getString("itn"));
+        p.setCardNumber(rs.getString("patients_cart_num"));
+        return p;
+    }
+}
@@ -0,0 +1,199 @@
+package org.example.dao;
+
+import org.example.dao.AccountDao.ChangeStamp;
+import org.example.model.MedicalAccount;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш результатов {@link AccountDao#findAccountsForTaxReport} по ключу
+ * (филиал, начало периода, конец периода, пациент).
+ *
+ * Пользователь переключает годы и возвращается к тем же пациентам, а полная выборка
+ * счетов с соединениями — самый дорогой запрос приложения. Перед выдачей из кэша
+ * результат проверяется дешёвым запросом {@link AccountDao#findChangeStamp}: если
+ * максимальный ts_4_update и число строк периода не изменились, выборка не повторяется.
+ *
+ * Размер ограничен суммарным числом счетов во всех результатах ({@code d4w.resultCache.maxAccounts}),
+ * при превышении вытесняются давно не запрошенные (LRU).
+ */
+public class AccountResultCache {
+
+    private static final int DEFAULT_MAX_ACCOUNTS = Integer.getInteger("d4w.resultCache.maxAccounts", 20_000);
+
+    /** Ключ кэша: параметры {@code findAccountsForTaxReport}. */
+    public record Key(int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId) {
+    }
+
+    /** Откуда берутся отметка и сама выборка (в приложении — {@link AccountDao}). */
+    public interface Source {
+        ChangeStamp stamp(Key key, QueryHandle handle) throws SQLException;
+
+        List<MedicalAccount> load(Key key, QueryHandle handle) throws SQLException;
+    }
+
+    private record Entry(ChangeStamp stamp, List<MedicalAccount> accounts) {
+        int weight() {
+            return accounts.size() + 1; // пустой результат тоже занимает место
+        }
+    }
+
+    private final Source source;
+    private final int maxAccounts;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true); // guarded by this
+    private int weight; // guarded by this
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public AccountResultCache(TaxDataRepository repository) {
+        this(repository, DEFAULT_MAX_ACCOUNTS);
+    }
+
+    public AccountResultCache(TaxDataRepository repository, int maxAccounts) {
+        this(new Source() {
+            @Override
+            public ChangeStamp stamp(Key key, QueryHandle handle) throws SQLException {
+                return repository.findChangeStamp(key.practiceId(), key.startDate(), key.endDate(), key.patientId(), handle);
+            }
+
+            @Override
+            public List<MedicalAccount> load(Key key, QueryHandle handle) throws SQLException {
+                return repository.findAccountsForTaxReport(key.practiceId(), key.startDate(), key.endDate(), key.patientId(), handle);
+            }
+        }, maxAccounts);
+    }
+
+    /** @param maxAccounts сколько счетов суммарно держать во всех результатах */
+    public AccountResultCache(Source source, int maxAccounts) {
+        this.source = source;
+        this.maxAccounts = Math.max(1, maxAccounts);
+    }
+
+    /**
+     * Оплаченные счета для справки — как {@link AccountDao#findAccountsForTaxReport},
+     * из кэша, если данные периода не менялись. Возвращает копии счетов.
+     *
+     * @param handle ручка отмены/таймаута (может быть null)
+     */
+    public List<MedicalAccount> findAccountsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            QueryHandle handle
+    ) throws SQLException {
+        Key key = new Key(practiceId, startDate, endDate, patientId);
+        // Отметку берём до выборки: если данные изменятся во время неё,
+        // следующая проверка увидит новую отметку и выборка повторится
+        ChangeStamp stamp = source.stamp(key, handle);
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.stamp().equals(stamp)) {
+            hits.increment();
+            return copies(cached.accounts());
+        }
+        misses.increment();
+        if (cached != null) {
+            invalidations.increment();
+        }
+
+        List<MedicalAccount> loaded = source.load(key, handle);
+        put(key, new Entry(stamp, copies(loaded)));
+        return loaded;
+    }
+
+    /** Сбрасывает все результаты. */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /** Количество закэшированных результатов. */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Суммарное число счетов во всех результатах. */
+    public synchronized int weight() {
+        return weight;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Сколько раз результат оказался устаревшим (изменилась отметка). */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /** Доля запросов, выданных из кэша (0, если запросов не было). */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountResultCache[size=" + size()
+                + ", accounts=" + weight()
+                + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", invalidations=" + getInvalidationCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        if (entry.weight() > maxAccounts) {
+            // Результат больше всего кэша (например, филиал за год) — не вытесняем ради него остальное
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                weight -= removed.weight();
+            }
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += entry.weight();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (weight > maxAccounts && it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            weight -= eldest.getValue().weight();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static List<MedicalAccount> copies(List<MedicalAccount> accounts) {
+        List<MedicalAccount> result = new ArrayList<>(accounts.size());
+        for (MedicalAccount acc : accounts) {
+            result.add(acc.copy());
+        }
+        return result;
+    }
+}
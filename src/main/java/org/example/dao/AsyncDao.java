@@ -0,0 +1,109 @@
+package org.example.dao;
+
+import org.example.model.MedicalAccount;
+import org.example.model.Patient;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Асинхронный фасад над {@link TaxDataRepository} и справочниками ({@link ReferenceDataService}).
+ *
+ * Каждый вызов выполняется в {@link DaoExecutor} и сразу возвращает {@link CompletableFuture},
+ * поэтому UI и пакетные задачи могут комбинировать и распараллеливать запросы без блокировок
+ * и ручного {@code Platform.runLater}.
+ *
+ * • Каждому SQL-запросу выставляется {@code Statement.setQueryTimeout} — сервер сам прервёт
+ *   зависший запрос.
+ * • Отмена future (или истечение таймаута задачи) вызывает {@code Statement.cancel()}
+ *   для выполняющегося запроса, а не просто бросает его результат.
+ */
+public class AsyncDao {
+
+    private static final int DEFAULT_QUERY_TIMEOUT_SECONDS = Integer.getInteger("d4w.query.timeoutSeconds", 30);
+
+    private final TaxDataRepository repository;
+    private final ReferenceDataService referenceData;
+    private final DaoExecutor executor;
+    private final int queryTimeoutSeconds;
+
+    public AsyncDao() {
+        this(TaxDataRepository.shared(), ReferenceDataService.shared(), DaoExecutor.shared(), DEFAULT_QUERY_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * @param queryTimeoutSeconds таймаут каждого SQL-запроса на сервере (0 — без таймаута)
+     */
+    public AsyncDao(TaxDataRepository repository, ReferenceDataService referenceData, DaoExecutor executor, int queryTimeoutSeconds) {
+        this.repository = repository;
+        this.referenceData = referenceData;
+        this.executor = executor;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+
+    /** Асинхронный {@link AccountDao#findAccountsForTaxReport}. */
+    public CompletableFuture<List<MedicalAccount>> findAccountsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId) {
+        return call("findAccountsForTaxReport",
+                handle -> repository.findAccountsForTaxReport(practiceId, startDate, endDate, patientId, handle));
+    }
+
+    /** Асинхронный {@link AccountDao#findPatientTotalsForTaxReport}. */
+    public CompletableFuture<List<AccountDao.PatientTotals>> findPatientTotalsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId) {
+        return call("findPatientTotalsForTaxReport",
+                handle -> repository.findPatientTotalsForTaxReport(practiceId, startDate, endDate, patientId, handle));
+    }
+
+    /** Асинхронный {@link AccountDao#findPatientsByQuery}. */
+    public CompletableFuture<List<Patient>> findPatientsByQuery(int practiceId, String query) {
+        return call("findPatientsByQuery",
+                handle -> repository.findPatientsByQuery(practiceId, query, handle));
+    }
+
+    /** Филиалы из {@link ReferenceDataService} (запрос к БД — только при первом обращении). */
+    public CompletableFuture<Map<String, Integer>> loadAllPractices() {
+        return call("loadAllPractices", handle -> referenceData.practices());
+    }
+
+    /** Категории процедур из {@link ReferenceDataService} (запрос к БД — только при первом обращении). */
+    public CompletableFuture<Set<String>> loadAllCategories() {
+        return call("loadAllCategories", handle -> referenceData.categoryNames());
+    }
+
+    /**
+     * Выполняет вызов DAO в исполнителе. При отмене или таймауте future
+     * отменяется и выполняющийся SQL-запрос.
+     */
+    public <T> CompletableFuture<T> call(String name, DaoCall<T> call) {
+        QueryHandle handle = new QueryHandle(queryTimeoutSeconds);
+        CompletableFuture<T> future = executor.submit(name, () -> call.execute(handle), taskTimeout());
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                handle.cancel();
+            }
+        });
+        return future;
+    }
+
+    /** Таймаут задачи — с запасом на ожидание соединения поверх таймаута запроса. */
+    private Duration taskTimeout() {
+        return queryTimeoutSeconds > 0 ? Duration.ofSeconds(queryTimeoutSeconds * 2L) : Duration.ZERO;
+    }
+
+    /** Вызов DAO, выполняющий запросы под управлением {@link QueryHandle}. */
+    @FunctionalInterface
+    public interface DaoCall<T> {
+        T execute(QueryHandle handle) throws Exception;
+    }
+}
@@ -0,0 +1,215 @@
+package org.example.dao;
+
+import org.example.metrics.QueryMetrics;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Словарь категорий процедур (general_procedures_lev_2): название категории ↔ номер бита.
+ *
+ * Категории счёта хранятся как битовая маска {@code long} ({@link org.example.model.MedicalAccount#getCategoryMask()}),
+ * поэтому отбор счетов по выбранным категориям — одно {@code &} на строку вместо
+ * поиска строк в множестве.
+ *
+ * • Биты назначаются по названиям в алфавитном порядке; строки lev_2 с одинаковым
+ *   названием получают один бит.
+ * • Категорий больше 64 в D4W не бывает; если всё же больше — лишние делят последний бит
+ *   (отбор по ним становится чуть шире, но счета не теряются).
+ *
+ * Экземпляр неизменяем. Общий словарь ({@link #shared()}) хранит {@link ReferenceDataService}:
+ * он загружается из БД один раз и перечитывается через {@link #refreshShared()}
+ * (например, после правки разделов в D4W).
+ */
+public final class CategoryDictionary {
+
+    private static final Logger LOG = Logger.getLogger(CategoryDictionary.class.getName());
+
+    /** Маска «без отбора»: подходят все счета. */
+    public static final long ALL = -1L;
+
+    private static final int MAX_BITS = Long.SIZE;
+    private static final QueryMetrics LOAD_CATEGORIES = QueryMetrics.of("loadCategories");
+    private static final String NO_CATEGORY = "Без категории";
+
+    private final List<String> ordered;        // названия в алфавитном порядке; бит = min(индекс, 63)
+    private final Set<String> allNames;        // те же названия для выдачи наружу
+    private final Map<String, Integer> bits;   // название → бит
+    private final int[] ids;                   // отсортированные general_procedures_lev_2.id
+    private final int[] idBits;                // бит для ids[i]
+    private final Map<Long, String> descriptions = new ConcurrentHashMap<>();
+
+    private CategoryDictionary(Map<Integer, String> categoriesById) {
+        TreeSet<String> sorted = new TreeSet<>(categoriesById.values());
+        if (sorted.size() > MAX_BITS) {
+            LOG.warning("Категорий процедур " + sorted.size() + " — больше " + MAX_BITS
+                    + ", последние будут отбираться вместе");
+        }
+        this.ordered = List.copyOf(sorted);
+        this.allNames = Collections.unmodifiableSet(new LinkedHashSet<>(ordered));
+        this.bits = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            bits.put(ordered.get(i), Math.min(i, MAX_BITS - 1));
+        }
+        this.ids = categoriesById.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        this.idBits = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            idBits[i] = bits.get(categoriesById.get(ids[i]));
+        }
+    }
+
+    /** Словарь из готового списка: id строки general_procedures_lev_2 → название категории. */
+    public static CategoryDictionary of(Map<Integer, String> categoriesById) {
+        return new CategoryDictionary(categoriesById);
+    }
+
+    /** Общий словарь приложения; при первом обращении загружается из БД. */
+    public static CategoryDictionary shared() throws SQLException {
+        return ReferenceDataService.shared().categories();
+    }
+
+    /** Перечитывает общий словарь из БД. */
+    public static CategoryDictionary refreshShared() throws SQLException {
+        return ReferenceDataService.shared().refreshCategories();
+    }
+
+    /**
+     * Загружает категории из БД. Служебные разделы (Финансы, Устаревшие, Сертификаты)
+     * исключаются — это единственный запрос категорий в приложении.
+     */
+    public static CategoryDictionary loadFromDatabase() throws SQLException {
+        String sql = """
+            SELECT id, description
+            FROM dba.general_procedures_lev_2
+            WHERE level_1_id = 0
+              AND description NOT IN ('Финансы', 'Устаревшие', 'Сертификаты')
+            """;
+
+        Map<Integer, String> categories = new HashMap<>();
+        QueryMetrics.Sample sample = LOAD_CATEGORIES.start();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            sample.executed();
+            while (rs.next()) {
+                long m = sample.mapStart();
+                String description = rs.getString("description");
+                if (description != null && !description.trim().isEmpty()) {
+                    categories.put(rs.getInt("id"), description.trim());
+                }
+                sample.mapped(m);
+            }
+            sample.fetched();
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+        return new CategoryDictionary(categories);
+    }
+
+    /** Количество различных категорий. */
+    public int size() {
+        return ordered.size();
+    }
+
+    /** Все названия категорий в алфавитном порядке (неизменяемое множество). */
+    public Set<String> allNames() {
+        return allNames;
+    }
+
+    /** Бит категории по названию или -1, если такой категории нет. */
+    public int bitOf(String category) {
+        Integer bit = bits.get(category);
+        return bit != null ? bit : -1;
+    }
+
+    /**
+     * Маска категорий по списку id строк general_procedures_lev_2 через запятую
+     * (результат {@code LIST(...)}: "3,17"). Неизвестные id пропускаются.
+     */
+    public long maskOfIds(String idList) {
+        if (idList == null) {
+            return 0;
+        }
+        long mask = 0;
+        long value = -1;
+        for (int i = 0, len = idList.length(); i <= len; i++) {
+            char c = i < len ? idList.charAt(i) : ',';
+            if (c >= '0' && c <= '9') {
+                value = Math.min((value < 0 ? 0 : value * 10) + (c - '0'), Integer.MAX_VALUE + 1L);
+            } else if (c == ',') {
+                if (value >= 0 && value <= Integer.MAX_VALUE) {
+                    int pos = Arrays.binarySearch(ids, (int) value);
+                    if (pos >= 0) {
+                        mask |= 1L << idBits[pos];
+                    }
+                }
+                value = -1;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Маска выбранных категорий для отбора счетов.
+     * Пустой выбор — {@link #ALL} (отбора нет); неизвестные названия пропускаются.
+     */
+    public long selectionMask(Collection<String> selected) {
+        if (selected == null || selected.isEmpty()) {
+            return ALL;
+        }
+        long mask = 0;
+        for (String category : selected) {
+            int bit = bitOf(category);
+            if (bit >= 0) {
+                mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Подходит ли счёт под отбор. Счёт без определённых категорий (нет позиций
+     * или их разделы служебные) проходит всегда — как и до разбора категорий.
+     */
+    public static boolean matches(long accountMask, long selectionMask) {
+        return accountMask == 0 || (accountMask & selectionMask) != 0;
+    }
+
+    /** Названия категорий маски в алфавитном порядке. */
+    public Set<String> names(long mask) {
+        if (mask == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            if ((mask & (1L << Math.min(i, MAX_BITS - 1))) != 0) {
+                result.add(ordered.get(i));
+            }
+        }
+        return result;
+    }
+
+    /** Категории маски одной строкой для таблицы: "Терапия, Хирургия" (кэшируется по маске). */
+    public String describe(long mask) {
+        if (mask == 0) {
+            return NO_CATEGORY;
+        }
+        return descriptions.computeIfAbsent(mask, m -> String.join(", ", names(m)));
+    }
+}
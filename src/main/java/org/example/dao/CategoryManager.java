@@ -2,7 +2,7 @@ package org.example.dao;
 
 import org.example.model.TaxReferenceSettings;
 
-import java.sql.*;
+import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -12,40 +12,24 @@ import java.util.*;
 public class CategoryManager {
 
     /**
-     * Загружает ВСЕ доступные категории процедур из БД.
+     * Возвращает ВСЕ доступные категории процедур.
      * Исключает служебные категории: Финансы, Устаревшие, Сертификаты.
      *
-     * @return упорядоченное множество уникальных названий категорий
+     * Категории берутся из снимка {@link ReferenceDataService}: запрос к БД выполняется
+     * только при первом обращении. Чтобы увидеть новые разделы D4W, снимок нужно
+     * перечитать ({@link ReferenceDataService#refreshCategories()}).
+     *
+     * @return упорядоченное множество уникальных названий категорий (изменяемая копия)
      * @throws SQLException при ошибке подключения или выполнения запроса
      */
     public static Set<String> loadAllCategories() throws SQLException {
-        String sql = """
-            SELECT DISTINCT description
-            FROM dba.general_procedures_lev_2
-            WHERE level_1_id = 0
-              AND description NOT IN ('Финансы', 'Устаревшие', 'Сертификаты')
-            ORDER BY description
-            """;
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-
-            Set<String> categories = new LinkedHashSet<>();
-            while (rs.next()) {
-                String description = rs.getString("description");
-                if (description != null && !description.trim().isEmpty()) {
-                    categories.add(description.trim());
-                }
-            }
-            return categories;
-        }
+        return new LinkedHashSet<>(ReferenceDataService.shared().categoryNames());
     }
 
     /**
      * Обновляет настройки: добавляет в selectedCategories все категории из БД,
-     * которые ещё не выбраны (например, после добавления новых разделов в D4W).
+     * которые ещё не выбраны (например, после добавления новых разделов в D4W —
+     * тогда перед вызовом перечитайте справочник, см. {@link #loadAllCategories()}).
      *
      * Сохраняет уже выбранные категории — не сбрасывает настройки!
      *
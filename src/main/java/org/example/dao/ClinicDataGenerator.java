@@ -0,0 +1,247 @@
+package org.example.dao;
+
+import org.example.model.Patient;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Генератор правдоподобной клиники для {@link InMemoryTaxDataRepository}: филиалы, врачи,
+ * разделы процедур, пациенты и их счета за несколько лет.
+ *
+ * Данные детерминированы: одинаковые {@link Options} (включая {@code seed} и {@code lastYear})
+ * дают одинаковые данные. Значения по умолчанию от текущей даты не зависят, поэтому замеры
+ * на разных машинах и в разные дни сравнимы. Распределения приближены
+ * к реальной базе D4W:
+ * • число счетов на пациента сильно неравномерно — у большинства пара визитов, у части десятки;
+ * • пациент в основном ходит в «свой» филиал и к его врачам, в счёте 1–3 врача
+ *   ({@code doctors_list} вида ",12,57,");
+ * • у части счетов есть скидка, часть не оплачена или оплачена частично;
+ * • {@code ts_4_update} — дата оплаты, от нуля до месяца после даты счёта.
+ *
+ * 500 тыс. пациентов и 5 млн счетов занимают порядка 0,5 ГБ кучи.
+ */
+public class ClinicDataGenerator {
+
+    private static final String[] PRACTICES = {
+            "Центральная", "Северная", "Южная", "Западная", "Восточная", "Заречная", "Приморская", "Садовая"
+    };
+    private static final String[] CATEGORIES = {
+            "Терапия", "Хирургия", "Ортопедия", "Ортодонтия", "Пародонтология", "Имплантация",
+            "Гигиена", "Детская стоматология", "Рентгенология", "Эндодонтия"
+    };
+    private static final String[] SURNAMES = {
+            "Иванов", "Смирнов", "Кузнецов", "Попов", "Васильев", "Петров", "Соколов", "Михайлов",
+            "Новиков", "Фёдоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Семёнов", "Егоров",
+            "Павлов", "Козлов", "Степанов", "Николаев", "Орлов", "Андреев", "Макаров", "Никитин",
+            "Захаров", "Зайцев", "Соловьёв", "Борисов", "Яковлев", "Григорьев", "Романов", "Воробьёв"
+    };
+    private static final String[] MALE_NAMES = {
+            "Александр", "Дмитрий", "Максим", "Сергей", "Андрей", "Алексей", "Артём", "Илья",
+            "Кирилл", "Михаил", "Никита", "Иван", "Евгений", "Владимир", "Павел", "Олег"
+    };
+    private static final String[] FEMALE_NAMES = {
+            "Анна", "Мария", "Елена", "Ольга", "Наталья", "Татьяна", "Ирина", "Екатерина",
+            "Светлана", "Юлия", "Анастасия", "Дарья", "Марина", "Ксения", "Виктория", "Полина"
+    };
+    private static final String[] PATRONYMIC_STEMS = {
+            "Александров", "Дмитриев", "Сергеев", "Андреев", "Алексеев", "Михайлов", "Иванов",
+            "Владимиров", "Павлов", "Олегов", "Николаев", "Петров", "Викторов", "Юрьев"
+    };
+    private static final double LOG_MAX_RUBLES = Math.log(150_000);
+    private static final int[] INN_WEIGHTS_11 = {7, 2, 4, 10, 3, 5, 9, 4, 6, 8};
+    private static final int[] INN_WEIGHTS_12 = {3, 7, 2, 4, 10, 3, 5, 9, 4, 6, 8};
+
+    /** Размер и период генерируемой клиники. */
+    public static class Options {
+        private long seed = 42;
+        private int patients = 10_000;
+        private int accounts = 100_000;
+        private int practices = 3;
+        private int doctorsPerPractice = 12;
+        private int years = 4;
+        private int lastYear = 2025; // последний год счетов; не от текущей даты — см. описание класса
+
+        public long getSeed() { return seed; }
+        public void setSeed(long seed) { this.seed = seed; }
+
+        public int getPatients() { return patients; }
+        public void setPatients(int patients) { this.patients = patients; }
+
+        public int getAccounts() { return accounts; }
+        public void setAccounts(int accounts) { this.accounts = accounts; }
+
+        public int getPractices() { return practices; }
+        public void setPractices(int practices) { this.practices = practices; }
+
+        public int getDoctorsPerPractice() { return doctorsPerPractice; }
+        public void setDoctorsPerPractice(int doctorsPerPractice) { this.doctorsPerPractice = doctorsPerPractice; }
+
+        public int getYears() { return years; }
+        public void setYears(int years) { this.years = years; }
+
+        public int getLastYear() { return lastYear; }
+        public void setLastYear(int lastYear) { this.lastYear = lastYear; }
+    }
+
+    private final Options options;
+
+    public ClinicDataGenerator(Options options) {
+        this.options = options;
+    }
+
+    /** Генерирует клинику целиком. */
+    public InMemoryTaxDataRepository generate() {
+        SplittableRandom random = new SplittableRandom(options.getSeed());
+        InMemoryTaxDataRepository.Builder builder = new InMemoryTaxDataRepository.Builder();
+
+        int practices = Math.max(1, options.getPractices());
+        for (int i = 0; i < practices; i++) {
+            builder.addPractice(i + 1, i < PRACTICES.length ? PRACTICES[i] : "Филиал " + (i + 1));
+        }
+        for (int i = 0; i < CATEGORIES.length; i++) {
+            builder.addCategory(i + 1, CATEGORIES[i]);
+        }
+
+        // Врачи филиала p — member_id от p * 1000 + 1
+        int doctors = Math.max(1, options.getDoctorsPerPractice());
+        for (int p = 1; p <= practices; p++) {
+            for (int d = 1; d <= doctors; d++) {
+                boolean female = random.nextBoolean();
+                builder.addStaff(p * 1000 + d, surname(random, female),
+                        pick(random, female ? FEMALE_NAMES : MALE_NAMES), patronymic(random, female));
+            }
+        }
+
+        int patients = Math.max(1, options.getPatients());
+        int[] homePractice = new int[patients + 1];
+        for (int id = 1; id <= patients; id++) {
+            homePractice[id] = 1 + random.nextInt(practices);
+            builder.addPatient(patient(random, id));
+        }
+
+        // Счета распределяем по пациентам неравномерно: вес пациента — квадрат экспоненциальной
+        // величины, так что у большинства пара визитов, а у «постоянных» — в десятки раз больше
+        double[] cumulative = new double[patients];
+        double sum = 0;
+        for (int i = 0; i < patients; i++) {
+            double e = -Math.log(1 - random.nextDouble());
+            sum += e * e;
+            cumulative[i] = sum;
+        }
+        int[] perPatient = new int[patients + 1];
+        for (int i = 0; i < options.getAccounts(); i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            perPatient[1 + Math.min(patients - 1, index >= 0 ? index : -index - 1)]++;
+        }
+
+        LocalDate from = LocalDate.of(options.getLastYear() - Math.max(1, options.getYears()) + 1, 1, 1);
+        LocalDate to = LocalDate.of(options.getLastYear(), 12, 31);
+        int days = (int) (to.toEpochDay() - from.toEpochDay()) + 1;
+        Map<String, String> strings = new HashMap<>(); // одинаковые doctors_list и списки разделов — один объект
+
+        int accountId = 1;
+        for (int patientId = 1; patientId <= patients; patientId++) {
+            for (int k = 0; k < perPatient[patientId]; k++) {
+                int practiceId = random.nextInt(10) < 9 ? homePractice[patientId] : 1 + random.nextInt(practices);
+                LocalDate created = from.plusDays(random.nextInt(days));
+
+                // 300 ₽ … 150 тыс. ₽, логарифмически равномерно, с точностью до 10 ₽
+                long rubles = (300 + (long) Math.exp(random.nextDouble() * LOG_MAX_RUBLES)) / 10 * 10;
+                long total = rubles * 100;
+                long rebate = random.nextInt(100) < 15 ? total * (5 + random.nextInt(6)) / 100 : 0;
+                int paidRoll = random.nextInt(100);
+                long paid = paidRoll < 5 ? 0 : paidRoll < 10 ? (total - rebate) / 2 : total - rebate;
+                LocalDateTime updated = created.atStartOfDay()
+                        .plusDays(random.nextInt(31))
+                        .plusSeconds(8 * 3600 + random.nextInt(12 * 3600));
+
+                builder.addAccount(accountId++, patientId, practiceId, created, total, rebate, paid, updated,
+                        strings.computeIfAbsent(doctorsList(random, practiceId, doctors), s -> s),
+                        strings.computeIfAbsent(categoryIds(random), s -> s));
+            }
+        }
+        return builder.build();
+    }
+
+    private Patient patient(SplittableRandom random, int id) {
+        boolean female = random.nextBoolean();
+        Patient p = new Patient();
+        p.setId(id);
+        p.setSurname(surname(random, female));
+        p.setFirstname(pick(random, female ? FEMALE_NAMES : MALE_NAMES));
+        p.setMiddlename(patronymic(random, female));
+        p.setBirthDate(LocalDate.of(1940, 1, 1).plusDays(random.nextInt(80 * 365)));
+        p.setInn(random.nextInt(100) < 70 ? inn(random) : null); // ИНН указан не у всех
+        p.setCardNumber(String.valueOf(100_000 + id));
+        return p;
+    }
+
+    /** ",12,57," — 1 врач в 80% счетов, 2 — в 17%, 3 — в 3%. */
+    private static String doctorsList(SplittableRandom random, int practiceId, int doctors) {
+        int roll = random.nextInt(100);
+        int count = Math.min(doctors, roll < 80 ? 1 : roll < 97 ? 2 : 3);
+        StringBuilder sb = new StringBuilder(",");
+        int first = random.nextInt(doctors);
+        for (int i = 0; i < count; i++) {
+            sb.append(practiceId * 1000 + 1 + (first + i) % doctors).append(',');
+        }
+        return sb.toString();
+    }
+
+    /** "3" или "3,7" — id разделов процедур; у 5% счетов раздела нет. */
+    private static String categoryIds(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        if (roll < 5) {
+            return null;
+        }
+        int first = 1 + random.nextInt(CATEGORIES.length);
+        if (roll < 75) {
+            return String.valueOf(first);
+        }
+        int second = 1 + random.nextInt(CATEGORIES.length);
+        return second == first ? String.valueOf(first) : Math.min(first, second) + "," + Math.max(first, second);
+    }
+
+    private static String surname(SplittableRandom random, boolean female) {
+        String s = pick(random, SURNAMES);
+        return female ? s + "а" : s;
+    }
+
+    private static String patronymic(SplittableRandom random, boolean female) {
+        return pick(random, PATRONYMIC_STEMS) + (female ? "на" : "ич");
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /** ИНН физлица: 12 цифр с верными контрольными разрядами. */
+    private static String inn(SplittableRandom random) {
+        int[] d = new int[12];
+        d[0] = 7;
+        d[1] = 7;
+        for (int i = 2; i < 10; i++) {
+            d[i] = random.nextInt(10);
+        }
+        d[10] = checkDigit(d, INN_WEIGHTS_11);
+        d[11] = checkDigit(d, INN_WEIGHTS_12);
+        StringBuilder sb = new StringBuilder(12);
+        for (int digit : d) {
+            sb.append(digit);
+        }
+        return sb.toString();
+    }
+
+    private static int checkDigit(int[] digits, int[] weights) {
+        int sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += digits[i] * weights[i];
+        }
+        return sum % 11 % 10;
+    }
+}
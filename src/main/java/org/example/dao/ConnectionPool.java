@@ -0,0 +1,370 @@
+package org.example.dao;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Простой пул JDBC-соединений для SQL Anywhere.
+ *
+ * Соединение с сервером d4w устанавливается дольше, чем выполняется большинство запросов,
+ * поэтому физические соединения переиспользуются между вызовами DAO.
+ * Пул поддерживает:
+ * • минимальный и максимальный размер;
+ * • вытеснение простаивающих соединений (сверх минимума);
+ * • проверку соединения при выдаче ({@link Connection#isValid(int)});
+ * • таймаут ожидания свободного соединения;
+ * • обнаружение "утечек" — соединений, которые долго не возвращаются в пул.
+ *
+ * Выдаваемое соединение — обёртка: {@code close()} возвращает его в пул,
+ * поэтому DAO продолжают использовать обычный try-with-resources.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(ConnectionPool.class.getName());
+
+    /** Источник физических соединений (обычно {@code DriverManager.getConnection(url)}). */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutNanos;
+    private final long leakThresholdNanos;
+    private final int validationTimeoutSeconds = 2;
+
+    private final Semaphore permits;
+    private final Deque<PooledEntry> idle = new ArrayDeque<>(); // guarded by this
+    private final Set<PooledEntry> borrowed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    /**
+     * @param factory        источник физических соединений
+     * @param minSize        сколько соединений держать открытыми всегда
+     * @param maxSize        максимум одновременно выданных соединений
+     * @param acquireTimeout сколько ждать свободное соединение, прежде чем бросить {@link SQLTimeoutException}
+     * @param idleTimeout    через сколько простоя закрывать соединения сверх {@code minSize}
+     * @param leakThreshold  через сколько предупреждать о невозвращённом соединении (0 — не следить)
+     */
+    public ConnectionPool(ConnectionFactory factory,
+                          int minSize,
+                          int maxSize,
+                          Duration acquireTimeout,
+                          Duration idleTimeout,
+                          Duration leakThreshold) {
+        if (maxSize <= 0 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Некорректный размер пула: min=" + minSize + ", max=" + maxSize);
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.leakThresholdNanos = leakThreshold.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "d4w-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodMillis = Math.max(1_000, Math.min(30_000, idleTimeout.toMillis() / 2));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Берёт соединение из пула (или открывает новое, если свободных нет и лимит не исчерпан).
+     * Закрытие полученного соединения возвращает его в пул.
+     *
+     * @throws SQLTimeoutException если за {@code acquireTimeout} соединение так и не освободилось
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Не удалось получить соединение за " + acquireTimeoutMillis
+                        + " мс: занято " + borrowed.size() + " из " + maxSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения прервано", e);
+        }
+
+        try {
+            PooledEntry entry;
+            while ((entry = pollIdle()) != null) {
+                if (isUsable(entry.physical)) {
+                    break;
+                }
+                closeQuietly(entry.physical);
+            }
+            if (entry == null) {
+                entry = new PooledEntry(factory.create());
+            }
+            entry.borrowedAt = System.nanoTime();
+            entry.borrowSite = leakThresholdNanos > 0 ? new Throwable("Соединение получено здесь") : null;
+            entry.leakReported = false;
+            borrowed.add(entry);
+            return entry.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Количество соединений, выданных прямо сейчас. */
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    /** Количество открытых соединений, ожидающих в пуле. */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Немедленно закрывает пул (без ожидания выданных соединений). */
+    @Override
+    public void close() {
+        close(Duration.ZERO);
+    }
+
+    /**
+     * Закрывает пул: новые соединения больше не выдаются, свободные закрываются сразу,
+     * а выданные — по возврату. Если за {@code grace} не все соединения вернулись,
+     * оставшиеся закрываются принудительно.
+     */
+    public void close(Duration grace) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        housekeeper.shutdownNow();
+        closeIdle();
+
+        long deadline = System.nanoTime() + grace.toNanos();
+        while (!borrowed.isEmpty() && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (PooledEntry entry : borrowed) {
+            LOG.warning("Соединение не возвращено до закрытия пула, закрываем принудительно");
+            closeQuietly(entry.physical);
+        }
+        borrowed.clear();
+    }
+
+    // ---------------------------------------------------------------------
+
+    private synchronized PooledEntry pollIdle() {
+        return idle.pollFirst();
+    }
+
+    private boolean isUsable(Connection physical) {
+        try {
+            return !physical.isClosed() && physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledEntry entry) {
+        borrowed.remove(entry);
+        try {
+            boolean reusable = !closed && resetState(entry.physical);
+            if (reusable) {
+                entry.lastUsed = System.nanoTime();
+                synchronized (this) {
+                    idle.addFirst(entry); // LIFO: "горячие" соединения в начале, холодные стареют в конце
+                }
+            } else {
+                closeQuietly(entry.physical);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean resetState(Connection physical) {
+        try {
+            if (physical.isClosed()) {
+                return false;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            if (physical.isReadOnly()) {
+                physical.setReadOnly(false);
+            }
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            reportLeaks();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Ошибка обслуживания пула соединений", e);
+        }
+    }
+
+    private void evictIdle() {
+        List<PooledEntry> evicted = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            Iterator<PooledEntry> it = idle.descendingIterator();
+            while (it.hasNext() && idle.size() + borrowed.size() > minSize) {
+                PooledEntry entry = it.next();
+                if (now - entry.lastUsed >= idleTimeoutNanos) {
+                    it.remove();
+                    evicted.add(entry);
+                }
+            }
+        }
+        evicted.forEach(e -> closeQuietly(e.physical));
+    }
+
+    private void fillToMinimum() {
+        while (!closed) {
+            synchronized (this) {
+                if (idle.size() + borrowed.size() >= minSize) {
+                    return;
+                }
+            }
+            PooledEntry entry;
+            try {
+                entry = new PooledEntry(factory.create());
+            } catch (SQLException e) {
+                LOG.log(Level.FINE, "Не удалось открыть соединение для минимального запаса пула", e);
+                return;
+            }
+            entry.lastUsed = System.nanoTime();
+            synchronized (this) {
+                idle.addLast(entry);
+            }
+        }
+    }
+
+    private void reportLeaks() {
+        if (leakThresholdNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (PooledEntry entry : borrowed) {
+            if (!entry.leakReported && now - entry.borrowedAt >= leakThresholdNanos) {
+                entry.leakReported = true;
+                LOG.log(Level.WARNING, "Возможная утечка соединения: не возвращено в пул "
+                        + TimeUnit.NANOSECONDS.toSeconds(now - entry.borrowedAt) + " с", entry.borrowSite);
+            }
+        }
+    }
+
+    private synchronized void closeIdle() {
+        idle.forEach(e -> closeQuietly(e.physical));
+        idle.clear();
+    }
+
+    private static void closeQuietly(Connection physical) {
+        try {
+            physical.close();
+        } catch (SQLException ignored) {
+            // соединение и так выбрасываем
+        }
+    }
+
+    /** Физическое соединение и сведения о его текущей выдаче. */
+    private final class PooledEntry {
+        final Connection physical;
+        volatile long borrowedAt;
+        volatile long lastUsed;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+        }
+
+        /** Обёртка, которую получает DAO; после close() ею пользоваться нельзя. */
+        Connection newHandle() {
+            boolean[] handleClosed = {false};
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close" -> {
+                                synchronized (handleClosed) {
+                                    if (!handleClosed[0]) {
+                                        handleClosed[0] = true;
+                                        release(this);
+                                    }
+                                }
+                                return null;
+                            }
+                            case "isClosed" -> {
+                                synchronized (handleClosed) {
+                                    return handleClosed[0] || physical.isClosed();
+                                }
+                            }
+                            case "equals" -> {
+                                return proxy == args[0];
+                            }
+                            case "hashCode" -> {
+                                return System.identityHashCode(proxy);
+                            }
+                            case "toString" -> {
+                                return "Pooled[" + physical + "]";
+                            }
+                            default -> {
+                                synchronized (handleClosed) {
+                                    if (handleClosed[0]) {
+                                        throw new SQLException("Соединение уже возвращено в пул");
+                                    }
+                                }
+                                try {
+                                    return method.invoke(physical, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            }
+                        }
+                    });
+        }
+    }
+}
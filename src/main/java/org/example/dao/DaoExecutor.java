@@ -0,0 +1,189 @@
+package org.example.dao;
+
+import org.example.metrics.MetricsRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Общий исполнитель фоновых задач, работающих с БД.
+ *
+ * Каждая задача выполняется в отдельном виртуальном потоке с понятным именем
+ * ("dao-loadPayments-12"), но одновременно к БД обращается не больше задач,
+ * чем соединений в пуле ({@link DatabaseConnection#maxPoolSize()}): остальные ждут
+ * своей очереди, не занимая ни соединение, ни платформенный поток.
+ *
+ * • У задачи может быть таймаут: по его истечении future завершается
+ *   {@link TimeoutException}, а поток задачи прерывается.
+ * • Отмена future прерывает поток задачи.
+ * • {@link #shutdown(Duration)} перестаёт принимать задачи и ждёт завершения текущих.
+ */
+public class DaoExecutor {
+
+    private static final Logger LOG = Logger.getLogger(DaoExecutor.class.getName());
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(Long.getLong("d4w.task.timeoutSeconds", 60));
+
+    private static volatile DaoExecutor shared;
+    // После shutdownShared() исполнитель не пересоздаётся: поздние задачи фоновых потоков сразу получают отказ
+    private static volatile boolean sharedClosed;
+
+    static {
+        MetricsRegistry.shared().gauge("dao.active", () -> shared != null ? shared.getActiveCount() : 0);
+        MetricsRegistry.shared().gauge("dao.queued", () -> shared != null ? shared.getQueuedCount() : 0);
+    }
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dao-", 0).factory());
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final Duration defaultTimeout;
+    private final AtomicLong taskCounter = new AtomicLong();
+
+    /**
+     * @param maxConcurrency  сколько задач могут одновременно работать с БД
+     * @param defaultTimeout  таймаут задачи по умолчанию ({@link Duration#ZERO} — без таймаута)
+     */
+    public DaoExecutor(int maxConcurrency, Duration defaultTimeout) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency, true);
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * Общий исполнитель приложения; лимит задач равен размеру пула соединений.
+     * После {@link #shutdownShared(Duration)} возвращается остановленный исполнитель:
+     * его задачи сразу завершаются {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    public static DaoExecutor shared() {
+        DaoExecutor e = shared;
+        if (e == null) {
+            synchronized (DaoExecutor.class) {
+                e = shared;
+                if (e == null) {
+                    e = new DaoExecutor(DatabaseConnection.maxPoolSize(), DEFAULT_TIMEOUT);
+                    if (sharedClosed) {
+                        e.executor.shutdown();
+                    }
+                    shared = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    /** Останавливает общий исполнитель (если он создавался); новый после этого не создаётся. */
+    public static void shutdownShared(Duration grace) {
+        DaoExecutor e;
+        synchronized (DaoExecutor.class) {
+            if (sharedClosed) {
+                return;
+            }
+            sharedClosed = true;
+            e = shared;
+        }
+        if (e != null) {
+            e.shutdown(grace);
+        }
+    }
+
+    /** Запускает задачу с таймаутом по умолчанию. */
+    public <T> CompletableFuture<T> submit(String name, Callable<T> task) {
+        return submit(name, task, defaultTimeout);
+    }
+
+    /**
+     * Запускает задачу.
+     *
+     * @param name    имя задачи (попадает в имя потока и в журнал)
+     * @param timeout таймаут ({@link Duration#ZERO} — без таймаута)
+     * @return future с результатом; его отмена прерывает задачу
+     */
+    public <T> CompletableFuture<T> submit(String name, Callable<T> task, Duration timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        String threadName = "dao-" + name + "-" + taskCounter.incrementAndGet();
+
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                Thread.currentThread().setName(threadName);
+                boolean acquired = false;
+                try {
+                    permits.acquire();
+                    acquired = true;
+                    if (!result.isDone()) {
+                        result.complete(task.call());
+                    }
+                } catch (InterruptedException e) {
+                    result.completeExceptionally(new CancellationException("Задача " + threadName + " прервана"));
+                } catch (Throwable t) {
+                    if (!result.isDone()) {
+                        LOG.log(Level.FINE, "Задача " + threadName + " завершилась с ошибкой", t);
+                    }
+                    result.completeExceptionally(t);
+                } finally {
+                    if (acquired) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) { // RejectedExecutionException после shutdown
+            result.completeExceptionally(e);
+            return result;
+        }
+
+        if (!timeout.isZero() && !timeout.isNegative()) {
+            result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        // Отмена или таймаут future — прерываем поток задачи
+        result.whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException || cause instanceof TimeoutException) {
+                running.cancel(true);
+                if (cause instanceof TimeoutException) {
+                    LOG.warning("Задача " + threadName + " не уложилась в " + timeout.toSeconds() + " с и прервана");
+                }
+            }
+        });
+        return result;
+    }
+
+    /** Сколько задач сейчас работают с БД. */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /** Сколько задач ждут свободного места. */
+    public int getQueuedCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Перестаёт принимать новые задачи и ждёт завершения текущих не дольше {@code grace};
+     * затем прерывает оставшиеся.
+     */
+    public void shutdown(Duration grace) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(grace.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOG.warning("Фоновые задачи не завершились за " + grace.toSeconds() + " с, прерываем");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
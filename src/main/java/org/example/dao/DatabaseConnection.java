@@ -1,17 +1,98 @@
     package org.example.dao;
+    import org.example.metrics.MetricsRegistry;
+    import org.example.metrics.Timer;
+
     import java.lang.Class;
     import java.sql.Connection;
     import java.sql.DriverManager;
     import java.sql.SQLException;
+    import java.time.Duration;
+    import java.util.concurrent.atomic.LongAdder;
 
     public class DatabaseConnection {
-        private static final String URL = "jdbc:sqlanywhere:Server=d4w;DBN=d4w;UID=dba;PWD=sql";
+        private static final String URL = System.getProperty("d4w.db.url", "jdbc:sqlanywhere:Server=d4w;DBN=d4w;UID=dba;PWD=sql");
         //    - Server: d4w (Server name)
         //    - DBN: d4w (Database name)
         //    - UID: dba (User ID)
         //    - PWD: sql (Password)
+        // Другой сервер — через -Dd4w.db.url; без сервера — -Dd4w.dataSource=memory (см. TaxDataRepository)
+
+        // Параметры пула можно переопределить через -D при запуске:
+        //    - d4w.pool.min / d4w.pool.max: размер пула
+        //    - d4w.pool.acquireTimeoutMs: сколько ждать свободное соединение
+        //    - d4w.pool.idleTimeoutMs: через сколько простоя закрывать лишние соединения
+        //    - d4w.pool.leakThresholdMs: через сколько предупреждать о невозвращённом соединении
+        private static final int POOL_MIN = Integer.getInteger("d4w.pool.min", 1);
+        private static final int POOL_MAX = Integer.getInteger("d4w.pool.max", 8);
+        private static final long ACQUIRE_TIMEOUT_MS = Long.getLong("d4w.pool.acquireTimeoutMs", 10_000);
+        private static final long IDLE_TIMEOUT_MS = Long.getLong("d4w.pool.idleTimeoutMs", 300_000);
+        private static final long LEAK_THRESHOLD_MS = Long.getLong("d4w.pool.leakThresholdMs", 60_000);
+
+        private static volatile ConnectionPool pool;
+        // После shutdown() новый пул не создаётся: поздние запросы фоновых потоков сразу получают ошибку
+        private static volatile boolean closed;
+
+        // Ожидание соединения из пула — отдельно от времени запросов (sql.*)
+        private static final Timer ACQUIRE = MetricsRegistry.shared().timer("pool.acquire");
+        private static final LongAdder ACQUIRE_ERRORS = MetricsRegistry.shared().counter("pool.acquire.errors");
 
         static {
+            // показатели читают текущий пул и не создают его
+            MetricsRegistry.shared().gauge("pool.active", () -> pool != null ? pool.getActiveCount() : 0);
+            MetricsRegistry.shared().gauge("pool.idle", () -> pool != null ? pool.getIdleCount() : 0);
+        }
+
+        /**
+         * Выдаёт соединение из общего пула. Вызывающий обязан закрыть его
+         * (try-with-resources) — закрытие возвращает соединение в пул.
+         */
+        public static Connection getConnection () throws SQLException {
+            long start = System.nanoTime();
+            try {
+                if (closed) {
+                    throw new SQLException("Пул соединений закрыт: приложение завершает работу");
+                }
+                return pool().borrow();
+            } catch (SQLException | RuntimeException e) {
+                ACQUIRE_ERRORS.increment();
+                throw e;
+            } finally {
+                ACQUIRE.recordSince(start);
+            }
+        }
+
+        /** Максимальный размер пула — сколько запросов могут выполняться одновременно. */
+        public static int maxPoolSize() {
+            return POOL_MAX;
+        }
+
+        /** Общий пул соединений приложения (создаётся при первом обращении). */
+        public static ConnectionPool pool() {
+            ConnectionPool p = pool;
+            if (p == null) {
+                synchronized (DatabaseConnection.class) {
+                    p = pool;
+                    if (p == null) {
+                        if (closed) {
+                            throw new IllegalStateException("Пул соединений закрыт: приложение завершает работу");
+                        }
+                        // Драйвер грузим вместе с пулом: без обращений к БД (d4w.dataSource=memory) он не нужен
+                        loadDriver();
+                        p = new ConnectionPool(
+                                () -> DriverManager.getConnection(URL),
+                                POOL_MIN,
+                                POOL_MAX,
+                                Duration.ofMillis(ACQUIRE_TIMEOUT_MS),
+                                Duration.ofMillis(IDLE_TIMEOUT_MS),
+                                Duration.ofMillis(LEAK_THRESHOLD_MS));
+                        pool = p;
+                    }
+                }
+            }
+            return p;
+        }
+
+        private static void loadDriver() {
             try {
                 Class.forName("sap.jdbc4.sqlanywhere.IDriver");
             }catch (ClassNotFoundException e) {
@@ -19,8 +100,23 @@
             }
         }
 
-        public static Connection getConnection () throws SQLException {
-            return DriverManager.getConnection(URL);
+        /**
+         * Закрывает пул при завершении приложения: ждёт возврата выданных соединений
+         * не дольше {@code grace}, затем закрывает все физические соединения.
+         * Закрытый пул не пересоздаётся: последующие {@link #getConnection()} бросают {@link SQLException}.
+         */
+        public static void shutdown(Duration grace) {
+            ConnectionPool p;
+            synchronized (DatabaseConnection.class) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                p = pool;
+            }
+            if (p != null) {
+                p.close(grace);
+            }
         }
 
     }
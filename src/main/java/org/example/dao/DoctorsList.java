@@ -0,0 +1,130 @@
+package org.example.dao;
+
+import org.example.model.MedicalAccount;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Разбор поля {@code patients_accounts.doctors_list} — id сотрудников через запятую: ",34,57,".
+ *
+ * Разбор идёт по символам строки без split, регулярных выражений и исключений.
+ * {@link #first} и {@link #forEach} ничего не выделяют в куче, {@link #parse} выделяет
+ * только массив результата точного размера.
+ *
+ * Правила те же, что были у прежнего разбора: пробелы вокруг id игнорируются,
+ * токены с нецифровыми символами и числа больше {@link Integer#MAX_VALUE} пропускаются.
+ */
+public final class DoctorsList {
+
+    private static final int INVALID = -1;
+
+    private DoctorsList() {
+    }
+
+    /** Все id врачей в порядке следования ({@link MedicalAccount#NO_DOCTORS}, если врач не указан). */
+    public static int[] parse(String doctorsList) {
+        int count = count(doctorsList);
+        if (count == 0) {
+            return MedicalAccount.NO_DOCTORS;
+        }
+        int[] ids = new int[count];
+        int n = 0;
+        int len = doctorsList.length();
+        int pos = 0;
+        while (n < count) {
+            int end = tokenEnd(doctorsList, pos, len);
+            int id = parseToken(doctorsList, pos, end);
+            if (id != INVALID) {
+                ids[n++] = id;
+            }
+            pos = end + 1;
+        }
+        return ids;
+    }
+
+    /** Первый id врача или -1, если врач не указан. */
+    public static int first(String doctorsList) {
+        if (doctorsList == null) {
+            return INVALID;
+        }
+        int len = doctorsList.length();
+        int pos = 0;
+        while (pos <= len) {
+            int end = tokenEnd(doctorsList, pos, len);
+            int id = parseToken(doctorsList, pos, end);
+            if (id != INVALID) {
+                return id;
+            }
+            pos = end + 1;
+        }
+        return INVALID;
+    }
+
+    /** Передаёт каждый id врача в {@code action}. */
+    public static void forEach(String doctorsList, IntConsumer action) {
+        if (doctorsList == null) {
+            return;
+        }
+        int len = doctorsList.length();
+        int pos = 0;
+        while (pos <= len) {
+            int end = tokenEnd(doctorsList, pos, len);
+            int id = parseToken(doctorsList, pos, end);
+            if (id != INVALID) {
+                action.accept(id);
+            }
+            pos = end + 1;
+        }
+    }
+
+    /** Количество корректных id в строке. */
+    public static int count(String doctorsList) {
+        if (doctorsList == null) {
+            return 0;
+        }
+        int len = doctorsList.length();
+        int count = 0;
+        int pos = 0;
+        while (pos <= len) {
+            int end = tokenEnd(doctorsList, pos, len);
+            if (parseToken(doctorsList, pos, end) != INVALID) {
+                count++;
+            }
+            pos = end + 1;
+        }
+        return count;
+    }
+
+    private static int tokenEnd(String s, int from, int len) {
+        int i = from;
+        while (i < len && s.charAt(i) != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    /** Разбирает s[from, to) как неотрицательное число с пробелами по краям; иначе INVALID. */
+    private static int parseToken(String s, int from, int to) {
+        while (from < to && s.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && s.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                return INVALID;
+            }
+        }
+        return (int) value;
+    }
+}
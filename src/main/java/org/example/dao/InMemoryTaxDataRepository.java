@@ -0,0 +1,486 @@
+package org.example.dao;
+
+import org.example.dao.AccountDao.AccountChange;
+import org.example.dao.AccountDao.ChangeStamp;
+import org.example.dao.AccountDao.PatientActivity;
+import org.example.dao.AccountDao.PatientTotals;
+import org.example.model.MedicalAccount;
+import org.example.model.Money;
+import org.example.model.Patient;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link TaxDataRepository} в памяти — для замеров и нагрузочных тестов без Dental4Windows.
+ *
+ * Данные наполняются через {@link Builder} (обычно {@link ClinicDataGenerator}) и дальше не меняются.
+ * Счета хранятся компактно — суммы в копейках, даты днями эпохи — и отсортированы по пациенту
+ * и дате: выборка по пациенту — двоичный поиск, остальные выборки — один проход по массиву.
+ * Объекты {@link MedicalAccount} и {@link Patient} создаются заново на каждый запрос, как из БД.
+ *
+ * Отбор и порядок строк повторяют SQL {@link AccountDao}. Отмена через {@link QueryHandle}
+ * проверяется по ходу прохода.
+ */
+public class InMemoryTaxDataRepository implements TaxDataRepository {
+
+    private static final String UNKNOWN_DOCTOR = "Неизвестный врач";
+    private static final int CANCEL_CHECK_INTERVAL = 1 << 16;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /** Строка patients_accounts. */
+    private static final class AccountRow {
+        final int id;
+        final int patientId;
+        final int practiceId;
+        final int dateCreated;      // день эпохи
+        final long totalKopecks;
+        final long rebateKopecks;
+        final long paidKopecks;
+        final long updatedAt;       // ts_4_update, секунды эпохи (местное время)
+        final String doctorsList;
+        final String categoryIds;
+        long categoryMask;          // заполняется в build()
+
+        AccountRow(int id, int patientId, int practiceId, int dateCreated, long totalKopecks, long rebateKopecks,
+                   long paidKopecks, long updatedAt, String doctorsList, String categoryIds) {
+            this.id = id;
+            this.patientId = patientId;
+            this.practiceId = practiceId;
+            this.dateCreated = dateCreated;
+            this.totalKopecks = totalKopecks;
+            this.rebateKopecks = rebateKopecks;
+            this.paidKopecks = paidKopecks;
+            this.updatedAt = updatedAt;
+            this.doctorsList = doctorsList;
+            this.categoryIds = categoryIds;
+        }
+    }
+
+    /** Строка patients; {@code practices} — филиалы, где у пациента есть счета (заполняется в build()). */
+    private static final class PatientRow {
+        final int id;
+        final String surname;
+        final String firstname;
+        final String middlename;
+        final int birthDate;        // день эпохи или NO_DATE
+        final String inn;
+        final String cardNumber;
+        int[] practices = new int[0];
+
+        PatientRow(Patient p) {
+            this.id = p.getId();
+            this.surname = p.getSurname();
+            this.firstname = p.getFirstname();
+            this.middlename = p.getMiddlename();
+            this.birthDate = p.getBirthDate() != null ? (int) p.getBirthDate().toEpochDay() : NO_DATE;
+            this.inn = p.getInn();
+            this.cardNumber = p.getCardNumber();
+        }
+    }
+
+    /** Наполнение хранилища. Не потокобезопасен; после {@link #build()} не используется. */
+    public static class Builder {
+        private final Map<Integer, String> categories = new HashMap<>();
+        private final Map<Integer, String> practices = new HashMap<>();
+        private final Map<Integer, String> staff = new HashMap<>();
+        private final List<PatientRow> patients = new ArrayList<>();
+        private final List<AccountRow> accounts = new ArrayList<>();
+
+        /** Раздел процедур (general_procedures_lev_2). */
+        public Builder addCategory(int id, String name) {
+            categories.put(id, name);
+            return this;
+        }
+
+        public Builder addPractice(int id, String name) {
+            practices.put(id, name);
+            return this;
+        }
+
+        /** Активный сотрудник (dba.staff). */
+        public Builder addStaff(int memberId, String surname, String firstname, String middlename) {
+            staff.put(memberId, AccountDao.formatDoctorName(surname, firstname, middlename));
+            return this;
+        }
+
+        public Builder addPatient(Patient patient) {
+            patients.add(new PatientRow(patient));
+            return this;
+        }
+
+        /**
+         * Счёт пациента.
+         *
+         * @param doctorsList  id врачей в формате D4W: ",34,57,"
+         * @param categoryIds  id разделов процедур счёта через запятую: "3,17" (null — без раздела)
+         */
+        public Builder addAccount(int id, int patientId, int practiceId, LocalDate dateCreated,
+                                  long totalKopecks, long rebateKopecks, long paidKopecks,
+                                  LocalDateTime updatedAt, String doctorsList, String categoryIds) {
+            accounts.add(new AccountRow(id, patientId, practiceId, (int) dateCreated.toEpochDay(),
+                    totalKopecks, rebateKopecks, paidKopecks, updatedAt.toEpochSecond(ZoneOffset.UTC),
+                    doctorsList, categoryIds));
+            return this;
+        }
+
+        public InMemoryTaxDataRepository build() {
+            return new InMemoryTaxDataRepository(this);
+        }
+    }
+
+    private final CategoryDictionary categories;
+    private final Map<String, Integer> practices; // по названию
+    private final Map<Integer, String> staff;
+    private final PatientRow[] patients;    // по id
+    private final AccountRow[] accounts;    // по пациенту, дате, id
+
+    private InMemoryTaxDataRepository(Builder b) {
+        this.categories = CategoryDictionary.of(b.categories);
+        Map<String, Integer> byName = new TreeMap<>();
+        b.practices.forEach((id, name) -> byName.merge(name, id, Math::min));
+        this.practices = byName;
+        this.staff = Map.copyOf(b.staff);
+        this.patients = b.patients.toArray(new PatientRow[0]);
+        Arrays.sort(patients, Comparator.comparingInt(p -> p.id));
+        this.accounts = b.accounts.toArray(new AccountRow[0]);
+        Arrays.sort(accounts, Comparator.<AccountRow>comparingInt(a -> a.patientId)
+                .thenComparingInt(a -> a.dateCreated)
+                .thenComparingInt(a -> a.id));
+
+        // Маски разделов: строк "3,17" немного, разбираем каждую один раз
+        Map<String, Long> masks = new HashMap<>();
+        for (AccountRow a : accounts) {
+            if (a.categoryIds != null) {
+                a.categoryMask = masks.computeIfAbsent(a.categoryIds, categories::maskOfIds);
+            }
+        }
+        for (PatientRow p : patients) {
+            int[] range = patientRange(p.id);
+            p.practices = IntStream.range(range[0], range[1])
+                    .map(i -> accounts[i].practiceId)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+        }
+    }
+
+    public int patientCount() {
+        return patients.length;
+    }
+
+    public int accountCount() {
+        return accounts.length;
+    }
+
+    @Override
+    public CategoryDictionary categoryDictionary() {
+        return categories;
+    }
+
+    @Override
+    public CategoryDictionary loadCategories() {
+        return categories;
+    }
+
+    @Override
+    public Map<String, Integer> loadAllPractices(QueryHandle handle) throws SQLException {
+        checkCancelled(handle);
+        return new LinkedHashMap<>(practices);
+    }
+
+    @Override
+    public Map<Integer, String> loadStaff() {
+        return new TreeMap<>(staff);
+    }
+
+    @Override
+    public List<MedicalAccount> findAccountsForTaxReport(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+            throws SQLException {
+        int start = (int) startDate.toEpochDay();
+        int end = (int) endDate.toEpochDay();
+        int[] range = patientRange(patientId);
+        List<AccountRow> rows = new ArrayList<>();
+        for (int i = range[0]; i < range[1]; i++) {
+            checkCancelled(handle, i);
+            AccountRow a = accounts[i];
+            if (a.paidKopecks > 0 && matches(a, practiceId, start, end)) {
+                rows.add(a);
+            }
+        }
+        // ORDER BY pa.date_created DESC
+        rows.sort(Comparator.<AccountRow>comparingInt(a -> a.dateCreated).reversed());
+        List<MedicalAccount> result = new ArrayList<>(rows.size());
+        for (AccountRow a : rows) {
+            result.add(toAccount(a));
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<MedicalAccount> streamAccountsByPatient(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, int fetchSize) {
+        int start = (int) startDate.toEpochDay();
+        int end = (int) endDate.toEpochDay();
+        int[] range = patientRange(patientId);
+        return IntStream.range(range[0], range[1])
+                .mapToObj(i -> accounts[i])
+                .filter(a -> a.paidKopecks > 0 && matches(a, practiceId, start, end))
+                .map(this::toAccount);
+    }
+
+    @Override
+    public List<PatientTotals> findPatientTotalsForTaxReport(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+            throws SQLException {
+        int start = (int) startDate.toEpochDay();
+        int end = (int) endDate.toEpochDay();
+        int[] range = patientRange(patientId);
+        List<PatientTotals> totals = new ArrayList<>();
+        int current = -1;
+        long paid = 0;
+        long rebate = 0;
+        int count = 0;
+        for (int i = range[0]; i < range[1]; i++) {
+            checkCancelled(handle, i);
+            AccountRow a = accounts[i];
+            if (a.paidKopecks <= 0 || !matches(a, practiceId, start, end)) {
+                continue;
+            }
+            if (a.patientId != current) {
+                addTotals(totals, current, paid, rebate, count);
+                current = a.patientId;
+                paid = 0;
+                rebate = 0;
+                count = 0;
+            }
+            paid += a.paidKopecks;
+            rebate += a.rebateKopecks;
+            count++;
+        }
+        addTotals(totals, current, paid, rebate, count);
+        return totals;
+    }
+
+    @Override
+    public ChangeStamp findChangeStamp(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+            throws SQLException {
+        int start = (int) startDate.toEpochDay();
+        int end = (int) endDate.toEpochDay();
+        int[] range = patientRange(patientId);
+        long maxUpdate = Long.MIN_VALUE;
+        int count = 0;
+        for (int i = range[0]; i < range[1]; i++) {
+            checkCancelled(handle, i);
+            AccountRow a = accounts[i];
+            if (matches(a, practiceId, start, end)) {
+                maxUpdate = Math.max(maxUpdate, a.updatedAt);
+                count++;
+            }
+        }
+        return new ChangeStamp(count > 0 ? toDateTime(maxUpdate) : null, count);
+    }
+
+    @Override
+    public void forEachAccountChange(LocalDate createdFrom, LocalDateTime changedSince, Consumer<AccountChange> consumer) {
+        int from = (int) createdFrom.toEpochDay();
+        long since = changedSince != null ? changedSince.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+        for (AccountRow a : accounts) {
+            if (a.dateCreated >= from && a.updatedAt >= since) {
+                consumer.accept(new AccountChange(toAccount(a), toDateTime(a.updatedAt)));
+            }
+        }
+    }
+
+    @Override
+    public List<Patient> findPatientsByQuery(int practiceId, String query, QueryHandle handle) throws SQLException {
+        String exact = query.trim();
+        String like = exact.toLowerCase(Locale.ROOT);
+        List<Patient> found = new ArrayList<>();
+        for (int i = 0; i < patients.length; i++) {
+            checkCancelled(handle, i);
+            PatientRow p = patients[i];
+            if (p.practices.length == 0 || (practiceId > 0 && Arrays.binarySearch(p.practices, practiceId) < 0)) {
+                continue;
+            }
+            if (exact.equals(p.cardNumber) || contains(p.surname, like)
+                    || contains(p.firstname, like) || contains(p.middlename, like)) {
+                found.add(toPatient(p));
+            }
+        }
+        // ORDER BY p.surname, p.firstname
+        found.sort(Comparator.comparing(Patient::getSurname, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(Patient::getFirstname, Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+        return found;
+    }
+
+    @Override
+    public void forEachPatientActivity(LocalDateTime changedSince, Consumer<PatientActivity> consumer) {
+        long since = changedSince != null ? changedSince.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+        Map<Integer, Long> lastUpdateByPractice = new TreeMap<>();
+        for (PatientRow p : patients) {
+            int[] range = patientRange(p.id);
+            lastUpdateByPractice.clear();
+            for (int i = range[0]; i < range[1]; i++) {
+                AccountRow a = accounts[i];
+                if (changedSince == null || a.updatedAt >= since) {
+                    lastUpdateByPractice.merge(a.practiceId, a.updatedAt, Math::max);
+                }
+            }
+            for (Map.Entry<Integer, Long> e : lastUpdateByPractice.entrySet()) {
+                consumer.accept(new PatientActivity(toPatient(p), e.getKey(), toDateTime(e.getValue())));
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Диапазон [from, to) счетов пациента в {@link #accounts}; null — все счета. */
+    private int[] patientRange(Integer patientId) {
+        if (patientId == null) {
+            return new int[]{0, accounts.length};
+        }
+        return new int[]{lowerBound(patientId), lowerBound(patientId + 1)};
+    }
+
+    private int lowerBound(int patientId) {
+        int lo = 0;
+        int hi = accounts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (accounts[mid].patientId < patientId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static boolean matches(AccountRow a, int practiceId, int start, int end) {
+        return a.dateCreated >= start && a.dateCreated <= end
+                && (practiceId <= 0 || a.practiceId == practiceId);
+    }
+
+    private void addTotals(List<PatientTotals> totals, int patientId, long paid, long rebate, int count) {
+        if (count == 0) {
+            return;
+        }
+        PatientRow p = patient(patientId);
+        totals.add(new PatientTotals(patientId,
+                p != null ? p.surname : null,
+                p != null ? p.firstname : null,
+                p != null ? p.middlename : null,
+                p != null ? toDate(p.birthDate) : null,
+                p != null ? p.inn : null,
+                paid, rebate, count));
+    }
+
+    private PatientRow patient(int patientId) {
+        int lo = 0;
+        int hi = patients.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = patients[mid].id;
+            if (id < patientId) {
+                lo = mid + 1;
+            } else if (id > patientId) {
+                hi = mid - 1;
+            } else {
+                return patients[mid];
+            }
+        }
+        return null;
+    }
+
+    private MedicalAccount toAccount(AccountRow a) {
+        MedicalAccount acc = new MedicalAccount();
+        acc.setId(a.id);
+        acc.setPatientId(a.patientId);
+        acc.setPracticeId(a.practiceId);
+        acc.setNumber(String.valueOf(a.id));
+        acc.setDateCreated(LocalDate.ofEpochDay(a.dateCreated));
+        acc.setTotal(Money.toBigDecimal(a.totalKopecks));
+        acc.setRebate(Money.toBigDecimal(a.rebateKopecks));
+        acc.setAmountPaid(Money.toBigDecimal(a.paidKopecks));
+        acc.setPaymentDate(toDateTime(a.updatedAt).toLocalDate());
+        PatientRow p = patient(a.patientId);
+        if (p != null) {
+            acc.setSurname(p.surname);
+            acc.setFirstname(p.firstname);
+            acc.setMiddlename(p.middlename);
+            acc.setBirthDate(toDate(p.birthDate));
+            acc.setInn(p.inn);
+        }
+        int[] doctorIds = DoctorsList.parse(a.doctorsList);
+        acc.setDoctorIds(doctorIds);
+        acc.setDoctorName(doctorNames(doctorIds));
+        acc.setCategoryIds(a.categoryIds);
+        acc.setCategoryMask(a.categoryMask);
+        acc.setCategory(categories.describe(a.categoryMask));
+        return acc;
+    }
+
+    private String doctorNames(int[] doctorIds) {
+        StringBuilder sb = new StringBuilder();
+        for (int doctorId : doctorIds) {
+            if (!sb.isEmpty()) {
+                sb.append(", ");
+            }
+            sb.append(staff.getOrDefault(doctorId, UNKNOWN_DOCTOR));
+        }
+        return sb.toString();
+    }
+
+    private static Patient toPatient(PatientRow row) {
+        Patient p = new Patient();
+        p.setId(row.id);
+        p.setSurname(row.surname);
+        p.setFirstname(row.firstname);
+        p.setMiddlename(row.middlename);
+        p.setBirthDate(toDate(row.birthDate));
+        p.setInn(row.inn);
+        p.setCardNumber(row.cardNumber);
+        return p;
+    }
+
+    private static boolean contains(String value, String lowerCaseQuery) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(lowerCaseQuery);
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private static void checkCancelled(QueryHandle handle) throws SQLException {
+        if (handle != null && handle.isCancelled()) {
+            throw new SQLException("Запрос отменён");
+        }
+    }
+
+    private static void checkCancelled(QueryHandle handle, int row) throws SQLException {
+        if ((row & (CANCEL_CHECK_INTERVAL - 1)) == 0) {
+            checkCancelled(handle);
+        }
+    }
+}
@@ -1,39 +1,66 @@
 
 package org.example.dao;
 
+import org.example.metrics.QueryMetrics;
+
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 public class PracticeDao {
 
+    private static final QueryMetrics LOAD_PRACTICES = QueryMetrics.of("loadAllPractices");
+
     /**
-     * Загружает список филиалов: название → ID
+     * Загружает список филиалов: название → ID, в алфавитном порядке названий.
      * Исключает лаборатории (по названию).
      */
+    public Map<String, Integer> loadAllPractices() throws SQLException {
+        return loadAllPractices(null);
+    }
 
-    public List<String> loadAllPractices() throws SQLException {
+    /**
+     * То же, что {@link #loadAllPractices()}, с таймаутом и отменой через {@code handle}.
+     *
+     * @param handle ручка отмены/таймаута (может быть null)
+     */
+    public Map<String, Integer> loadAllPractices(QueryHandle handle) throws SQLException {
         String sql = """
-            SELECT DISTINCT description AS name
+            SELECT id, description AS name
             FROM dba.practice_locations
             WHERE description NOT LIKE '%Лаборатория%'
               AND description IS NOT NULL
               AND description != ''
-            ORDER BY name
+            ORDER BY name, id
             """;
 
-        List<String> practices = new ArrayList<>();
+        Map<String, Integer> practices = new LinkedHashMap<>();
+        QueryMetrics.Sample sample = LOAD_PRACTICES.start();
         try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             Statement stmt = conn.createStatement()) {
 
-            while (rs.next()) {
-                String name = rs.getString("name").trim();
-                if (!name.isEmpty()) {
-                    practices.add(name);
+            QueryHandle.attach(handle, stmt);
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                sample.executed();
+                while (rs.next()) {
+                    long m = sample.mapStart();
+                    String name = rs.getString("name").trim();
+                    if (!name.isEmpty()) {
+                        // Одноимённые записи — берём первую, как раньше давал DISTINCT
+                        practices.putIfAbsent(name, rs.getInt("id"));
+                    }
+                    sample.mapped(m);
                 }
+                sample.fetched();
+            } finally {
+                QueryHandle.detach(handle);
             }
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
         }
         return practices;
     }
@@ -0,0 +1,83 @@
+package org.example.dao;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Ручка для управления выполняющимся запросом из другого потока.
+ *
+ * DAO регистрирует в ней свой {@link Statement} на время выполнения; вызов {@link #cancel()}
+ * вызывает {@link Statement#cancel()}, и сервер прекращает выполнение запроса.
+ * Если отмена случилась до начала запроса, он не будет запущен.
+ * Если задан таймаут, он выставляется каждому запросу через {@link Statement#setQueryTimeout(int)}.
+ */
+public class QueryHandle {
+
+    private final int queryTimeoutSeconds;
+    private Statement statement; // guarded by this
+    private boolean cancelled;   // guarded by this
+
+    public QueryHandle() {
+        this(0);
+    }
+
+    /**
+     * @param queryTimeoutSeconds таймаут каждого запроса на сервере (0 — без таймаута)
+     */
+    public QueryHandle(int queryTimeoutSeconds) {
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+
+    /** Отменяет запрос (текущий или ещё не начатый). Повторный вызов безопасен. */
+    public void cancel() {
+        Statement running;
+        synchronized (this) {
+            cancelled = true;
+            running = statement;
+        }
+        if (running != null) {
+            try {
+                running.cancel();
+            } catch (SQLException ignored) {
+                // запрос мог уже завершиться
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Регистрирует выполняющийся запрос и выставляет ему таймаут.
+     * Бросает исключение, если ручка уже отменена.
+     */
+    synchronized void attach(Statement stmt) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Запрос отменён");
+        }
+        if (queryTimeoutSeconds > 0) {
+            stmt.setQueryTimeout(queryTimeoutSeconds);
+        }
+        statement = stmt;
+    }
+
+    /** Снимает регистрацию после завершения запроса. */
+    synchronized void detach() {
+        statement = null;
+    }
+
+    /** Регистрирует запрос в ручке, если она задана. */
+    static void attach(QueryHandle handle, Statement stmt) throws SQLException {
+        if (handle != null) {
+            handle.attach(stmt);
+        }
+    }
+
+    /** Снимает регистрацию, если ручка задана. */
+    static void detach(QueryHandle handle) {
+        if (handle != null) {
+            handle.detach();
+        }
+    }
+}
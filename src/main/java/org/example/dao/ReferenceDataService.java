@@ -0,0 +1,170 @@
+package org.example.dao;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Справочники приложения: категории процедур, филиалы и сотрудники.
+ *
+ * Справочники меняются редко, а нужны многим: таблице платежей, настройкам, выгрузке
+ * и каждому новому окну. Поэтому каждый загружается один раз и хранится как неизменяемый
+ * снимок. Если снимка ещё нет и его одновременно запросили несколько потоков, к БД уходит
+ * один запрос, остальные ждут его результата (single-flight).
+ *
+ * Снимки перечитываются только явно — {@link #refresh()} или {@code refresh*} по отдельности
+ * (например, после правки разделов в D4W). Сотрудников обслуживает {@link StaffDirectory}
+ * со своим фоновым обновлением; {@link #refresh()} перечитывает и его.
+ */
+public class ReferenceDataService {
+
+    private static final ReferenceDataService SHARED = new ReferenceDataService(
+            () -> TaxDataRepository.shared().loadCategories(),
+            () -> Collections.unmodifiableMap(new LinkedHashMap<>(TaxDataRepository.shared().loadAllPractices(null))),
+            StaffDirectory.shared());
+
+    /** Загрузка справочника из БД. */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    private final SingleFlight<CategoryDictionary> categories;
+    private final SingleFlight<Map<String, Integer>> practices;
+    private final StaffDirectory staff;
+    private final LongAdder loads = new LongAdder();
+
+    /**
+     * @param practices загрузчик должен возвращать неизменяемое отображение название → id
+     */
+    public ReferenceDataService(Loader<CategoryDictionary> categories, Loader<Map<String, Integer>> practices, StaffDirectory staff) {
+        this.categories = new SingleFlight<>(categories);
+        this.practices = new SingleFlight<>(practices);
+        this.staff = staff;
+    }
+
+    /** Общий сервис справочников приложения. */
+    public static ReferenceDataService shared() {
+        return SHARED;
+    }
+
+    /** Словарь категорий процедур; при первом обращении загружается из БД. */
+    public CategoryDictionary categories() throws SQLException {
+        return categories.get();
+    }
+
+    /** Названия категорий в алфавитном порядке (неизменяемое множество). */
+    public Set<String> categoryNames() throws SQLException {
+        return categories().allNames();
+    }
+
+    /** Филиалы: название → id (неизменяемо); при первом обращении загружаются из БД. */
+    public Map<String, Integer> practices() throws SQLException {
+        return practices.get();
+    }
+
+    /** Справочник сотрудников. */
+    public StaffDirectory staff() {
+        return staff;
+    }
+
+    /** Перечитывает словарь категорий. */
+    public CategoryDictionary refreshCategories() throws SQLException {
+        return categories.refresh();
+    }
+
+    /** Перечитывает список филиалов. */
+    public Map<String, Integer> refreshPractices() throws SQLException {
+        return practices.refresh();
+    }
+
+    /** Перечитывает все справочники. */
+    public void refresh() throws SQLException {
+        refreshCategories();
+        refreshPractices();
+        staff.refresh();
+    }
+
+    /** Сколько раз справочники загружались из БД (категории и филиалы). */
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    /** Снимок справочника, который загружается не больше чем одним запросом одновременно. */
+    private final class SingleFlight<T> {
+        private final Loader<T> loader;
+        private volatile T value;
+        private CompletableFuture<T> loading; // guarded by this
+
+        SingleFlight(Loader<T> loader) {
+            this.loader = loader;
+        }
+
+        T get() throws SQLException {
+            T v = value;
+            return v != null ? v : await(start(false));
+        }
+
+        T refresh() throws SQLException {
+            return await(start(true));
+        }
+
+        /** Запускает загрузку в текущем потоке или присоединяется к уже идущей. */
+        private CompletableFuture<T> start(boolean force) {
+            CompletableFuture<T> f;
+            boolean owner = false;
+            synchronized (this) {
+                if (!force && value != null) {
+                    return CompletableFuture.completedFuture(value);
+                }
+                if (loading == null) {
+                    loading = new CompletableFuture<>();
+                    owner = true;
+                }
+                f = loading;
+            }
+            if (owner) {
+                try {
+                    T v = loader.load();
+                    loads.increment();
+                    value = v;
+                    f.complete(v);
+                } catch (Throwable e) {
+                    f.completeExceptionally(e);
+                } finally {
+                    synchronized (this) {
+                        loading = null;
+                    }
+                }
+            }
+            return f;
+        }
+
+        private T await(CompletableFuture<T> f) throws SQLException {
+            try {
+                return f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Ожидание загрузки справочника прервано");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException sql) {
+                    throw sql;
+                }
+                if (cause instanceof RuntimeException re) {
+                    throw re;
+                }
+                if (cause instanceof Error err) {
+                    throw err;
+                }
+                throw new SQLException("Не удалось загрузить справочник", cause);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.example.dao;
+
+import org.example.metrics.MetricsRegistry;
+import org.example.metrics.QueryMetrics;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Кэш справочника сотрудников (dba.staff) на весь процесс.
+ *
+ * Список врачей меняется редко, а ФИО запрашиваются тысячи раз за годовую выгрузку,
+ * поэтому справочник загружается целиком одним запросом и хранится как неизменяемый снимок:
+ * отсортированный массив member_id и параллельный массив готовых строк "Фамилия И.О.".
+ * Поиск — двоичный поиск по int[], без упаковки id и без аллокаций.
+ *
+ * Снимок обновляется в фоне раз в TTL. Если снимок устарел (например, фоновое обновление
+ * не удалось), первый же запрос ставит в очередь одно асинхронное обновление, а все остальные
+ * продолжают читать старый снимок — лавины одинаковых запросов к БД не возникает:
+ * • пока обновление стоит в очереди или выполняется, новое не ставится;
+ * • задача из очереди не ходит в БД, если снимок к тому времени уже свежий;
+ * • после неудачной загрузки следующая попытка — не раньше чем через {@code d4w.staff.retrySeconds}.
+ */
+public class StaffDirectory {
+
+    private static final Logger LOG = Logger.getLogger(StaffDirectory.class.getName());
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(Long.getLong("d4w.staff.ttlMinutes", 15));
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("d4w.staff.retrySeconds", 30));
+
+    private static final StaffDirectory SHARED = new StaffDirectory(() -> TaxDataRepository.shared().loadStaff(), DEFAULT_TTL);
+
+    private static final QueryMetrics LOAD_STAFF = QueryMetrics.of("loadStaff");
+
+    static {
+        MetricsRegistry.shared().gauge("staff.hits", SHARED::getHitCount);
+        MetricsRegistry.shared().gauge("staff.misses", SHARED::getMissCount);
+    }
+
+    /** Источник полного списка сотрудников: member_id → "Фамилия И.О.". */
+    @FunctionalInterface
+    public interface Loader {
+        Map<Integer, String> loadAll() throws SQLException;
+    }
+
+    /** Неизменяемый снимок справочника. */
+    private record Snapshot(int[] ids, String[] names, long loadedAt) {
+        static final Snapshot EMPTY = new Snapshot(new int[0], new String[0], Long.MIN_VALUE / 2);
+    }
+
+    private final Loader loader;
+    private final long ttlNanos;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile long lastFailureAt = Long.MIN_VALUE / 2;
+    private volatile ScheduledExecutorService scheduler;
+
+    public StaffDirectory(Loader loader, Duration ttl) {
+        this.loader = loader;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /** Общий справочник приложения. */
+    public static StaffDirectory shared() {
+        return SHARED;
+    }
+
+    /**
+     * Запускает фоновое обслуживание: немедленную загрузку (прогрев) и обновление раз в TTL.
+     * Повторный вызов ничего не делает.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "d4w-staff-directory");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodNanos = Math.max(ttlNanos, TimeUnit.SECONDS.toNanos(1));
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Останавливает фоновое обновление (кэш остаётся доступен для чтения). */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Синхронно перечитывает справочник одним запросом.
+     * Если обновление уже идёт в другом потоке, повторно БД не опрашивается.
+     */
+    public void refresh() throws SQLException {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Snapshot fresh = snapshotOf(loader.loadAll(), System.nanoTime());
+            synchronized (this) {
+                snapshot = fresh;
+            }
+            refreshes.increment();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Подставляет список, сохранённый раньше (например, в локальной копии), если справочник
+     * ещё ни разу не загружался из БД. Такой снимок сразу считается устаревшим: первый же
+     * запрос поставит обновление, а пока БД недоступна, ФИО берутся из него.
+     *
+     * @return {@code true}, если список подставлен
+     */
+    public synchronized boolean seed(Map<Integer, String> names) {
+        if (snapshot != Snapshot.EMPTY || names.isEmpty()) {
+            return false;
+        }
+        snapshot = snapshotOf(names, Snapshot.EMPTY.loadedAt());
+        return true;
+    }
+
+    /**
+     * Возвращает готовую строку "Фамилия И.О." или {@code null}, если сотрудника нет в кэше.
+     * Устаревший снимок продолжает обслуживать запросы, пока в фоне идёт обновление.
+     */
+    public String findName(int memberId) {
+        Snapshot s = snapshot;
+        if (isStale(s)) {
+            refreshAsync();
+        }
+        int idx = Arrays.binarySearch(s.ids(), memberId);
+        if (idx >= 0) {
+            hits.increment();
+            return s.names()[idx];
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Количество сотрудников в текущем снимке. */
+    public int size() {
+        return snapshot.ids().length;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    public long getRefreshFailureCount() {
+        return refreshFailures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "StaffDirectory[size=" + size()
+                + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount()
+                + ", refreshes=" + getRefreshCount()
+                + ", failures=" + getRefreshFailureCount() + "]";
+    }
+
+    // ---------------------------------------------------------------------
+
+    private static Snapshot snapshotOf(Map<Integer, String> all, long loadedAt) {
+        int[] ids = new int[all.size()];
+        String[] names = new String[all.size()];
+        int i = 0;
+        for (Map.Entry<Integer, String> e : new TreeMap<>(all).entrySet()) {
+            ids[i] = e.getKey();
+            names[i] = e.getValue();
+            i++;
+        }
+        return new Snapshot(ids, names, loadedAt);
+    }
+
+    private boolean isStale(Snapshot s) {
+        return System.nanoTime() - s.loadedAt() > ttlNanos;
+    }
+
+    /** Ставит в очередь одно обновление; остальные вызовы, пока оно не выполнено, ничего не делают. */
+    private void refreshAsync() {
+        ScheduledExecutorService s = scheduler;
+        if (s == null || refreshing.get() || System.nanoTime() - lastFailureAt < RETRY_NANOS
+                || !refreshScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            s.execute(() -> {
+                try {
+                    // Пока задача ждала очереди, снимок могло обновить плановое обновление
+                    if (isStale(snapshot)) {
+                        refreshQuietly();
+                    }
+                } finally {
+                    refreshScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) { // справочник остановлен
+            refreshScheduled.set(false);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (SQLException | RuntimeException e) {
+            lastFailureAt = System.nanoTime();
+            refreshFailures.increment();
+            LOG.log(Level.WARNING, "Не удалось обновить справочник сотрудников", e);
+        }
+    }
+
+    /** Загружает всех активных сотрудников одним запросом. */
+    public static Map<Integer, String> loadFromDatabase() throws SQLException {
+        String sql = """
+            SELECT member_id, surname, firstname, middlename
+            FROM dba.staff
+            WHERE is_active = 'Y'
+            """;
+
+        Map<Integer, String> names = new TreeMap<>();
+        QueryMetrics.Sample sample = LOAD_STAFF.start();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            sample.executed();
+            while (rs.next()) {
+                long m = sample.mapStart();
+                names.put(rs.getInt("member_id"), AccountDao.formatDoctorName(
+                        rs.getString("surname"),
+                        rs.getString("firstname"),
+                        rs.getString("middlename")));
+                sample.mapped(m);
+            }
+            sample.fetched();
+        } catch (SQLException | RuntimeException e) {
+            sample.failed();
+            throw e;
+        } finally {
+            sample.stop();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,112 @@
+package org.example.dao;
+
+import org.example.dao.AccountDao.AccountChange;
+import org.example.dao.AccountDao.ChangeStamp;
+import org.example.dao.AccountDao.PatientActivity;
+import org.example.dao.AccountDao.PatientTotals;
+import org.example.model.MedicalAccount;
+import org.example.model.Patient;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Источник данных справки: счета, пациенты и справочники (категории, филиалы, сотрудники).
+ *
+ * Рабочая реализация — {@link AccountDao} поверх Dental4Windows. {@link InMemoryTaxDataRepository}
+ * держит данные в памяти и вместе с {@link ClinicDataGenerator} позволяет гонять замеры и
+ * нагрузочные тесты без сервера SQL Anywhere.
+ *
+ * Общий источник приложения ({@link #shared()}) выбирается настройкой {@code d4w.dataSource}:
+ * {@code jdbc} (по умолчанию) или {@code memory} — сгенерированная клиника, размер которой
+ * задают {@code d4w.memory.patients}, {@code d4w.memory.accounts} и {@code d4w.memory.seed};
+ * счета идут до {@code d4w.memory.lastYear} (по умолчанию — текущего года, чтобы в окне
+ * были свежие платежи; для воспроизводимых замеров год задают явно).
+ *
+ * Смысл методов — как у одноимённых методов {@link AccountDao}.
+ */
+public interface TaxDataRepository {
+
+    /** Общий источник данных приложения (создаётся при первом обращении). */
+    static TaxDataRepository shared() {
+        return Shared.INSTANCE;
+    }
+
+    /** Словарь категорий, по которому счета получают маску категорий. */
+    CategoryDictionary categoryDictionary() throws SQLException;
+
+    /** Загружает словарь категорий заново (для {@link ReferenceDataService}). */
+    CategoryDictionary loadCategories() throws SQLException;
+
+    /** Филиалы: название → id, в алфавитном порядке названий. */
+    Map<String, Integer> loadAllPractices(QueryHandle handle) throws SQLException;
+
+    /** Активные сотрудники: member_id → "Фамилия И.О." (для {@link StaffDirectory}). */
+    Map<Integer, String> loadStaff() throws SQLException;
+
+    List<MedicalAccount> findAccountsForTaxReport(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+            throws SQLException;
+
+    default List<MedicalAccount> findAccountsForTaxReport(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId) throws SQLException {
+        return findAccountsForTaxReport(practiceId, startDate, endDate, patientId, null);
+    }
+
+    /** Счета периода, упорядоченные по пациенту; поток обязательно закрывать. */
+    Stream<MedicalAccount> streamAccountsByPatient(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, int fetchSize)
+            throws SQLException;
+
+    List<PatientTotals> findPatientTotalsForTaxReport(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+            throws SQLException;
+
+    default List<PatientTotals> findPatientTotalsForTaxReport(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId) throws SQLException {
+        return findPatientTotalsForTaxReport(practiceId, startDate, endDate, patientId, null);
+    }
+
+    ChangeStamp findChangeStamp(
+            int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+            throws SQLException;
+
+    void forEachAccountChange(LocalDate createdFrom, LocalDateTime changedSince, Consumer<AccountChange> consumer)
+            throws SQLException;
+
+    List<Patient> findPatientsByQuery(int practiceId, String query, QueryHandle handle) throws SQLException;
+
+    default List<Patient> findPatientsByQuery(int practiceId, String query) throws SQLException {
+        return findPatientsByQuery(practiceId, query, null);
+    }
+
+    void forEachPatientActivity(LocalDateTime changedSince, Consumer<PatientActivity> consumer) throws SQLException;
+
+    /** Ленивая инициализация общего источника. */
+    final class Shared {
+        private static final TaxDataRepository INSTANCE = create();
+
+        private Shared() {
+        }
+
+        private static TaxDataRepository create() {
+            if (!"memory".equalsIgnoreCase(System.getProperty("d4w.dataSource", "jdbc"))) {
+                return new AccountDao();
+            }
+            ClinicDataGenerator.Options options = new ClinicDataGenerator.Options();
+            options.setPatients(Integer.getInteger("d4w.memory.patients", options.getPatients()));
+            options.setAccounts(Integer.getInteger("d4w.memory.accounts", options.getAccounts()));
+            options.setSeed(Long.getLong("d4w.memory.seed", options.getSeed()));
+            options.setLastYear(Integer.getInteger("d4w.memory.lastYear", LocalDate.now().getYear()));
+            Logger.getLogger(TaxDataRepository.class.getName()).info("Источник данных — сгенерированная клиника в памяти: "
+                    + options.getPatients() + " пациентов, " + options.getAccounts() + " счетов");
+            return new ClinicDataGenerator(options).generate();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Обёртка над {@link SQLException} для мест, где проверяемое исключение
+ * нельзя пробросить напрямую (Stream, Consumer и т.п.).
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-событие формирования файла одной справки (PDF или XML).
+ */
+@Name("org.example.CertificateRender")
+@Label("Certificate Render")
+@Category({"D4W", "Report"})
+@Description("Формирование файла справки для одного пациента")
+@StackTrace(false)
+public final class CertificateRenderEvent extends Event {
+
+    @Label("Patient Id")
+    public int patientId;
+
+    @Label("Year")
+    public int year;
+
+    @Label("Format")
+    public String format;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Failed")
+    public boolean failed;
+}
@@ -0,0 +1,124 @@
+package org.example.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Реестр метрик процесса: таймеры ({@link Timer}), счётчики и показатели (gauge).
+ *
+ * Метрики создаются при первом обращении по имени и дальше живут весь процесс; горячий
+ * код держит ссылку на таймер или счётчик в поле и при записи не обращается к реестру.
+ * Имена — через точку: {@code sql.findAccountsForTaxReport.execute}, {@code pool.acquire}.
+ *
+ * Снимок выводится текстом ({@link #format()}) для окна диагностики и раз в
+ * {@code d4w.metrics.logSeconds} секунд одной строкой в журнал ({@link #startLogging()}).
+ */
+public final class MetricsRegistry {
+
+    private static final Logger LOG = Logger.getLogger(MetricsRegistry.class.getName());
+
+    private static final long LOG_PERIOD_SECONDS = Long.getLong("d4w.metrics.logSeconds", 300);
+
+    private static final MetricsRegistry SHARED = new MetricsRegistry();
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /** Общий реестр приложения. */
+    public static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /** Регистрирует показатель, который читается при выводе (размер пула, очередь задач и т.п.). */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /** Все метрики, по одной на строку, в алфавитном порядке. */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Timer> e : new TreeMap<>(timers).entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue().summary()).append('\n');
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LongSupplier> e : new TreeMap<>(gauges).entrySet()) {
+            sb.append(e.getKey()).append(": ").append(readGauge(e.getValue())).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** Ненулевые метрики одной строкой для журнала. */
+    public String formatLine() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Timer> e : new TreeMap<>(timers).entrySet()) {
+            if (e.getValue().count() > 0) {
+                append(sb, e.getKey(), e.getValue().summary());
+            }
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+            long value = e.getValue().sum();
+            if (value != 0) {
+                append(sb, e.getKey(), String.valueOf(value));
+            }
+        }
+        for (Map.Entry<String, LongSupplier> e : new TreeMap<>(gauges).entrySet()) {
+            append(sb, e.getKey(), String.valueOf(readGauge(e.getValue())));
+        }
+        return sb.toString();
+    }
+
+    /** Запускает периодический вывод метрик в журнал (0 в настройке — не выводить). */
+    public synchronized void startLogging() {
+        if (scheduler != null || LOG_PERIOD_SECONDS <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "d4w-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(() -> LOG.info("Метрики: " + formatLine()),
+                LOG_PERIOD_SECONDS, LOG_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stopLogging() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static void append(StringBuilder sb, String name, String value) {
+        if (!sb.isEmpty()) {
+            sb.append("; ");
+        }
+        sb.append(name).append(' ').append(value);
+    }
+
+    private static long readGauge(LongSupplier gauge) {
+        try {
+            return gauge.getAsLong();
+        } catch (RuntimeException e) {
+            return -1; // источник показателя уже закрыт
+        }
+    }
+}
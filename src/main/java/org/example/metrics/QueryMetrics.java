@@ -0,0 +1,120 @@
+package org.example.metrics;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики одного SQL-запроса DAO по фазам:
+ *
+ * • {@code sql.<имя>.execute} — от начала вызова до ответа {@code executeQuery}
+ *   (получение соединения, подготовка, выполнение на сервере);
+ * • {@code sql.<имя>.fetch} — чтение строк вместе с разбором;
+ * • {@code sql.<имя>.map} — из них разбор строк в объекты;
+ * • {@code sql.<имя>.total} — весь вызов, включая постобработку;
+ * • счётчики {@code sql.<имя>.rows} и {@code sql.<имя>.errors}.
+ *
+ * Получение соединения отдельно меряет {@code pool.acquire} (см. DatabaseConnection).
+ * Каждый вызов также пишется в JFR как {@link SqlExecutionEvent}, если запись включена.
+ * Экземпляр на запрос создаётся один раз и хранится в статическом поле DAO.
+ */
+public final class QueryMetrics {
+
+    private final String query;
+    private final Timer execute;
+    private final Timer fetch;
+    private final Timer map;
+    private final Timer total;
+    private final LongAdder rows;
+    private final LongAdder errors;
+
+    private QueryMetrics(MetricsRegistry registry, String query) {
+        this.query = query;
+        String prefix = "sql." + query + ".";
+        this.execute = registry.timer(prefix + "execute");
+        this.fetch = registry.timer(prefix + "fetch");
+        this.map = registry.timer(prefix + "map");
+        this.total = registry.timer(prefix + "total");
+        this.rows = registry.counter(prefix + "rows");
+        this.errors = registry.counter(prefix + "errors");
+    }
+
+    /** Метрики запроса в общем реестре. */
+    public static QueryMetrics of(String query) {
+        return new QueryMetrics(MetricsRegistry.shared(), query);
+    }
+
+    /** Начинает замер одного вызова без параметров. */
+    public Sample start() {
+        return new Sample(List.of());
+    }
+
+    /**
+     * Начинает замер одного вызова.
+     *
+     * @param params параметры запроса — в JFR-событие попадает только их хэш
+     */
+    public Sample start(List<?> params) {
+        return new Sample(params);
+    }
+
+    /** Замер одного вызова; не потокобезопасен — принадлежит вызывающему потоку. */
+    public final class Sample {
+        private final SqlExecutionEvent event = new SqlExecutionEvent();
+        private final List<?> params;
+        private final long startNanos = System.nanoTime();
+        private long phaseNanos = startNanos;
+        private long mapNanos;
+        private long rowCount;
+
+        private Sample(List<?> params) {
+            this.params = params;
+            event.begin();
+        }
+
+        /** {@code executeQuery} вернул результат. */
+        public void executed() {
+            long now = System.nanoTime();
+            execute.record(now - phaseNanos);
+            phaseNanos = now;
+        }
+
+        /** Засекает начало разбора строки. */
+        public long mapStart() {
+            return System.nanoTime();
+        }
+
+        /** Строка разобрана (начало — из {@link #mapStart()}). */
+        public void mapped(long mapStartNanos) {
+            mapNanos += System.nanoTime() - mapStartNanos;
+            rowCount++;
+        }
+
+        /** Все строки прочитаны. */
+        public void fetched() {
+            long now = System.nanoTime();
+            fetch.record(now - phaseNanos);
+            map.record(mapNanos);
+            rows.add(rowCount);
+            phaseNanos = now;
+        }
+
+        /** Вызов завершился ошибкой. */
+        public void failed() {
+            errors.increment();
+            event.failed = true;
+        }
+
+        /** Вызов завершён (успешно или нет). */
+        public void stop() {
+            total.recordSince(startNanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.queryId = query;
+                event.parametersHash = Objects.hashCode(params);
+                event.rowCount = rowCount;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-событие одного SQL-вызова DAO (см. {@link QueryMetrics}).
+ *
+ * Текст запроса и значения параметров в событие не попадают — в них ФИО и ИНН пациентов;
+ * одинаковые вызовы узнаются по хэшу параметров. Поток и стек JFR записывает сам.
+ */
+@Name("org.example.SqlExecution")
+@Label("SQL Execution")
+@Category({"D4W", "SQL"})
+@Description("Выполнение SQL-запроса DAO: от получения соединения до чтения последней строки")
+@StackTrace(false)
+public final class SqlExecutionEvent extends Event {
+
+    @Label("Query")
+    public String queryId;
+
+    @Label("Parameters Hash")
+    public int parametersHash;
+
+    @Label("Rows")
+    public long rowCount;
+
+    @Label("Failed")
+    public boolean failed;
+}
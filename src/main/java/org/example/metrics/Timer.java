@@ -0,0 +1,108 @@
+package org.example.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей с логарифмическими корзинами.
+ *
+ * Корзина {@code i} — длительности от 2^i до 2^(i+1) микросекунд, поэтому перцентили
+ * оцениваются с точностью до двух раз — для поиска «где тормозит» этого достаточно.
+ * Запись — несколько {@link LongAdder#increment()} без блокировок и аллокаций.
+ */
+public final class Timer {
+
+    private static final int BUCKETS = 32; // до 2^32 мкс ≈ 71 минуты
+
+    private final String name;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    Timer(String name) {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Записывает одну длительность. */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1_000;
+        int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /** Записывает время, прошедшее с {@code startNanos} ({@link System#nanoTime()}). */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Оценка перцентиля сверху: граница корзины, в которую попал перцентиль
+     * (но не больше максимума).
+     *
+     * @param quantile от 0 до 1, например 0.95
+     */
+    public long percentileNanos(double quantile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min((1L << (i + 1)) * 1_000, maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    /** Строка вида "n=12 avg=3.1мс p50=2.0мс p95=8.2мс max=9.4мс". */
+    public String summary() {
+        long n = count();
+        if (n == 0) {
+            return "n=0";
+        }
+        return "n=" + n
+                + " avg=" + millis(totalNanos() / n)
+                + " p50=" + millis(percentileNanos(0.5))
+                + " p95=" + millis(percentileNanos(0.95))
+                + " max=" + millis(maxNanos());
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1fмс", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-событие фоновой задачи окна: от запуска до момента, когда результат
+ * дошёл до UI-потока. Поток события — тот, что запустил задачу (обычно UI-поток).
+ */
+@Name("org.example.UiTask")
+@Label("UI Background Task")
+@Category({"D4W", "UI"})
+@Description("Фоновая задача окна: запуск, выполнение и передача результата в UI-поток")
+@StackTrace(false)
+public final class UiTaskEvent extends Event {
+
+    @Label("Task")
+    public String task;
+
+    /** ok, error, cancelled или timeout. */
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Error")
+    public String error;
+}
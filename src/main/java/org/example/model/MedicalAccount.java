@@ -1,16 +1,24 @@
 package org.example.model;
 
 import javafx.beans.property.*;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.Date;
-import javafx.beans.property.*;
 
 @Data
 public class MedicalAccount {
+    /** Пустой список врачей — общий для всех счетов без врача. */
+    public static final int[] NO_DOCTORS = new int[0];
+
     private int id;
+    private int patientId;
+    private int practiceId;
     private String number;
     private LocalDate dateCreated;
     private BigDecimal total;
@@ -22,48 +30,269 @@ public class MedicalAccount {
     private LocalDate birthDate;
     private String inn;
     private String doctorName = "";
+    private int[] doctorIds = NO_DOCTORS; // staff.member_id всех врачей счёта (doctors_list)
     private String category;
+    private String categoryIds; // разделы процедур счёта как в БД: general_procedures_lev_2.id через запятую
+    private long categoryMask; // те же разделы — биты CategoryDictionary
     private boolean selected = true;
     private BigDecimal paymentAmount;
     private LocalDate paymentDate;
 
+    // JavaFX-свойства создаются при первом обращении и кэшируются: TableView
+    // запрашивает их на каждое обновление ячейки. Изменение свойства (например,
+    // флажок «Включить») записывается в поле, сеттер поля обновляет свойство.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient FxProperties fx;
+
+    private static final class FxProperties {
+        StringProperty number;
+        ObjectProperty<LocalDate> dateCreated;
+        ObjectProperty<BigDecimal> total;
+        ObjectProperty<BigDecimal> rebate;
+        ObjectProperty<BigDecimal> amountPaid;
+        StringProperty surname;
+        StringProperty firstname;
+        StringProperty doctorName;
+        StringProperty category;
+        BooleanProperty selected;
+        ObjectProperty<BigDecimal> paymentAmount;
+        ObjectProperty<LocalDate> paymentDate;
+    }
+
+    private FxProperties fx() {
+        if (fx == null) {
+            fx = new FxProperties();
+        }
+        return fx;
+    }
+
     // JavaFX Property-методы
 
-    
-    public StringProperty numberProperty() { return new SimpleStringProperty(number); }
-    public ObjectProperty<LocalDate> dateCreatedProperty() { return new SimpleObjectProperty<>(dateCreated); }
-    public ObjectProperty<BigDecimal> totalProperty() { return new SimpleObjectProperty<>(total); }
-    public StringProperty surnameProperty() { return new SimpleStringProperty(surname); }
-    public StringProperty firstnameProperty() { return new SimpleStringProperty(firstname); }
-    public StringProperty categoryProperty() { return new SimpleStringProperty(category); }
-    public BooleanProperty selectedProperty() { return new SimpleBooleanProperty(selected); }
-    public void setSelected(boolean selected) { this.selected = selected; }
-    public boolean isSelected() { return selected; }
+    public StringProperty numberProperty() {
+        FxProperties p = fx();
+        if (p.number == null) {
+            p.number = new SimpleStringProperty(this, "number", number);
+            p.number.addListener((obs, old, value) -> number = value);
+        }
+        return p.number;
+    }
+
+    public ObjectProperty<LocalDate> dateCreatedProperty() {
+        FxProperties p = fx();
+        if (p.dateCreated == null) {
+            p.dateCreated = new SimpleObjectProperty<>(this, "dateCreated", dateCreated);
+            p.dateCreated.addListener((obs, old, value) -> dateCreated = value);
+        }
+        return p.dateCreated;
+    }
+
+    public ObjectProperty<BigDecimal> totalProperty() {
+        FxProperties p = fx();
+        if (p.total == null) {
+            p.total = new SimpleObjectProperty<>(this, "total", total);
+            p.total.addListener((obs, old, value) -> total = value);
+        }
+        return p.total;
+    }
+
+    public ObjectProperty<BigDecimal> rebateProperty() {
+        FxProperties p = fx();
+        if (p.rebate == null) {
+            p.rebate = new SimpleObjectProperty<>(this, "rebate", rebate);
+            p.rebate.addListener((obs, old, value) -> rebate = value);
+        }
+        return p.rebate;
+    }
+
     public ObjectProperty<BigDecimal> amountPaidProperty() {
-        return new SimpleObjectProperty<>(amountPaid);
+        FxProperties p = fx();
+        if (p.amountPaid == null) {
+            p.amountPaid = new SimpleObjectProperty<>(this, "amountPaid", amountPaid);
+            p.amountPaid.addListener((obs, old, value) -> amountPaid = value);
+        }
+        return p.amountPaid;
+    }
+
+    public StringProperty surnameProperty() {
+        FxProperties p = fx();
+        if (p.surname == null) {
+            p.surname = new SimpleStringProperty(this, "surname", surname);
+            p.surname.addListener((obs, old, value) -> surname = value);
+        }
+        return p.surname;
     }
-    public void setCategory(String category) { this.category = category; }
 
-    public String getNumber() { return number; }
-    public void setNumber(String number) { this.number = number; }
+    public StringProperty firstnameProperty() {
+        FxProperties p = fx();
+        if (p.firstname == null) {
+            p.firstname = new SimpleStringProperty(this, "firstname", firstname);
+            p.firstname.addListener((obs, old, value) -> firstname = value);
+        }
+        return p.firstname;
+    }
+
+    public StringProperty doctorNameProperty() {
+        FxProperties p = fx();
+        if (p.doctorName == null) {
+            p.doctorName = new SimpleStringProperty(this, "doctorName", doctorName);
+            p.doctorName.addListener((obs, old, value) -> doctorName = value);
+        }
+        return p.doctorName;
+    }
 
+    public StringProperty categoryProperty() {
+        FxProperties p = fx();
+        if (p.category == null) {
+            p.category = new SimpleStringProperty(this, "category", category);
+            p.category.addListener((obs, old, value) -> category = value);
+        }
+        return p.category;
+    }
+
+    public BooleanProperty selectedProperty() {
+        FxProperties p = fx();
+        if (p.selected == null) {
+            p.selected = new SimpleBooleanProperty(this, "selected", selected);
+            p.selected.addListener((obs, old, value) -> selected = value);
+        }
+        return p.selected;
+    }
 
     public ObjectProperty<BigDecimal> paymentAmountProperty() {
-        return new SimpleObjectProperty<>(paymentAmount);
+        FxProperties p = fx();
+        if (p.paymentAmount == null) {
+            p.paymentAmount = new SimpleObjectProperty<>(this, "paymentAmount", paymentAmount);
+            p.paymentAmount.addListener((obs, old, value) -> paymentAmount = value);
+        }
+        return p.paymentAmount;
     }
 
     public ObjectProperty<LocalDate> paymentDateProperty() {
-        return new SimpleObjectProperty<>(paymentDate);
+        FxProperties p = fx();
+        if (p.paymentDate == null) {
+            p.paymentDate = new SimpleObjectProperty<>(this, "paymentDate", paymentDate);
+            p.paymentDate.addListener((obs, old, value) -> paymentDate = value);
+        }
+        return p.paymentDate;
     }
 
-    public StringProperty doctorNameProperty() {
-        return new SimpleStringProperty(doctorName);
+    /**
+     * Копия счёта без JavaFX-свойств — для кэшей, которые отдают счета наружу:
+     * правки копии (флажок «Включить») не меняют закэшированный счёт.
+     * Массив id врачей не меняется и разделяется.
+     */
+    public MedicalAccount copy() {
+        MedicalAccount acc = new MedicalAccount();
+        acc.id = id;
+        acc.patientId = patientId;
+        acc.practiceId = practiceId;
+        acc.number = number;
+        acc.dateCreated = dateCreated;
+        acc.total = total;
+        acc.rebate = rebate;
+        acc.amountPaid = amountPaid;
+        acc.surname = surname;
+        acc.firstname = firstname;
+        acc.middlename = middlename;
+        acc.birthDate = birthDate;
+        acc.inn = inn;
+        acc.doctorName = doctorName;
+        acc.doctorIds = doctorIds;
+        acc.category = category;
+        acc.categoryIds = categoryIds;
+        acc.categoryMask = categoryMask;
+        acc.selected = selected;
+        acc.paymentAmount = paymentAmount;
+        acc.paymentDate = paymentDate;
+        return acc;
     }
 
+    // Сеттеры полей, у которых есть JavaFX-свойство: обновляют и свойство, если оно уже создано
 
-    public ObjectProperty<BigDecimal> rebateProperty() {
-        return new SimpleObjectProperty<>(rebate);
+    public void setNumber(String number) {
+        this.number = number;
+        if (fx != null && fx.number != null) {
+            fx.number.set(number);
+        }
+    }
+
+    public void setDateCreated(LocalDate dateCreated) {
+        this.dateCreated = dateCreated;
+        if (fx != null && fx.dateCreated != null) {
+            fx.dateCreated.set(dateCreated);
+        }
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+        if (fx != null && fx.total != null) {
+            fx.total.set(total);
+        }
+    }
+
+    public void setRebate(BigDecimal rebate) {
+        this.rebate = rebate;
+        if (fx != null && fx.rebate != null) {
+            fx.rebate.set(rebate);
+        }
     }
 
+    public void setAmountPaid(BigDecimal amountPaid) {
+        this.amountPaid = amountPaid;
+        if (fx != null && fx.amountPaid != null) {
+            fx.amountPaid.set(amountPaid);
+        }
+    }
+
+    public void setSurname(String surname) {
+        this.surname = surname;
+        if (fx != null && fx.surname != null) {
+            fx.surname.set(surname);
+        }
+    }
 
+    public void setFirstname(String firstname) {
+        this.firstname = firstname;
+        if (fx != null && fx.firstname != null) {
+            fx.firstname.set(firstname);
+        }
+    }
+
+    public void setDoctorName(String doctorName) {
+        this.doctorName = doctorName;
+        if (fx != null && fx.doctorName != null) {
+            fx.doctorName.set(doctorName);
+        }
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+        if (fx != null && fx.category != null) {
+            fx.category.set(category);
+        }
+    }
+
+    public void setSelected(boolean selected) {
+        this.selected = selected;
+        if (fx != null && fx.selected != null) {
+            fx.selected.set(selected);
+        }
+    }
+
+    public void setPaymentAmount(BigDecimal paymentAmount) {
+        this.paymentAmount = paymentAmount;
+        if (fx != null && fx.paymentAmount != null) {
+            fx.paymentAmount.set(paymentAmount);
+        }
+    }
+
+    public void setPaymentDate(LocalDate paymentDate) {
+        this.paymentDate = paymentDate;
+        if (fx != null && fx.paymentDate != null) {
+            fx.paymentDate.set(paymentDate);
+        }
+    }
 }
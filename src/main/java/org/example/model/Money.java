@@ -0,0 +1,109 @@
+package org.example.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Денежная сумма в копейках (фиксированная точка, 2 знака).
+ *
+ * Правила:
+ * • Перевод из {@link BigDecimal} округляет до копейки по {@link RoundingMode#HALF_UP}
+ *   (0,005 → 0,01; −0,005 → −0,01) — так же округляют суммы в справке ФНС.
+ * • Сложение и вычитание точные; переполнение {@code long} — {@link ArithmeticException},
+ *   а не тихий перенос знака.
+ *
+ * Для горячих циклов есть статические методы над {@code long}-копейками
+ * ({@link #toKopecks}, {@link #format(long, char)}): суммирование идёт в примитивах,
+ * объект {@code Money} или {@code BigDecimal} создаётся только для результата.
+ */
+public record Money(long kopecks) implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private static final BigDecimal MAX_KOPECKS = BigDecimal.valueOf(Long.MAX_VALUE);
+    private static final BigDecimal MIN_KOPECKS = BigDecimal.valueOf(Long.MIN_VALUE);
+
+    public static Money ofKopecks(long kopecks) {
+        return kopecks == 0 ? ZERO : new Money(kopecks);
+    }
+
+    public static Money ofRubles(long rubles) {
+        return ofKopecks(Math.multiplyExact(rubles, 100L));
+    }
+
+    /** Сумма из {@link BigDecimal} с округлением до копейки; null — ноль. */
+    public static Money of(BigDecimal amount) {
+        return ofKopecks(toKopecks(amount));
+    }
+
+    /** Копейки из {@link BigDecimal} с округлением HALF_UP; null — 0. */
+    public static long toKopecks(BigDecimal amount) {
+        if (amount == null || amount.signum() == 0) {
+            return 0;
+        }
+        if (amount.scale() == 0 && amount.precision() <= 16) {
+            // Целые рубли (частый случай в D4W): без промежуточных объектов
+            return amount.longValue() * 100L;
+        }
+        BigDecimal kopecks = amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP);
+        if (kopecks.compareTo(MAX_KOPECKS) > 0 || kopecks.compareTo(MIN_KOPECKS) < 0) {
+            throw new ArithmeticException("Сумма вне допустимого диапазона: " + amount);
+        }
+        return kopecks.longValue();
+    }
+
+    /** {@link BigDecimal} с двумя знаками после запятой. */
+    public static BigDecimal toBigDecimal(long kopecks) {
+        return BigDecimal.valueOf(kopecks, 2);
+    }
+
+    /** "1234.50" / "-0.05" с заданным десятичным разделителем, без {@code String.format}. */
+    public static String format(long kopecks, char decimalSeparator) {
+        StringBuilder sb = new StringBuilder(24);
+        if (kopecks < 0) {
+            sb.append('-');
+        }
+        // Long.MIN_VALUE нельзя взять по модулю — делим как отрицательные
+        long rubles = Math.abs(kopecks / 100);
+        int rest = (int) Math.abs(kopecks % 100);
+        sb.append(rubles).append(decimalSeparator);
+        if (rest < 10) {
+            sb.append('0');
+        }
+        return sb.append(rest).toString();
+    }
+
+    public Money plus(Money other) {
+        return ofKopecks(Math.addExact(kopecks, other.kopecks));
+    }
+
+    public Money minus(Money other) {
+        return ofKopecks(Math.subtractExact(kopecks, other.kopecks));
+    }
+
+    public Money negate() {
+        return ofKopecks(Math.negateExact(kopecks));
+    }
+
+    public boolean isZero() {
+        return kopecks == 0;
+    }
+
+    public boolean isNegative() {
+        return kopecks < 0;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return toBigDecimal(kopecks);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(kopecks, other.kopecks);
+    }
+
+    @Override
+    public String toString() {
+        return format(kopecks, '.');
+    }
+}
@@ -1,7 +1,12 @@
 package org.example.model;
 
 import javafx.beans.property.*;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.time.LocalDate;
 
@@ -15,12 +20,73 @@ public class Patient {
     private String inn;
     private String cardNumber;
 
+    // JavaFX-свойства создаются при первом обращении и кэшируются (см. MedicalAccount)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient FxProperties fx;
+
+    private static final class FxProperties {
+        StringProperty surname;
+        StringProperty firstname;
+        StringProperty middlename;
+        ObjectProperty<LocalDate> birthDate;
+        StringProperty inn;
+        StringProperty cardNumber;
+    }
+
+    private FxProperties fx() {
+        if (fx == null) {
+            fx = new FxProperties();
+        }
+        return fx;
+    }
+
     public String getCardNumber() {
         return cardNumber;
     }
 
     public void setCardNumber(String cardNumber) {
         this.cardNumber = cardNumber;
+        if (fx != null && fx.cardNumber != null) {
+            fx.cardNumber.set(cardNumber);
+        }
+    }
+
+    public void setSurname(String surname) {
+        this.surname = surname;
+        if (fx != null && fx.surname != null) {
+            fx.surname.set(surname);
+        }
+    }
+
+    public void setFirstname(String firstname) {
+        this.firstname = firstname;
+        if (fx != null && fx.firstname != null) {
+            fx.firstname.set(firstname);
+        }
+    }
+
+    public void setMiddlename(String middlename) {
+        this.middlename = middlename;
+        if (fx != null && fx.middlename != null) {
+            fx.middlename.set(middlename);
+        }
+    }
+
+    public void setBirthDate(LocalDate birthDate) {
+        this.birthDate = birthDate;
+        if (fx != null && fx.birthDate != null) {
+            fx.birthDate.set(birthDate);
+        }
+    }
+
+    public void setInn(String inn) {
+        this.inn = inn;
+        if (fx != null && fx.inn != null) {
+            fx.inn.set(inn);
+        }
     }
 
     // Для отображения в TableView: "Иванов И.И."
@@ -37,12 +103,59 @@ public class Patient {
     }
 
     // JavaFX Property-методы (для TableColumn)
-    public StringProperty surnameProperty() { return new SimpleStringProperty(surname); }
-    public StringProperty firstnameProperty() { return new SimpleStringProperty(firstname); }
-    public StringProperty middlenameProperty() { return new SimpleStringProperty(middlename); }
-    public ObjectProperty<LocalDate> birthDateProperty() { return new SimpleObjectProperty<>(birthDate); }
-    public StringProperty innProperty() { return new SimpleStringProperty(inn); }
-    public StringProperty cardNumberProperty() { return new SimpleStringProperty(cardNumber); }
+    public StringProperty surnameProperty() {
+        FxProperties p = fx();
+        if (p.surname == null) {
+            p.surname = new SimpleStringProperty(this, "surname", surname);
+            p.surname.addListener((obs, old, value) -> surname = value);
+        }
+        return p.surname;
+    }
+
+    public StringProperty firstnameProperty() {
+        FxProperties p = fx();
+        if (p.firstname == null) {
+            p.firstname = new SimpleStringProperty(this, "firstname", firstname);
+            p.firstname.addListener((obs, old, value) -> firstname = value);
+        }
+        return p.firstname;
+    }
+
+    public StringProperty middlenameProperty() {
+        FxProperties p = fx();
+        if (p.middlename == null) {
+            p.middlename = new SimpleStringProperty(this, "middlename", middlename);
+            p.middlename.addListener((obs, old, value) -> middlename = value);
+        }
+        return p.middlename;
+    }
+
+    public ObjectProperty<LocalDate> birthDateProperty() {
+        FxProperties p = fx();
+        if (p.birthDate == null) {
+            p.birthDate = new SimpleObjectProperty<>(this, "birthDate", birthDate);
+            p.birthDate.addListener((obs, old, value) -> birthDate = value);
+        }
+        return p.birthDate;
+    }
+
+    public StringProperty innProperty() {
+        FxProperties p = fx();
+        if (p.inn == null) {
+            p.inn = new SimpleStringProperty(this, "inn", inn);
+            p.inn.addListener((obs, old, value) -> inn = value);
+        }
+        return p.inn;
+    }
+
+    public StringProperty cardNumberProperty() {
+        FxProperties p = fx();
+        if (p.cardNumber == null) {
+            p.cardNumber = new SimpleStringProperty(this, "cardNumber", cardNumber);
+            p.cardNumber.addListener((obs, old, value) -> cardNumber = value);
+        }
+        return p.cardNumber;
+    }
 
 
 
@@ -50,4 +163,4 @@ public class Patient {
     public String getPatientIdentifier() {
         return surname + " " + firstname + (middlename != null ? " " + middlename : "");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package org.example.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Справка об оплате медицинских услуг для налогового органа:
+ * итог по одному пациенту за один год.
+ */
+@Data
+public class TaxCertificate {
+    private int patientId;
+    private String surname;
+    private String firstname;
+    private String middlename;
+    private LocalDate birthDate;
+    private String inn;
+    private int year;
+    private int procedureType;            // код услуги: 1 или 2 (см. TaxReferenceSettings)
+    private BigDecimal amount = BigDecimal.ZERO; // сумма оплат за год
+    private int accountCount;             // сколько счетов вошло в справку
+}
@@ -0,0 +1,39 @@
+package org.example.report;
+
+/**
+ * Снимок хода пакетной выгрузки справок.
+ *
+ * @param patientsFetched  пациентов прочитано из БД
+ * @param aggregated       справок рассчитано
+ * @param rendered         справок сформировано
+ * @param written          справок записано на диск
+ * @param failed           пациентов, по которым справка не получилась
+ * @param elapsedMillis    время с начала выгрузки
+ * @param finished         выгрузка завершена (успешно или нет)
+ */
+public record BatchProgress(
+        long patientsFetched,
+        long aggregated,
+        long rendered,
+        long written,
+        long failed,
+        long elapsedMillis,
+        boolean finished
+) {
+
+    /** Слушатель хода выгрузки. Вызывается из рабочих потоков, а не из UI-потока. */
+    @FunctionalInterface
+    public interface Listener {
+        void onProgress(BatchProgress progress);
+    }
+
+    @Override
+    public String toString() {
+        return "прочитано " + patientsFetched
+                + ", рассчитано " + aggregated
+                + ", сформировано " + rendered
+                + ", записано " + written
+                + ", ошибок " + failed
+                + " (" + elapsedMillis / 1000 + " с)";
+    }
+}
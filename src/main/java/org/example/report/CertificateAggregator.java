@@ -0,0 +1,140 @@
+package org.example.report;
+
+import org.example.dao.AccountDao.PatientTotals;
+import org.example.dao.CategoryDictionary;
+import org.example.dao.TaxDataRepository;
+import org.example.model.MedicalAccount;
+import org.example.model.Money;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Итог пациента за год для справки. Общий для пакетной выгрузки PDF ({@link CertificateBatchJob})
+ * и XML для ФНС ({@link FnsXmlExporter}), чтобы суммы в них не расходились.
+ *
+ * • {@link #groupByPatient} режет поток счетов, упорядоченный по пациенту, на счета одного пациента;
+ * • {@link #aggregate} отбирает счета выбранных разделов процедур и суммирует оплаты в копейках:
+ *   {@code long} на весь год пациента и один {@link java.math.BigDecimal} на справку;
+ * • {@link #fromTotals} строит справку из итогов, посчитанных сервером.
+ *
+ * Потокобезопасен: кроме параметров, состояния нет.
+ */
+public final class CertificateAggregator {
+
+    /** Получатель счетов одного пациента. {@code false} — остановить разбор. */
+    @FunctionalInterface
+    public interface PatientSink<E extends Exception> {
+        boolean accept(List<MedicalAccount> accounts) throws E;
+    }
+
+    private final int year;
+    private final int procedureType;
+    private final long categorySelection;
+
+    /**
+     * @param procedureType     код услуги в справке: 1 или 2
+     * @param categorySelection маска выбранных разделов ({@link CategoryDictionary#ALL} — без отбора)
+     */
+    public CertificateAggregator(int year, int procedureType, long categorySelection) {
+        this.year = year;
+        this.procedureType = procedureType;
+        this.categorySelection = categorySelection;
+    }
+
+    /** Код услуги и отбор по разделам процедур из настроек (пустой выбор — все счета). */
+    public static CertificateAggregator forSettings(TaxDataRepository repository, TaxReferenceSettings settings, int year)
+            throws SQLException {
+        long selection = CategoryDictionary.ALL;
+        if (!settings.getProcedureCategories().isEmpty()) {
+            selection = repository.categoryDictionary().selectionMask(settings.getProcedureCategories());
+        }
+        return new CertificateAggregator(year, settings.getProcedureType(), selection);
+    }
+
+    /** Есть ли отбор по разделам (серверные итоги его не учитывают). */
+    public boolean filtersCategories() {
+        return categorySelection != CategoryDictionary.ALL;
+    }
+
+    /**
+     * Передаёт в {@code sink} счета каждого пациента по очереди. Счета должны идти
+     * упорядоченными по пациенту (как из {@link TaxDataRepository#streamAccountsByPatient}).
+     *
+     * @return {@code false}, если {@code sink} остановил разбор
+     */
+    public static <E extends Exception> boolean groupByPatient(Iterator<MedicalAccount> accounts, PatientSink<E> sink)
+            throws E {
+        List<MedicalAccount> group = new ArrayList<>();
+        int currentPatient = 0;
+        while (accounts.hasNext()) {
+            MedicalAccount acc = accounts.next();
+            if (!group.isEmpty() && acc.getPatientId() != currentPatient) {
+                if (!sink.accept(group)) {
+                    return false;
+                }
+                group = new ArrayList<>();
+            }
+            currentPatient = acc.getPatientId();
+            group.add(acc);
+        }
+        return group.isEmpty() || sink.accept(group);
+    }
+
+    /**
+     * Справка по счетам одного пациента.
+     *
+     * @return {@code null}, если у пациента нет счетов выбранных разделов — справка не нужна
+     */
+    public TaxCertificate aggregate(List<MedicalAccount> accounts) {
+        MedicalAccount first = null;
+        long kopecks = 0;
+        int count = 0;
+        for (MedicalAccount acc : accounts) {
+            if (!CategoryDictionary.matches(acc.getCategoryMask(), categorySelection)) {
+                continue;
+            }
+            if (first == null) {
+                first = acc;
+            }
+            kopecks = Math.addExact(kopecks, Money.toKopecks(acc.getAmountPaid()));
+            count++;
+        }
+        if (first == null) {
+            return null;
+        }
+        TaxCertificate cert = certificate(first.getPatientId(), first.getSurname(), first.getFirstname(),
+                first.getMiddlename(), first.getBirthDate(), first.getInn());
+        cert.setAmount(Money.toBigDecimal(kopecks));
+        cert.setAccountCount(count);
+        return cert;
+    }
+
+    /** Справка из итогов пациента, посчитанных сервером ({@code GROUP BY} пациента). */
+    public TaxCertificate fromTotals(PatientTotals totals) {
+        TaxCertificate cert = certificate(totals.patientId(), totals.surname(), totals.firstname(),
+                totals.middlename(), totals.birthDate(), totals.inn());
+        cert.setAmount(Money.toBigDecimal(totals.amountPaidKopecks()));
+        cert.setAccountCount(totals.accountCount());
+        return cert;
+    }
+
+    private TaxCertificate certificate(int patientId, String surname, String firstname, String middlename,
+                                       LocalDate birthDate, String inn) {
+        TaxCertificate cert = new TaxCertificate();
+        cert.setPatientId(patientId);
+        cert.setSurname(surname);
+        cert.setFirstname(firstname);
+        cert.setMiddlename(middlename);
+        cert.setBirthDate(birthDate);
+        cert.setInn(inn);
+        cert.setYear(year);
+        cert.setProcedureType(procedureType);
+        return cert;
+    }
+}
@@ -0,0 +1,401 @@
+package org.example.report;
+
+import org.example.dao.AccountDao;
+import org.example.dao.QueryHandle;
+import org.example.dao.UncheckedSQLException;
+import org.example.dao.TaxDataRepository;
+import org.example.metrics.CertificateRenderEvent;
+import org.example.model.MedicalAccount;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Пакетная выгрузка справок ФНС за год по всем пациентам филиала.
+ *
+ * Конвейер из четырёх стадий, связанных ограниченными очередями:
+ * <pre>
+ *   чтение из БД → суммирование по пациенту → формирование файла → запись на диск
+ * </pre>
+ * • Чтение — один поток: курсор {@link AccountDao#streamAccountsByPatient} отдаёт счета,
+ *   упорядоченные по пациенту, и они группируются на лету, без загрузки всего года в память.
+ *   С {@link Options#setServerAggregation} суммы считает сервер ({@code GROUP BY} пациента),
+ *   а стадия суммирования пропускается.
+ * • Суммы по пациенту считает {@link CertificateAggregator} — тот же, что у XML-выгрузки.
+ * • Остальные стадии выполняются заданным числом потоков (см. {@link Options}).
+ * • Очереди ограничены: если запись на диск не успевает, формирование и чтение из БД
+ *   притормаживают сами (back-pressure), а память не растёт.
+ *
+ * Ошибка по одному пациенту не останавливает выгрузку — она учитывается в {@link BatchProgress#failed()}.
+ * Ошибка чтения из БД прерывает выгрузку целиком.
+ */
+public class CertificateBatchJob {
+
+    private static final Logger LOG = Logger.getLogger(CertificateBatchJob.class.getName());
+
+    private static final long POLL_MILLIS = 100;
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+    /** Параметры выгрузки. */
+    public static class Options {
+        private int practiceId = 0;          // 0 = все филиалы
+        private int year = LocalDate.now().getYear() - 1;
+        private Integer patientId;           // null = все пациенты
+        private Path outputDir;
+        private int fetchSize = 500;
+        private int queueCapacity = 256;
+        private int aggregationThreads = 1;
+        private int renderThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        private int writeThreads = 2;
+        private boolean serverAggregation = false; // суммировать на сервере (GROUP BY пациента)
+
+        public int getPracticeId() { return practiceId; }
+        public void setPracticeId(int practiceId) { this.practiceId = practiceId; }
+
+        public int getYear() { return year; }
+        public void setYear(int year) { this.year = year; }
+
+        public Integer getPatientId() { return patientId; }
+        public void setPatientId(Integer patientId) { this.patientId = patientId; }
+
+        public Path getOutputDir() { return outputDir; }
+        public void setOutputDir(Path outputDir) { this.outputDir = outputDir; }
+
+        public int getFetchSize() { return fetchSize; }
+        public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public int getAggregationThreads() { return aggregationThreads; }
+        public void setAggregationThreads(int aggregationThreads) { this.aggregationThreads = aggregationThreads; }
+
+        public int getRenderThreads() { return renderThreads; }
+        public void setRenderThreads(int renderThreads) { this.renderThreads = renderThreads; }
+
+        public int getWriteThreads() { return writeThreads; }
+        public void setWriteThreads(int writeThreads) { this.writeThreads = writeThreads; }
+
+        public boolean isServerAggregation() { return serverAggregation; }
+        public void setServerAggregation(boolean serverAggregation) { this.serverAggregation = serverAggregation; }
+    }
+
+    /** Сформированный файл справки, ожидающий записи на диск. */
+    private record RenderedCertificate(TaxCertificate certificate, byte[] content) {
+    }
+
+    /** Обработчик одного элемента стадии конвейера. */
+    @FunctionalInterface
+    private interface StageFunction<I, O> {
+        O apply(I item) throws Exception;
+    }
+
+    private final TaxDataRepository repository;
+    private final TaxReferenceSettings settings;
+    private final CertificateRenderer renderer;
+    private final Options options;
+    private final BatchProgress.Listener listener;
+
+    private final LongAdder fetched = new LongAdder();
+    private final LongAdder aggregated = new LongAdder();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong lastReport = new AtomicLong();
+    private final QueryHandle totalsQuery = new QueryHandle(); // отменяет GROUP BY на сервере
+    private volatile boolean aborted;
+    private long startedAt;
+    private CertificateAggregator aggregator;
+
+    public CertificateBatchJob(TaxDataRepository repository,
+                               TaxReferenceSettings settings,
+                               CertificateRenderer renderer,
+                               Options options,
+                               BatchProgress.Listener listener) {
+        this.repository = repository;
+        this.settings = settings;
+        this.renderer = renderer;
+        this.options = options;
+        this.listener = listener != null ? listener : progress -> { };
+    }
+
+    /**
+     * Выполняет выгрузку в текущем потоке (чтение из БД) и во вспомогательных потоках стадий.
+     * Возвращает управление, когда все справки записаны или выгрузка прервана.
+     *
+     * @return итоговый снимок хода выгрузки
+     * @throws SQLException если не удалось прочитать счета из БД
+     */
+    public BatchProgress run() throws SQLException, IOException, InterruptedException {
+        if (options.getOutputDir() == null) {
+            throw new IllegalArgumentException("Не задана папка для выгрузки справок");
+        }
+        Files.createDirectories(options.getOutputDir());
+        startedAt = System.nanoTime();
+
+        // Отбор по разделам процедур из настроек; без выбора — все счета
+        aggregator = CertificateAggregator.forSettings(repository, settings, options.getYear());
+
+        int capacity = Math.max(1, options.getQueueCapacity());
+        BlockingQueue<List<MedicalAccount>> patientQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<TaxCertificate> certificateQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<RenderedCertificate> renderedQueue = new ArrayBlockingQueue<>(capacity);
+
+        AtomicBoolean fetchDone = new AtomicBoolean();
+        AtomicBoolean aggregateDone = new AtomicBoolean();
+        AtomicBoolean renderDone = new AtomicBoolean();
+        AtomicBoolean writeDone = new AtomicBoolean();
+
+        // При суммировании на сервере итоги приходят готовыми — стадия суммирования не нужна.
+        // Сервер не знает отбора по разделам, поэтому с отбором суммируем по счетам
+        boolean serverTotals = options.isServerAggregation() && !aggregator.filtersCategories();
+        List<Thread> workers = new ArrayList<>();
+        if (!serverTotals) {
+            workers.addAll(startStage("cert-aggregate", options.getAggregationThreads(),
+                    patientQueue, fetchDone, aggregator::aggregate, certificateQueue, aggregateDone, aggregated));
+        }
+        workers.addAll(startStage("cert-render", options.getRenderThreads(),
+                certificateQueue, aggregateDone, this::render, renderedQueue, renderDone, rendered));
+        workers.addAll(startStage("cert-write", options.getWriteThreads(),
+                renderedQueue, renderDone, this::write, null, writeDone, written));
+
+        try {
+            if (serverTotals) {
+                fetchTotals(certificateQueue);
+            } else {
+                fetch(patientQueue);
+            }
+        } catch (SQLException | RuntimeException e) {
+            aborted = true;
+            throw e;
+        } finally {
+            fetchDone.set(true);
+            if (serverTotals) {
+                aggregateDone.set(true);
+            }
+            try {
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            } catch (InterruptedException e) {
+                aborted = true;
+                workers.forEach(Thread::interrupt);
+                throw e;
+            }
+        }
+
+        BatchProgress result = snapshot(true);
+        listener.onProgress(result);
+        return result;
+    }
+
+    /** Просит выгрузку остановиться как можно скорее. Уже записанные файлы остаются. */
+    public void cancel() {
+        aborted = true;
+        totalsQuery.cancel();
+    }
+
+    public boolean isCancelled() {
+        return aborted;
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Стадия чтения: группирует подряд идущие счета одного пациента. */
+    private void fetch(BlockingQueue<List<MedicalAccount>> out) throws SQLException, InterruptedException {
+        LocalDate start = LocalDate.of(options.getYear(), 1, 1);
+        LocalDate end = LocalDate.of(options.getYear(), 12, 31);
+
+        try (Stream<MedicalAccount> accounts = repository.streamAccountsByPatient(
+                options.getPracticeId(), start, end, options.getPatientId(), options.getFetchSize())) {
+
+            CertificateAggregator.groupByPatient(accounts.iterator(), group -> {
+                if (aborted || !offer(out, group)) {
+                    return false;
+                }
+                fetched.increment();
+                return true;
+            });
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Стадия чтения при суммировании на сервере: одна строка на пациента
+     * ({@link AccountDao#findPatientTotalsForTaxReport}) сразу превращается в справку.
+     * Строк — по одной на пациента, поэтому они читаются списком; дольше всего сервер считает
+     * {@code GROUP BY}, и {@link #cancel()} прерывает его через {@link QueryHandle}.
+     */
+    private void fetchTotals(BlockingQueue<TaxCertificate> out) throws SQLException, InterruptedException {
+        LocalDate start = LocalDate.of(options.getYear(), 1, 1);
+        LocalDate end = LocalDate.of(options.getYear(), 12, 31);
+
+        List<AccountDao.PatientTotals> totals;
+        try {
+            totals = repository.findPatientTotalsForTaxReport(
+                    options.getPracticeId(), start, end, options.getPatientId(), totalsQuery);
+        } catch (SQLException e) {
+            if (aborted) {
+                return; // запрос отменён через cancel()
+            }
+            throw e;
+        }
+        for (AccountDao.PatientTotals t : totals) {
+            if (aborted) {
+                return;
+            }
+            fetched.increment();
+            TaxCertificate cert = aggregator.fromTotals(t);
+            aggregated.increment();
+            if (!offer(out, cert)) {
+                return;
+            }
+        }
+    }
+
+    private RenderedCertificate render(TaxCertificate cert) throws IOException {
+        CertificateRenderEvent event = new CertificateRenderEvent();
+        event.begin();
+        byte[] content = null;
+        try {
+            content = renderer.render(cert, settings);
+            return new RenderedCertificate(cert, content);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.patientId = cert.getPatientId();
+                event.year = cert.getYear();
+                event.format = renderer.fileExtension();
+                event.bytes = content != null ? content.length : 0;
+                event.failed = content == null;
+                event.commit();
+            }
+        }
+    }
+
+    private Void write(RenderedCertificate rendered) throws IOException {
+        Path target = options.getOutputDir().resolve(fileName(rendered.certificate()));
+        // Пишем во временный файл и переименовываем, чтобы не оставить недописанную справку
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, rendered.content());
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        reportProgress();
+        return null;
+    }
+
+    private String fileName(TaxCertificate cert) {
+        String surname = cert.getSurname() != null ? cert.getSurname().trim() : "";
+        surname = surname.replaceAll("[\\\\/:*?\"<>|\\s]+", "_");
+        return "Справка_" + (surname.isEmpty() ? "" : surname + "_")
+                + cert.getPatientId() + "_" + cert.getYear() + "." + renderer.fileExtension();
+    }
+
+    private <I, O> List<Thread> startStage(String name,
+                                           int parallelism,
+                                           BlockingQueue<I> in,
+                                           AtomicBoolean upstreamDone,
+                                           StageFunction<I, O> function,
+                                           BlockingQueue<O> out,
+                                           AtomicBoolean stageDone,
+                                           LongAdder counter) {
+        int threads = Math.max(1, parallelism);
+        AtomicInteger running = new AtomicInteger(threads);
+        List<Thread> result = new ArrayList<>(threads);
+
+        for (int i = 1; i <= threads; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    while (!aborted) {
+                        I item = in.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        if (item == null) {
+                            // upstreamDone выставляется после последней вставки, поэтому пустая очередь — конец
+                            if (upstreamDone.get() && in.isEmpty()) {
+                                break;
+                            }
+                            continue;
+                        }
+
+                        O value;
+                        try {
+                            value = function.apply(item);
+                        } catch (Exception e) {
+                            failed.increment();
+                            LOG.log(Level.WARNING, "Справка не сформирована на стадии " + name, e);
+                            continue;
+                        }
+                        if (out == null) {
+                            counter.increment(); // последняя стадия ничего не возвращает
+                            continue;
+                        }
+                        if (value == null) {
+                            continue; // например, у пациента нет счетов выбранных разделов
+                        }
+                        counter.increment();
+                        if (!offer(out, value)) {
+                            break;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        stageDone.set(true);
+                    }
+                }
+            }, name + "-" + i);
+            t.setDaemon(true);
+            t.start();
+            result.add(t);
+        }
+        return result;
+    }
+
+    /** Кладёт элемент в очередь, ожидая места (back-pressure). false — выгрузка прервана. */
+    private <T> boolean offer(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (aborted) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void reportProgress() {
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last >= TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MILLIS)
+                && lastReport.compareAndSet(last, now)) {
+            listener.onProgress(snapshot(false));
+        }
+    }
+
+    private BatchProgress snapshot(boolean finished) {
+        return new BatchProgress(
+                fetched.sum(),
+                aggregated.sum(),
+                rendered.sum(),
+                written.sum(),
+                failed.sum(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+                finished);
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.report;
+
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+
+import java.io.IOException;
+
+/**
+ * Формирует файл справки для одного пациента.
+ * Реализации должны быть потокобезопасными: пакетная выгрузка вызывает их из нескольких потоков.
+ */
+public interface CertificateRenderer {
+
+    /** Расширение файла без точки, например "pdf". */
+    String fileExtension();
+
+    /** Возвращает содержимое файла справки. */
+    byte[] render(TaxCertificate certificate, TaxReferenceSettings settings) throws IOException;
+}
@@ -0,0 +1,114 @@
+package org.example.report;
+
+import org.example.dao.TaxDataRepository;
+import org.example.dao.UncheckedSQLException;
+import org.example.model.MedicalAccount;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка справок за год в XML для ФНС (см. {@link FnsXmlWriter}).
+ *
+ * Счета читаются курсором {@link TaxDataRepository#streamAccountsByPatient} — с тем же отбором,
+ * что {@link TaxDataRepository#findAccountsForTaxReport}, но без загрузки года в память. Счета
+ * идут по пациенту, поэтому справка пациента готова, как только начался следующий, и сразу
+ * уходит в файл. В памяти — один текущий пациент и буфер одного документа, так что 100 тыс.
+ * справок выгружаются так же, как сто. Запись однопоточная: формирование XML дешевле чтения из БД.
+ * Суммы по пациенту считает {@link CertificateAggregator} — тот же, что у пакетной выгрузки PDF.
+ */
+public class FnsXmlExporter {
+
+    /** Параметры выгрузки. */
+    public static class Options {
+        private int practiceId = 0;          // 0 = все филиалы
+        private int year = LocalDate.now().getYear() - 1;
+        private Integer patientId;           // null = все пациенты
+        private Path outputDir;
+        private long maxFileBytes = 10L * 1024 * 1024;
+        private int fetchSize = 500;
+
+        public int getPracticeId() { return practiceId; }
+        public void setPracticeId(int practiceId) { this.practiceId = practiceId; }
+
+        public int getYear() { return year; }
+        public void setYear(int year) { this.year = year; }
+
+        public Integer getPatientId() { return patientId; }
+        public void setPatientId(Integer patientId) { this.patientId = patientId; }
+
+        public Path getOutputDir() { return outputDir; }
+        public void setOutputDir(Path outputDir) { this.outputDir = outputDir; }
+
+        public long getMaxFileBytes() { return maxFileBytes; }
+        public void setMaxFileBytes(long maxFileBytes) { this.maxFileBytes = maxFileBytes; }
+
+        public int getFetchSize() { return fetchSize; }
+        public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+    }
+
+    /**
+     * Итог выгрузки.
+     *
+     * @param files         записанные файлы
+     * @param certificates  справок в файлах
+     * @param bytes         суммарный размер файлов
+     * @param elapsedMillis время выгрузки
+     */
+    public record Result(List<Path> files, long certificates, long bytes, long elapsedMillis) {
+    }
+
+    private final TaxDataRepository repository;
+    private final TaxReferenceSettings settings;
+    private final Options options;
+
+    public FnsXmlExporter(TaxDataRepository repository, TaxReferenceSettings settings, Options options) {
+        this.repository = repository;
+        this.settings = settings;
+        this.options = options;
+    }
+
+    /**
+     * Выгружает справки. При ошибке недописанный файл удаляется, закрытые ранее остаются.
+     *
+     * @throws SQLException если не удалось прочитать счета из БД
+     */
+    public Result export() throws SQLException, IOException {
+        if (options.getOutputDir() == null) {
+            throw new IllegalArgumentException("Не задана папка для выгрузки справок");
+        }
+        Files.createDirectories(options.getOutputDir());
+        long startedAt = System.nanoTime();
+
+        CertificateAggregator aggregator = CertificateAggregator.forSettings(repository, settings, options.getYear());
+        LocalDate start = LocalDate.of(options.getYear(), 1, 1);
+        LocalDate end = LocalDate.of(options.getYear(), 12, 31);
+
+        try (FnsXmlWriter writer = new FnsXmlWriter(
+                options.getOutputDir(), options.getMaxFileBytes(), settings, LocalDate.now());
+             Stream<MedicalAccount> accounts = repository.streamAccountsByPatient(
+                     options.getPracticeId(), start, end, options.getPatientId(), options.getFetchSize())) {
+
+            CertificateAggregator.groupByPatient(accounts.iterator(), group -> {
+                TaxCertificate cert = aggregator.aggregate(group);
+                if (cert != null) {
+                    writer.write(cert);
+                }
+                return true;
+            });
+            writer.finish();
+
+            return new Result(writer.files(), writer.documentCount(), writer.totalBytes(),
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+}
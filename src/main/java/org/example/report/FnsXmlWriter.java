@@ -0,0 +1,276 @@
+package org.example.report;
+
+import org.example.model.Money;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Потоковая запись справок об оплате медицинских услуг (КНД 1151156, приказ ФНС
+ * № ЕА-7-11/8240) в XML для представления в налоговый орган в электронном виде.
+ *
+ * <pre>
+ *   &lt;Файл ИдФайл="ON_SPRMEDUSL_..." ВерсПрог="..." ВерсФорм="5.01"&gt;
+ *     &lt;Документ КНД="1151156" НомСпр="..." НомКорр="0" ОтчГод="2024" ДатаДок="..." КодНО="..."&gt;
+ *       &lt;СвОрг НаимОрг="..." ИННЮЛ="..." КПП="..."/&gt;        (ИП — &lt;СвИП ИННФЛ="..."/&gt;)
+ *       &lt;Подписант ПрПодп="1|2"&gt;&lt;ФИО .../&gt;&lt;СвПред НаимДок="..."/&gt;&lt;/Подписант&gt;
+ *       &lt;НП ИННФЛ="..." ДатаРожд="..."&gt;&lt;ФИО .../&gt;&lt;/НП&gt;
+ *       &lt;СумУсл КодУсл="1|2" Сумма="12345.67"/&gt;
+ *     &lt;/Документ&gt;
+ *     ...
+ *   &lt;/Файл&gt;
+ * </pre>
+ *
+ * DOM не строится: каждый документ пишется через {@link XMLStreamWriter} в переиспользуемый буфер
+ * и сразу дописывается в файл, так что память не зависит от числа справок. Если очередной документ
+ * не помещается в {@code maxFileBytes}, текущий файл закрывается и начинается следующий — ни один
+ * файл не превышает лимит (кроме случая, когда лимит меньше одного документа).
+ *
+ * Файлы пишутся во временные и переименовываются при закрытии. {@link #finish()} фиксирует последний
+ * файл; {@link #close()} без {@code finish()} удаляет недописанный файл. Не потокобезопасен.
+ */
+public class FnsXmlWriter implements Closeable {
+
+    /** Кодировка файлов обмена с ФНС. */
+    public static final String ENCODING = "windows-1251";
+    public static final String FORMAT_VERSION = "5.01";
+    public static final String PROGRAM_VERSION = "dental-tax-reference";
+    public static final String KND = "1151156";
+
+    private static final Charset CHARSET = Charset.forName(ENCODING);
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final byte[] FOOTER = "</Файл>\n".getBytes(CHARSET);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final XMLOutputFactory factory = XMLOutputFactory.newFactory();
+    private final Path outputDir;
+    private final long maxFileBytes;
+    private final TaxReferenceSettings settings;
+    private final String documentDate;
+    private final String fileDate;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+    private final List<Path> files = new ArrayList<>();
+
+    private XMLStreamWriter documentWriter;
+    private OutputStream out;
+    private Path target;
+    private Path tmp;
+    private long fileBytes;
+    private int fileDocuments;
+    private long documents;
+    private long totalBytes;
+    private boolean finished;
+
+    /**
+     * @param maxFileBytes  предельный размер одного файла в байтах
+     * @param documentDate  дата справок ({@code ДатаДок}) и дата в имени файла
+     */
+    public FnsXmlWriter(Path outputDir, long maxFileBytes, TaxReferenceSettings settings, LocalDate documentDate) {
+        this.outputDir = outputDir;
+        this.maxFileBytes = maxFileBytes;
+        this.settings = settings;
+        this.documentDate = documentDate.format(DATE);
+        this.fileDate = documentDate.format(FILE_DATE);
+    }
+
+    /** Дописывает справку; при необходимости начинает новый файл. */
+    public void write(TaxCertificate cert) throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Запись уже завершена");
+        }
+        buffer.reset();
+        try {
+            // Один писатель на все документы: каждый документ закрыт целиком, после flush() буфер полон
+            if (documentWriter == null) {
+                documentWriter = factory.createXMLStreamWriter(buffer, ENCODING);
+            }
+            writeDocument(documentWriter, cert);
+            documentWriter.writeCharacters("\n");
+            documentWriter.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("Не удалось сформировать XML справки пациента " + cert.getPatientId(), e);
+        }
+
+        if (out != null && fileDocuments > 0 && fileBytes + buffer.size() + FOOTER.length > maxFileBytes) {
+            closeFile();
+        }
+        if (out == null) {
+            openFile();
+        }
+        buffer.writeTo(out);
+        fileBytes += buffer.size();
+        fileDocuments++;
+        documents++;
+    }
+
+    /** Закрывает последний файл. После вызова записанные файлы — в {@link #files()}. */
+    public void finish() throws IOException {
+        if (!finished) {
+            if (out != null) {
+                closeFile();
+            }
+            finished = true;
+        }
+    }
+
+    /** Без {@link #finish()} удаляет недописанный файл; уже закрытые файлы остаются. */
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (out != null) {
+            try {
+                out.close();
+            } finally {
+                out = null;
+                Files.deleteIfExists(tmp);
+            }
+        }
+    }
+
+    /** Закрытые файлы в порядке записи. */
+    public List<Path> files() {
+        return List.copyOf(files);
+    }
+
+    public long documentCount() {
+        return documents;
+    }
+
+    /** Суммарный размер закрытых файлов. */
+    public long totalBytes() {
+        return totalBytes;
+    }
+
+    // ---------------------------------------------------------------------
+
+    private void openFile() throws IOException {
+        String id = fileId();
+        target = outputDir.resolve(id + ".xml");
+        tmp = target.resolveSibling(id + ".xml.tmp");
+        out = new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE);
+        fileBytes = 0;
+        fileDocuments = 0;
+
+        // Отдельный буфер: в общем уже лежит документ, ради которого открывается файл
+        ByteArrayOutputStream header = new ByteArrayOutputStream(256);
+        try {
+            XMLStreamWriter xml = factory.createXMLStreamWriter(header, ENCODING);
+            xml.writeStartDocument(ENCODING, "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("Файл");
+            xml.writeAttribute("ИдФайл", id);
+            xml.writeAttribute("ВерсПрог", PROGRAM_VERSION);
+            xml.writeAttribute("ВерсФорм", FORMAT_VERSION);
+            xml.writeCharacters("\n"); // закрывает открывающий тег; </Файл> допишем сами
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Не удалось начать файл " + target, e);
+        }
+        header.writeTo(out);
+        fileBytes += header.size();
+    }
+
+    private void closeFile() throws IOException {
+        out.write(FOOTER);
+        fileBytes += FOOTER.length;
+        out.close();
+        out = null;
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        files.add(target);
+        totalBytes += fileBytes;
+    }
+
+    /** Имя файла без расширения по образцу ФНС: ON_SPRMEDUSL_получатель_отправитель_ИННКПП_дата_GUID. */
+    private String fileId() {
+        String sender = digits(settings.getInn()) + digits(settings.getKpp());
+        String taxOrg = digits(settings.getTaxOrgCode());
+        return "ON_SPRMEDUSL_" + taxOrg + "_" + taxOrg + "_" + sender + "_" + fileDate + "_"
+                + UUID.randomUUID().toString().toUpperCase();
+    }
+
+    private void writeDocument(XMLStreamWriter xml, TaxCertificate cert) throws XMLStreamException {
+        xml.writeStartElement("Документ");
+        xml.writeAttribute("КНД", KND);
+        xml.writeAttribute("НомСпр", String.valueOf(cert.getPatientId()));
+        xml.writeAttribute("НомКорр", "0");
+        xml.writeAttribute("ОтчГод", String.valueOf(cert.getYear()));
+        xml.writeAttribute("ДатаДок", documentDate);
+        xml.writeAttribute("КодНО", text(settings.getTaxOrgCode()));
+
+        if (settings.getOrgType() == 2) {
+            xml.writeEmptyElement("СвИП");
+            xml.writeAttribute("ИННФЛ", text(settings.getInn()));
+        } else {
+            xml.writeEmptyElement("СвОрг");
+            xml.writeAttribute("НаимОрг", text(settings.getClinicName()));
+            xml.writeAttribute("ИННЮЛ", text(settings.getInn()));
+            xml.writeAttribute("КПП", text(settings.getKpp()));
+        }
+
+        xml.writeStartElement("Подписант");
+        xml.writeAttribute("ПрПодп", String.valueOf(settings.getSignerType()));
+        String[] signer = text(settings.getCreatorFullName()).split("\\s+", 3);
+        writeName(xml, signer[0], signer.length > 1 ? signer[1] : "", signer.length > 2 ? signer[2] : null);
+        if (settings.getSignerType() == 2) {
+            xml.writeEmptyElement("СвПред");
+            xml.writeAttribute("НаимДок", text(settings.getDocumentName()));
+        }
+        xml.writeEndElement();
+
+        xml.writeStartElement("НП");
+        if (cert.getInn() != null && !cert.getInn().isBlank()) {
+            xml.writeAttribute("ИННФЛ", cert.getInn().trim());
+        }
+        if (cert.getBirthDate() != null) {
+            xml.writeAttribute("ДатаРожд", cert.getBirthDate().format(DATE));
+        }
+        writeName(xml, cert.getSurname(), cert.getFirstname(), cert.getMiddlename());
+        xml.writeEndElement();
+
+        xml.writeEmptyElement("СумУсл");
+        xml.writeAttribute("КодУсл", String.valueOf(cert.getProcedureType()));
+        xml.writeAttribute("Сумма", Money.format(Money.toKopecks(cert.getAmount()), '.'));
+
+        xml.writeEndElement();
+    }
+
+    private static void writeName(XMLStreamWriter xml, String surname, String firstname, String middlename)
+            throws XMLStreamException {
+        xml.writeEmptyElement("ФИО");
+        xml.writeAttribute("Фамилия", text(surname));
+        xml.writeAttribute("Имя", text(firstname));
+        if (middlename != null && !middlename.isBlank()) {
+            xml.writeAttribute("Отчество", middlename.trim());
+        }
+    }
+
+    private static String text(String value) {
+        return value != null ? value.trim() : "";
+    }
+
+    private static String digits(String value) {
+        return value != null ? value.replaceAll("\\D", "") : "";
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.report;
+
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.properties.TextAlignment;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Справка в PDF (iText). Для кириллицы нужен TTF-шрифт: путь задаётся через -Dd4w.pdf.font,
+ * иначе используется первый найденный из стандартных шрифтов Windows/Linux.
+ */
+public class PdfCertificateRenderer implements CertificateRenderer {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    private static final List<String> FONT_CANDIDATES = List.of(
+            "C:/Windows/Fonts/arial.ttf",
+            "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+            "/usr/share/fonts/dejavu/DejaVuSans.ttf"
+    );
+
+    private final String fontPath = resolveFontPath();
+
+    @Override
+    public String fileExtension() {
+        return "pdf";
+    }
+
+    @Override
+    public byte[] render(TaxCertificate cert, TaxReferenceSettings settings) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        // PdfFont привязан к документу, поэтому создаём его на каждую справку
+        try (Document doc = new Document(new PdfDocument(new PdfWriter(out)))) {
+            doc.setFont(createFont());
+            doc.setFontSize(11);
+
+            int copies = Math.max(1, settings.getCopiesCount());
+            for (int copy = 0; copy < copies; copy++) {
+                if (copy > 0) {
+                    doc.add(new AreaBreak());
+                }
+                addCopy(doc, cert, settings);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private void addCopy(Document doc, TaxCertificate cert, TaxReferenceSettings settings) {
+        doc.add(new Paragraph("СПРАВКА\nоб оплате медицинских услуг для представления в налоговый орган")
+                .setBold()
+                .setTextAlignment(TextAlignment.CENTER));
+
+        doc.add(new Paragraph("Медицинская организация: " + settings.getClinicName()
+                + "\nИНН: " + settings.getInn() + "   КПП: " + settings.getKpp()
+                + "\nКод налогового органа: " + settings.getTaxOrgCode()));
+
+        doc.add(new Paragraph("Налогоплательщик (пациент): " + fullName(cert)
+                + "\nДата рождения: " + (cert.getBirthDate() != null ? cert.getBirthDate().format(DATE) : "")
+                + "\nИНН: " + (cert.getInn() != null ? cert.getInn() : "")));
+
+        doc.add(new Paragraph("Отчётный год: " + cert.getYear()
+                + "\nКод услуги: " + cert.getProcedureType()
+                + "\nСтоимость оказанных медицинских услуг: "
+                + String.format("%.2f", cert.getAmount()) + " руб."
+                + "\nКоличество счетов: " + cert.getAccountCount()));
+
+        doc.add(new Paragraph("Справку выдал: " + settings.getCreatorFullName()));
+    }
+
+    private static String fullName(TaxCertificate cert) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(cert.getSurname() != null ? cert.getSurname() : "");
+        if (cert.getFirstname() != null) {
+            sb.append(' ').append(cert.getFirstname());
+        }
+        if (cert.getMiddlename() != null) {
+            sb.append(' ').append(cert.getMiddlename());
+        }
+        return sb.toString().trim();
+    }
+
+    private PdfFont createFont() throws IOException {
+        if (fontPath != null) {
+            return PdfFontFactory.createFont(fontPath, PdfEncodings.IDENTITY_H);
+        }
+        return PdfFontFactory.createFont(StandardFonts.HELVETICA);
+    }
+
+    private static String resolveFontPath() {
+        String configured = System.getProperty("d4w.pdf.font");
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        for (String candidate : FONT_CANDIDATES) {
+            if (Files.isReadable(Path.of(candidate))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,421 @@
+package org.example.search;
+
+import org.example.model.Patient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс пациентов в памяти для поиска по ФИО и номеру карты.
+ *
+ * Заменяет {@code LIKE '%запрос%'} на сервере:
+ * • все поля нормализуются (нижний регистр, "ё" → "е", знаки препинания → пробел);
+ * • для каждого слова строятся триграммы (поиск подстроки от 3 символов)
+ *   и префиксы из 1–2 символов (поиск по первым буквам при наборе);
+ * • номер карты дополнительно ищется по точному совпадению.
+ *
+ * Запрос разбивается на слова, каждое слово должно найтись хотя бы в одном поле
+ * ("иван петр" найдёт "Иванов Пётр"). Результаты ранжируются: точное совпадение номера карты,
+ * затем фамилии, затем совпадения по началу слова, затем по подстроке.
+ *
+ * Обновление инкрементальное: изменённый пациент помечается удалённым и добавляется заново,
+ * при накоплении удалённых записей индекс перестраивается.
+ * Потокобезопасен: поиск идёт под блокировкой чтения, обновления — под блокировкой записи.
+ */
+public class PatientSearchIndex {
+
+    private static final long KIND_TRIGRAM = 1L << 48;
+    private static final long KIND_PREFIX = 2L << 48;
+
+    private static final int FIELD_SURNAME = 0;
+    private static final int FIELD_FIRSTNAME = 1;
+    private static final int FIELD_MIDDLENAME = 2;
+    private static final int FIELD_CARD = 3;
+    private static final int FIELD_COUNT = 4;
+
+    /** Список номеров записей (в порядке возрастания) для одного ключа. */
+    private static final class Postings {
+        int[] slots = new int[4];
+        int size;
+
+        void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot) {
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Записи индекса, guarded by lock
+    private Patient[] patients = new Patient[1024];
+    private String[][] fields = new String[1024][];     // нормализованные поля записи
+    private int[][] practices = new int[1024][];        // филиалы, где у пациента есть счета
+    private boolean[] deleted = new boolean[1024];
+    private int size;
+    private int deletedCount;
+
+    private final Map<Integer, Integer> slotByPatientId = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<String, Postings> cards = new HashMap<>();
+
+    /**
+     * Добавляет пациента или обновляет его данные и добавляет филиал к списку его филиалов.
+     *
+     * @param practiceId филиал, где у пациента есть счета (0 — не учитывать)
+     */
+    public void upsert(Patient patient, int practiceId) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotByPatientId.get(patient.getId());
+            String[] normalized = normalizeFields(patient);
+
+            if (existing != null) {
+                int slot = existing;
+                if (Arrays.equals(fields[slot], normalized)) {
+                    patients[slot] = patient;
+                    practices[slot] = withPractice(practices[slot], practiceId);
+                    return;
+                }
+                // ФИО или карта изменились — старую запись помечаем удалённой и добавляем новую
+                deleted[slot] = true;
+                deletedCount++;
+                append(patient, normalized, withPractice(practices[slot], practiceId));
+            } else {
+                append(patient, normalized, withPractice(new int[0], practiceId));
+            }
+
+            if (deletedCount > 1_000 && deletedCount > size / 4) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Удаляет пациента из индекса. */
+    public void remove(int patientId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByPatientId.remove(patientId);
+            if (slot != null && !deleted[slot]) {
+                deleted[slot] = true;
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Очищает индекс. */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            resetStorage(1024);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Количество пациентов в индексе. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет пациентов по ФИО (любые слова в любом порядке, по началу или части слова)
+     * или по номеру карты.
+     *
+     * @param practiceId филиал (0 — все филиалы)
+     * @param query      строка запроса
+     * @param limit      максимальное число результатов
+     * @return пациенты, отсортированные по релевантности
+     */
+    public List<Patient> search(int practiceId, String query, int limit) {
+        if (query == null || limit <= 0) {
+            return List.of();
+        }
+        String normalizedQuery = normalize(query);
+        String[] tokens = tokens(normalizedQuery);
+        if (tokens.length == 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Ведущий список кандидатов — самый короткий из списков по словам запроса
+            Postings driver = null;
+            for (String token : tokens) {
+                Postings p = postingsFor(token);
+                if (p == null) {
+                    return cardMatches(practiceId, normalizedQuery, limit);
+                }
+                if (driver == null || p.size < driver.size) {
+                    driver = p;
+                }
+            }
+
+            List<int[]> scored = new ArrayList<>(); // {slot, score}
+            Postings exactCard = cards.get(normalizedQuery.replace(" ", ""));
+
+            for (int i = 0; i < driver.size; i++) {
+                int slot = driver.slots[i];
+                if (deleted[slot] || !inPractice(slot, practiceId)) {
+                    continue;
+                }
+                int score = score(fields[slot], tokens);
+                if (score > 0) {
+                    scored.add(new int[]{slot, score + (contains(exactCard, slot) ? 1_000 : 0)});
+                }
+            }
+            // Точное совпадение номера карты, даже если слова запроса не нашлись в ФИО
+            if (exactCard != null) {
+                for (int i = 0; i < exactCard.size; i++) {
+                    int slot = exactCard.slots[i];
+                    if (!deleted[slot] && inPractice(slot, practiceId) && !contains(driver, slot)) {
+                        scored.add(new int[]{slot, 1_000});
+                    }
+                }
+            }
+
+            scored.sort(Comparator.<int[]>comparingInt(e -> -e[1])
+                    .thenComparing(e -> fields[e[0]][FIELD_SURNAME])
+                    .thenComparing(e -> fields[e[0]][FIELD_FIRSTNAME]));
+
+            List<Patient> result = new ArrayList<>(Math.min(limit, scored.size()));
+            for (int i = 0; i < scored.size() && result.size() < limit; i++) {
+                result.add(patients[scored.get(i)[0]]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+
+    private List<Patient> cardMatches(int practiceId, String normalizedQuery, int limit) {
+        Postings exact = cards.get(normalizedQuery.replace(" ", ""));
+        if (exact == null) {
+            return List.of();
+        }
+        List<Patient> result = new ArrayList<>();
+        for (int i = 0; i < exact.size && result.size() < limit; i++) {
+            int slot = exact.slots[i];
+            if (!deleted[slot] && inPractice(slot, practiceId)) {
+                result.add(patients[slot]);
+            }
+        }
+        return result;
+    }
+
+    /** Релевантность записи: сумма лучших совпадений по каждому слову; 0 — какое-то слово не нашлось. */
+    private static int score(String[] recordFields, String[] tokens) {
+        int total = 0;
+        for (String token : tokens) {
+            int best = 0;
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                best = Math.max(best, matchScore(recordFields[f], token, f));
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    private static int matchScore(String field, String token, int fieldIndex) {
+        if (field.isEmpty()) {
+            return 0;
+        }
+        int weight = fieldIndex == FIELD_SURNAME ? 3 : fieldIndex == FIELD_CARD ? 2 : 1;
+        if (field.equals(token)) {
+            return 40 * weight;
+        }
+        int pos = field.indexOf(token);
+        if (pos < 0) {
+            return 0;
+        }
+        boolean wordStart = pos == 0 || field.charAt(pos - 1) == ' ';
+        if (wordStart) {
+            return 20 * weight;
+        }
+        // Слова короче 3 символов ищем только по началу слова
+        return token.length() >= 3 ? 5 * weight : 0;
+    }
+
+    private Postings postingsFor(String token) {
+        if (token.length() < 3) {
+            return postings.get(prefixKey(token));
+        }
+        Postings smallest = null;
+        for (int i = 0; i + 3 <= token.length(); i++) {
+            Postings p = postings.get(trigramKey(token, i));
+            if (p == null) {
+                return null;
+            }
+            if (smallest == null || p.size < smallest.size) {
+                smallest = p;
+            }
+        }
+        return smallest;
+    }
+
+    private void append(Patient patient, String[] normalized, int[] patientPractices) {
+        if (size == patients.length) {
+            int capacity = size * 2;
+            patients = Arrays.copyOf(patients, capacity);
+            fields = Arrays.copyOf(fields, capacity);
+            practices = Arrays.copyOf(practices, capacity);
+            deleted = Arrays.copyOf(deleted, capacity);
+        }
+        int slot = size++;
+        patients[slot] = patient;
+        fields[slot] = normalized;
+        practices[slot] = patientPractices;
+        deleted[slot] = false;
+        slotByPatientId.put(patient.getId(), slot);
+
+        for (String field : normalized) {
+            for (String token : tokens(field)) {
+                postings.computeIfAbsent(prefixKey(token.substring(0, 1)), k -> new Postings()).add(slot);
+                if (token.length() >= 2) {
+                    postings.computeIfAbsent(prefixKey(token.substring(0, 2)), k -> new Postings()).add(slot);
+                }
+                for (int i = 0; i + 3 <= token.length(); i++) {
+                    postings.computeIfAbsent(trigramKey(token, i), k -> new Postings()).add(slot);
+                }
+            }
+        }
+        String card = normalized[FIELD_CARD].replace(" ", "");
+        if (!card.isEmpty()) {
+            cards.computeIfAbsent(card, k -> new Postings()).add(slot);
+        }
+    }
+
+    /** Перестраивает индекс без удалённых записей. */
+    private void compact() {
+        Patient[] oldPatients = patients;
+        String[][] oldFields = fields;
+        int[][] oldPractices = practices;
+        boolean[] oldDeleted = deleted;
+        int oldSize = size;
+
+        resetStorage(Math.max(1024, Integer.highestOneBit(Math.max(1, oldSize - deletedCount)) * 2));
+        for (int slot = 0; slot < oldSize; slot++) {
+            if (!oldDeleted[slot]) {
+                append(oldPatients[slot], oldFields[slot], oldPractices[slot]);
+            }
+        }
+    }
+
+    private void resetStorage(int capacity) {
+        patients = new Patient[capacity];
+        fields = new String[capacity][];
+        practices = new int[capacity][];
+        deleted = new boolean[capacity];
+        size = 0;
+        deletedCount = 0;
+        slotByPatientId.clear();
+        postings.clear();
+        cards.clear();
+    }
+
+    private boolean inPractice(int slot, int practiceId) {
+        if (practiceId <= 0) {
+            return true;
+        }
+        for (int p : practices[slot]) {
+            if (p == practiceId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(Postings p, int slot) {
+        return p != null && Arrays.binarySearch(p.slots, 0, p.size, slot) >= 0;
+    }
+
+    private static int[] withPractice(int[] current, int practiceId) {
+        if (practiceId <= 0) {
+            return current;
+        }
+        for (int p : current) {
+            if (p == practiceId) {
+                return current;
+            }
+        }
+        int[] result = Arrays.copyOf(current, current.length + 1);
+        result[current.length] = practiceId;
+        return result;
+    }
+
+    private static long trigramKey(String s, int from) {
+        return KIND_TRIGRAM
+                | ((long) s.charAt(from) << 32)
+                | ((long) s.charAt(from + 1) << 16)
+                | s.charAt(from + 2);
+    }
+
+    private static long prefixKey(String prefix) {
+        long key = KIND_PREFIX | ((long) prefix.charAt(0) << 32);
+        return prefix.length() > 1 ? key | ((long) prefix.charAt(1) << 16) : key;
+    }
+
+    private static String[] normalizeFields(Patient patient) {
+        String[] result = new String[FIELD_COUNT];
+        result[FIELD_SURNAME] = normalize(patient.getSurname());
+        result[FIELD_FIRSTNAME] = normalize(patient.getFirstname());
+        result[FIELD_MIDDLENAME] = normalize(patient.getMiddlename());
+        result[FIELD_CARD] = normalize(patient.getCardNumber());
+        return result;
+    }
+
+    /** Нижний регистр, "ё" → "е", всё кроме букв и цифр — в одиночный пробел. */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        boolean space = true;
+        for (int i = 0; i < value.length(); i++) {
+            char c = Character.toLowerCase(value.charAt(i));
+            if (c == 'ё') {
+                c = 'е';
+            }
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int len = sb.length();
+        if (len > 0 && sb.charAt(len - 1) == ' ') {
+            sb.setLength(len - 1);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static String[] tokens(String normalized) {
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+}
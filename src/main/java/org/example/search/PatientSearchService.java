@@ -0,0 +1,228 @@
+package org.example.search;
+
+import org.example.dao.AccountDao.PatientActivity;
+import org.example.dao.TaxDataRepository;
+import org.example.model.Patient;
+import org.example.store.SnapshotStore;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Поиск пациентов по индексу в памяти ({@link PatientSearchIndex}).
+ *
+ * • При старте индекс загружается целиком одним потоковым запросом.
+ * • Раз в {@code d4w.search.refreshMinutes} догружаются только пациенты, чьи счета изменились
+ *   после последней загрузки (по {@code patients_accounts.ts_4_update}, с небольшим перекрытием —
+ *   на случай транзакций, закоммиченных с более ранним временем).
+ * • Переименование пациента, исправленный номер карты или удаление в D4W по счетам не видны,
+ *   поэтому раз в {@code d4w.search.fullReloadMinutes} индекс перезагружается целиком.
+ * Поиск при этом идёт без обращения к БД.
+ *
+ * Если задана локальная копия ({@link SnapshotStore}), индекс при старте сначала
+ * восстанавливается из неё — поиск работает сразу, даже когда БД недоступна, — а затем,
+ * как только БД ответит, загружается заново целиком: копия могла устареть.
+ */
+public class PatientSearchService {
+
+    private static final Logger LOG = Logger.getLogger(PatientSearchService.class.getName());
+
+    private static final Duration DEFAULT_REFRESH = Duration.ofMinutes(Long.getLong("d4w.search.refreshMinutes", 5));
+    private static final Duration DEFAULT_FULL_RELOAD = Duration.ofMinutes(Long.getLong("d4w.search.fullReloadMinutes", 360));
+    private static final Duration OVERLAP = Duration.ofSeconds(5);
+
+    private static final PatientSearchService SHARED = new PatientSearchService(
+            TaxDataRepository.shared(), SnapshotStore.shared(), DEFAULT_REFRESH, DEFAULT_FULL_RELOAD);
+
+    private final TaxDataRepository repository;
+    private final SnapshotStore store;
+    private final Duration refreshInterval;
+    private final Duration fullReloadInterval;
+    private final Object refreshLock = new Object();
+    private volatile PatientSearchIndex index = new PatientSearchIndex();
+    private volatile boolean ready;
+    private LocalDateTime watermark;  // guarded by refreshLock
+    private long lastReloadNanos;     // guarded by refreshLock
+    private boolean reloadNeeded = true; // guarded by refreshLock
+    private boolean restoreAttempted; // guarded by refreshLock
+    private ScheduledExecutorService scheduler;
+
+    public PatientSearchService(TaxDataRepository repository, Duration refreshInterval) {
+        this(repository, null, refreshInterval, DEFAULT_FULL_RELOAD);
+    }
+
+    /**
+     * @param store              локальная копия на диске (null — без неё)
+     * @param refreshInterval    период догрузки изменившихся пациентов
+     * @param fullReloadInterval период полной перезагрузки индекса
+     */
+    public PatientSearchService(TaxDataRepository repository, SnapshotStore store,
+                                Duration refreshInterval, Duration fullReloadInterval) {
+        this.repository = repository;
+        this.store = store;
+        this.refreshInterval = refreshInterval;
+        this.fullReloadInterval = fullReloadInterval;
+    }
+
+    /** Общий сервис поиска приложения. */
+    public static PatientSearchService shared() {
+        return SHARED;
+    }
+
+    /** Запускает фоновую загрузку индекса и его периодическое обновление. */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "d4w-patient-index");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, refreshInterval.toMillis());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Не удалось обновить индекс пациентов", e);
+            }
+        }, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /** Индекс загружен и поиск можно выполнять без обращения к БД. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Количество пациентов в индексе. */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Ищет пациентов по ФИО или номеру карты.
+     *
+     * @param practiceId филиал (0 — все филиалы)
+     * @param limit      максимальное число результатов
+     * @return пациенты в порядке релевантности
+     */
+    public List<Patient> search(int practiceId, String query, int limit) {
+        return index.search(practiceId, query, limit);
+    }
+
+    /** Полностью перестраивает индекс. Пока идёт загрузка, поиск работает по старому индексу. */
+    public void reload() throws SQLException {
+        synchronized (refreshLock) {
+            PatientSearchIndex fresh = new PatientSearchIndex();
+            LocalDateTime[] max = {watermark};
+            List<PatientActivity> rows = store != null ? new ArrayList<>() : null;
+            repository.forEachPatientActivity(null, row -> {
+                fresh.upsert(row.patient(), row.practiceId());
+                max[0] = later(max[0], row.lastUpdate());
+                if (rows != null) {
+                    rows.add(row);
+                }
+            });
+            index = fresh;
+            watermark = max[0];
+            ready = true;
+            lastReloadNanos = System.nanoTime();
+            reloadNeeded = false;
+            LOG.info("Индекс пациентов загружен: " + fresh.size() + " пациентов");
+            if (rows != null) {
+                try {
+                    store.replacePatients(rows);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Не удалось сохранить пациентов в локальную копию", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Догружает пациентов, чьи счета изменились после предыдущей загрузки. Если индекс
+     * ещё не загружался из БД (или восстановлен из копии) или пора полной перезагрузки —
+     * загружает его целиком.
+     */
+    public void refresh() throws SQLException {
+        synchronized (refreshLock) {
+            if (!restoreAttempted) {
+                restoreAttempted = true;
+                restoreFromStore();
+            }
+            boolean due = System.nanoTime() - lastReloadNanos >= fullReloadInterval.toNanos();
+            if (reloadNeeded || due || watermark == null) {
+                reload();
+                return;
+            }
+            PatientSearchIndex current = index;
+            LocalDateTime previous = watermark;
+            LocalDateTime[] max = {previous};
+            List<PatientActivity> rows = new ArrayList<>();
+            repository.forEachPatientActivity(previous.minus(OVERLAP), row -> {
+                current.upsert(row.patient(), row.practiceId());
+                max[0] = later(max[0], row.lastUpdate());
+                // Строки из перекрытия уже в копии — дописываем только новые
+                if (row.lastUpdate() != null && row.lastUpdate().isAfter(previous)) {
+                    rows.add(row);
+                }
+            });
+            watermark = max[0];
+            if (store != null) {
+                try {
+                    store.appendPatients(rows);
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "Не удалось дописать пациентов в локальную копию", e);
+                }
+            }
+        }
+    }
+
+    /** Восстанавливает индекс из локальной копии, чтобы искать до первого обращения к БД. */
+    private void restoreFromStore() {
+        if (store == null) {
+            return;
+        }
+        try {
+            PatientSearchIndex restored = new PatientSearchIndex();
+            LocalDateTime[] max = {null};
+            store.readPatients(row -> {
+                restored.upsert(row.patient(), row.practiceId());
+                max[0] = later(max[0], row.lastUpdate());
+            });
+            if (restored.size() == 0) {
+                return;
+            }
+            index = restored;
+            watermark = max[0];
+            ready = true;
+            reloadNeeded = true; // копия могла устареть — при первой возможности загружаем заново
+            LOG.info("Индекс пациентов восстановлен из локальной копии: " + restored.size() + " пациентов");
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Не удалось прочитать локальную копию пациентов", e);
+        }
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.isAfter(a) ? b : a;
+    }
+}
@@ -0,0 +1,189 @@
+package org.example.store;
+
+import org.example.dao.AccountDao.AccountChange;
+import org.example.dao.AccountDao.PatientActivity;
+import org.example.model.MedicalAccount;
+import org.example.model.Money;
+import org.example.model.Patient;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+/**
+ * Форматы записей локальной копии. Суммы хранятся копейками ({@link Money}),
+ * даты — днями от эпохи; null кодируется отдельным маркером. Разделы процедур счёта хранятся
+ * как id из БД, а не битами {@code CategoryDictionary}: биты зависят от словаря на момент записи.
+ *
+ * При изменении формата любой записи нужно поднять версию в {@link SegmentFile}.
+ */
+final class Codecs {
+
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private Codecs() {
+    }
+
+    /** Счёт вместе с его ts_4_update. Маску и названия разделов восстанавливает читающий по текущему словарю. */
+    static final SegmentFile.Codec<AccountChange> ACCOUNT = new SegmentFile.Codec<>() {
+        @Override
+        public void write(DataOutput out, AccountChange change) throws IOException {
+            MedicalAccount acc = change.account();
+            out.writeInt(acc.getId());
+            out.writeInt(acc.getPatientId());
+            out.writeInt(acc.getPracticeId());
+            writeString(out, acc.getNumber());
+            writeDate(out, acc.getDateCreated());
+            writeAmount(out, acc.getTotal());
+            writeAmount(out, acc.getRebate());
+            writeAmount(out, acc.getAmountPaid());
+            writeDate(out, acc.getPaymentDate());
+            writeString(out, acc.getSurname());
+            writeString(out, acc.getFirstname());
+            writeString(out, acc.getMiddlename());
+            writeDate(out, acc.getBirthDate());
+            writeString(out, acc.getInn());
+            writeString(out, acc.getDoctorName());
+            int[] doctorIds = acc.getDoctorIds();
+            out.writeInt(doctorIds.length);
+            for (int id : doctorIds) {
+                out.writeInt(id);
+            }
+            writeString(out, acc.getCategoryIds());
+            writeDateTime(out, change.updatedAt());
+        }
+
+        @Override
+        public AccountChange read(DataInput in) throws IOException {
+            MedicalAccount acc = new MedicalAccount();
+            acc.setId(in.readInt());
+            acc.setPatientId(in.readInt());
+            acc.setPracticeId(in.readInt());
+            acc.setNumber(readString(in));
+            acc.setDateCreated(readDate(in));
+            acc.setTotal(readAmount(in));
+            acc.setRebate(readAmount(in));
+            acc.setAmountPaid(readAmount(in));
+            acc.setPaymentDate(readDate(in));
+            acc.setSurname(readString(in));
+            acc.setFirstname(readString(in));
+            acc.setMiddlename(readString(in));
+            acc.setBirthDate(readDate(in));
+            acc.setInn(readString(in));
+            acc.setDoctorName(readString(in));
+            int[] doctorIds = new int[in.readInt()];
+            for (int i = 0; i < doctorIds.length; i++) {
+                doctorIds[i] = in.readInt();
+            }
+            acc.setDoctorIds(doctorIds);
+            acc.setCategoryIds(readString(in));
+            return new AccountChange(acc, readDateTime(in));
+        }
+    };
+
+    /** Пациент, его филиал и время последнего изменения его счетов. */
+    static final SegmentFile.Codec<PatientActivity> PATIENT = new SegmentFile.Codec<>() {
+        @Override
+        public void write(DataOutput out, PatientActivity row) throws IOException {
+            Patient p = row.patient();
+            out.writeInt(p.getId());
+            writeString(out, p.getSurname());
+            writeString(out, p.getFirstname());
+            writeString(out, p.getMiddlename());
+            writeDate(out, p.getBirthDate());
+            writeString(out, p.getInn());
+            writeString(out, p.getCardNumber());
+            out.writeInt(row.practiceId());
+            writeDateTime(out, row.lastUpdate());
+        }
+
+        @Override
+        public PatientActivity read(DataInput in) throws IOException {
+            Patient p = new Patient();
+            p.setId(in.readInt());
+            p.setSurname(readString(in));
+            p.setFirstname(readString(in));
+            p.setMiddlename(readString(in));
+            p.setBirthDate(readDate(in));
+            p.setInn(readString(in));
+            p.setCardNumber(readString(in));
+            return new PatientActivity(p, in.readInt(), readDateTime(in));
+        }
+    };
+
+    /** Сотрудник: member_id → "Фамилия И.О.". */
+    static final SegmentFile.Codec<Map.Entry<Integer, String>> STAFF = new SegmentFile.Codec<>() {
+        @Override
+        public void write(DataOutput out, Map.Entry<Integer, String> e) throws IOException {
+            out.writeInt(e.getKey());
+            writeString(out, e.getValue());
+        }
+
+        @Override
+        public Map.Entry<Integer, String> read(DataInput in) throws IOException {
+            int id = in.readInt();
+            String name = readString(in);
+            return Map.entry(id, name != null ? name : "");
+        }
+    };
+
+    /** Название филиала. */
+    static final SegmentFile.Codec<Map.Entry<String, Integer>> PRACTICE = new SegmentFile.Codec<>() {
+        @Override
+        public void write(DataOutput out, Map.Entry<String, Integer> e) throws IOException {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue());
+        }
+
+        @Override
+        public Map.Entry<String, Integer> read(DataInput in) throws IOException {
+            String name = in.readUTF();
+            return Map.entry(name, in.readInt());
+        }
+    };
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDate(DataOutput out, LocalDate date) throws IOException {
+        out.writeLong(date != null ? date.toEpochDay() : NULL_LONG);
+    }
+
+    private static LocalDate readDate(DataInput in) throws IOException {
+        long day = in.readLong();
+        return day != NULL_LONG ? LocalDate.ofEpochDay(day) : null;
+    }
+
+    private static void writeDateTime(DataOutput out, LocalDateTime time) throws IOException {
+        out.writeLong(time != null ? time.toEpochSecond(ZoneOffset.UTC) : NULL_LONG);
+        out.writeInt(time != null ? time.getNano() : 0);
+    }
+
+    private static LocalDateTime readDateTime(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        return seconds != NULL_LONG ? LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC) : null;
+    }
+
+    private static void writeAmount(DataOutput out, BigDecimal amount) throws IOException {
+        out.writeLong(amount != null ? Money.toKopecks(amount) : NULL_LONG);
+    }
+
+    private static BigDecimal readAmount(DataInput in) throws IOException {
+        long kopecks = in.readLong();
+        return kopecks != NULL_LONG ? Money.toBigDecimal(kopecks) : null;
+    }
+}
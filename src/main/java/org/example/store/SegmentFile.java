@@ -0,0 +1,178 @@
+package org.example.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Файл-сегмент из записей одного типа: заголовок и записи «длина, данные, CRC32».
+ *
+ * • {@link #rewrite} записывает сегмент целиком во временный файл и атомарно подменяет им старый —
+ *   при сбое на диске остаётся либо старая, либо новая версия.
+ * • {@link #append} дописывает записи в конец (изменения между полными перезаписями).
+ * • {@link #read} читает записи по порядку; недописанный или повреждённый хвост
+ *   (например, после выключения питания) отбрасывается и обрезается.
+ *
+ * Записи с одним ключом не схлопываются: при чтении побеждает последняя.
+ */
+final class SegmentFile {
+
+    private static final Logger LOG = Logger.getLogger(SegmentFile.class.getName());
+
+    private static final int MAGIC = 0x44345753; // "D4WS"
+    private static final int VERSION = 3;        // 2: счета хранят id разделов вместо маски; 3: филиалы с id
+    private static final int HEADER_BYTES = 16;  // magic, version, meta
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Значение meta, если сегмента ещё нет. */
+    static final long NO_META = Long.MIN_VALUE;
+
+    /** Сериализация одной записи. */
+    interface Codec<T> {
+        void write(DataOutput out, T value) throws IOException;
+
+        T read(DataInput in) throws IOException;
+    }
+
+    private final Path path;
+
+    SegmentFile(Path path) {
+        this.path = path;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * Перезаписывает сегмент целиком.
+     *
+     * @param meta произвольное число в заголовке (например, начало окна данных)
+     */
+    synchronized <T> void rewrite(long meta, Iterable<? extends T> records, Codec<T> codec) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(meta);
+            writeRecords(out, records, codec);
+            out.flush();
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Дописывает записи в конец существующего сегмента. */
+    synchronized <T> void append(Iterable<? extends T> records, Codec<T> codec) throws IOException {
+        if (!Files.exists(path)) {
+            throw new NoSuchFileException(path.toString(), null, "сегмент ещё не создан");
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), BUFFER_SIZE))) {
+            writeRecords(out, records, codec);
+            out.flush();
+            ch.force(false);
+        }
+    }
+
+    /**
+     * Читает все целые записи сегмента.
+     *
+     * @return meta из заголовка или {@link #NO_META}, если сегмента нет
+     */
+    synchronized <T> long read(Codec<T> codec, Consumer<? super T> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return NO_META;
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), BUFFER_SIZE));
+            if (size < HEADER_BYTES || in.readInt() != MAGIC) {
+                throw new IOException("Не сегмент локальной копии: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия сегмента " + version + ": " + path);
+            }
+            long meta = in.readLong();
+
+            long good = HEADER_BYTES;
+            byte[] buf = new byte[256];
+            CRC32 crc = new CRC32();
+            try {
+                while (good + 8 <= size) {
+                    int length = in.readInt();
+                    if (length < 0 || good + 8 + length > size) {
+                        break;
+                    }
+                    if (buf.length < length) {
+                        buf = new byte[Math.max(length, buf.length * 2)];
+                    }
+                    in.readFully(buf, 0, length);
+                    int stored = in.readInt();
+                    crc.reset();
+                    crc.update(buf, 0, length);
+                    if ((int) crc.getValue() != stored) {
+                        break;
+                    }
+                    consumer.accept(codec.read(new DataInputStream(new ByteArrayInputStream(buf, 0, length))));
+                    good += 8 + length;
+                }
+            } catch (EOFException e) {
+                // хвост короче, чем обещает длина — обрежем ниже
+            }
+            if (good < size) {
+                LOG.warning("Отброшен повреждённый хвост сегмента " + path + ": " + (size - good) + " байт");
+                ch.truncate(good);
+            }
+            return meta;
+        }
+    }
+
+    private static <T> void writeRecords(DataOutputStream out, Iterable<? extends T> records, Codec<T> codec)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(bytes);
+        CRC32 crc = new CRC32();
+        for (T value : records) {
+            bytes.reset();
+            codec.write(record, value);
+            record.flush();
+            byte[] data = bytes.toByteArray();
+            crc.reset();
+            crc.update(data);
+            out.writeInt(data.length);
+            out.write(data);
+            out.writeInt((int) crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.store;
+
+import org.example.dao.AccountDao.AccountChange;
+import org.example.dao.AccountDao.PatientActivity;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Локальная копия данных D4W на диске: счета, пациенты, сотрудники и филиалы.
+ *
+ * Нужна, чтобы после запуска справки и поиск работали сразу и не зависели от того,
+ * занят ли сервер SQL Anywhere или недоступен ли он вовсе. Источником правды остаются
+ * DAO: копию перезаписывают сервисы, которые читают БД ({@code AccountSyncService},
+ * {@code PatientSearchService}), а при старте из неё восстанавливают свои индексы в памяти.
+ *
+ * Каждая таблица — отдельный {@link SegmentFile} в каталоге {@code d4w.store.dir}
+ * (по умолчанию {@code ~/.d4w-tax-reference/store}); отключается {@code -Dd4w.store.enabled=false}.
+ * С источником данных, отличным от {@code jdbc} ({@code -Dd4w.dataSource=memory}), общей копии нет:
+ * сгенерированные данные не должны попасть в копию, из которой потом восстановится рабочая база.
+ */
+public class SnapshotStore {
+
+    private static final SnapshotStore SHARED = Boolean.parseBoolean(System.getProperty("d4w.store.enabled", "true"))
+            && "jdbc".equalsIgnoreCase(System.getProperty("d4w.dataSource", "jdbc"))
+            ? new SnapshotStore(Path.of(System.getProperty("d4w.store.dir",
+                    Path.of(System.getProperty("user.home"), ".d4w-tax-reference", "store").toString())))
+            : null;
+
+    private final SegmentFile accounts;
+    private final SegmentFile patients;
+    private final SegmentFile staff;
+    private final SegmentFile practices;
+
+    public SnapshotStore(Path dir) {
+        this.accounts = new SegmentFile(dir.resolve("accounts.seg"));
+        this.patients = new SegmentFile(dir.resolve("patients.seg"));
+        this.staff = new SegmentFile(dir.resolve("staff.seg"));
+        this.practices = new SegmentFile(dir.resolve("practices.seg"));
+    }
+
+    /** Общая копия приложения или {@code null}, если она отключена. */
+    public static SnapshotStore shared() {
+        return SHARED;
+    }
+
+    // --- счета -------------------------------------------------------------
+
+    /**
+     * Читает сохранённые счета в порядке записи (более поздняя версия счёта идёт позже).
+     *
+     * @return начало окна, за которое сохранены счета, или null, если счетов нет
+     */
+    public LocalDate readAccounts(Consumer<AccountChange> consumer) throws IOException {
+        long meta = accounts.read(Codecs.ACCOUNT, consumer);
+        return meta != SegmentFile.NO_META ? LocalDate.ofEpochDay(meta) : null;
+    }
+
+    /** Заменяет все сохранённые счета (после полной загрузки окна с {@code windowStart}). */
+    public void replaceAccounts(LocalDate windowStart, Collection<AccountChange> changes) throws IOException {
+        accounts.rewrite(windowStart.toEpochDay(), changes, Codecs.ACCOUNT);
+    }
+
+    /** Дописывает изменённые счета; если полной копии ещё нет — ничего не делает. */
+    public void appendAccounts(Collection<AccountChange> changes) throws IOException {
+        if (!changes.isEmpty() && accounts.exists()) {
+            accounts.append(changes, Codecs.ACCOUNT);
+        }
+    }
+
+    // --- пациенты ----------------------------------------------------------
+
+    /** Читает сохранённых пациентов (более поздняя запись о пациенте идёт позже). */
+    public void readPatients(Consumer<PatientActivity> consumer) throws IOException {
+        patients.read(Codecs.PATIENT, consumer);
+    }
+
+    public void replacePatients(Collection<PatientActivity> rows) throws IOException {
+        patients.rewrite(0, rows, Codecs.PATIENT);
+    }
+
+    /** Дописывает изменённых пациентов; если полной копии ещё нет — ничего не делает. */
+    public void appendPatients(Collection<PatientActivity> rows) throws IOException {
+        if (!rows.isEmpty() && patients.exists()) {
+            patients.append(rows, Codecs.PATIENT);
+        }
+    }
+
+    // --- справочники -------------------------------------------------------
+
+    /** Сотрудники: member_id → "Фамилия И.О." (пусто, если не сохранялись). */
+    public Map<Integer, String> readStaff() throws IOException {
+        Map<Integer, String> result = new TreeMap<>();
+        staff.read(Codecs.STAFF, e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+
+    public void replaceStaff(Map<Integer, String> names) throws IOException {
+        staff.rewrite(0, names.entrySet(), Codecs.STAFF);
+    }
+
+    /** Филиалы: название → id в сохранённом порядке (пусто, если не сохранялись). */
+    public Map<String, Integer> readPractices() throws IOException {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        practices.read(Codecs.PRACTICE, e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+
+    public void replacePractices(Map<String, Integer> practiceIds) throws IOException {
+        practices.rewrite(0, practiceIds.entrySet(), Codecs.PRACTICE);
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.sync;
+
+import org.example.model.MedicalAccount;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Локальная копия оплаченных счетов (patients_accounts) в памяти.
+ *
+ * Хранит счета по id и индексы «пациент → счета», «год → счета» и «филиал → счета»:
+ * выборка пациента, года или филиала не перебирает весь кэш. Отдаёт копии счетов, поэтому
+ * правки в таблице платежей (флажок «Включить») не попадают в кэш.
+ * Неоплаченные счета ({@code amount_paid <= 0}) в кэш не попадают, а при обновлении
+ * удаляются из него.
+ */
+public class AccountCache {
+
+    private static final Comparator<MedicalAccount> NEWEST_FIRST =
+            Comparator.comparing(MedicalAccount::getDateCreated, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, MedicalAccount> byId = new HashMap<>();
+    private final Map<Integer, Set<Integer>> byPatient = new HashMap<>();
+    private final Map<Integer, Set<Integer>> byYear = new HashMap<>();
+    private final Map<Integer, Set<Integer>> byPractice = new HashMap<>();
+    private LocalDateTime watermark; // максимальный ts_4_update среди загруженных строк
+
+    /**
+     * Добавляет, заменяет или удаляет счёт.
+     *
+     * @param updatedAt ts_4_update строки (продвигает отметку синхронизации)
+     */
+    public void apply(MedicalAccount account, LocalDateTime updatedAt) {
+        lock.writeLock().lock();
+        try {
+            MedicalAccount previous = byId.remove(account.getId());
+            if (previous != null) {
+                unindex(byPatient, previous.getPatientId(), previous.getId());
+                unindex(byPractice, previous.getPracticeId(), previous.getId());
+                if (previous.getDateCreated() != null) {
+                    unindex(byYear, previous.getDateCreated().getYear(), previous.getId());
+                }
+            }
+            if (isPaid(account)) {
+                byId.put(account.getId(), account);
+                index(byPatient, account.getPatientId(), account.getId());
+                index(byPractice, account.getPracticeId(), account.getId());
+                if (account.getDateCreated() != null) {
+                    index(byYear, account.getDateCreated().getYear(), account.getId());
+                }
+            }
+            if (updatedAt != null && (watermark == null || updatedAt.isAfter(watermark))) {
+                watermark = updatedAt;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Оплаченные счета за период, от новых к старым — как {@code findAccountsForTaxReport}.
+     *
+     * @param practiceId филиал (0 — все филиалы)
+     * @param patientId  пациент (null — все пациенты)
+     */
+    public List<MedicalAccount> find(int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId) {
+        List<MedicalAccount> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Перебираем самый узкий из подходящих индексов, остальные условия проверяем по счёту
+            if (patientId != null) {
+                addMatching(result, byPatient.getOrDefault(patientId, Set.of()), practiceId, startDate, endDate);
+            } else {
+                List<Set<Integer>> years = new ArrayList<>();
+                int yearSize = 0;
+                for (int year = startDate.getYear(); year <= endDate.getYear(); year++) {
+                    Set<Integer> ids = byYear.get(year);
+                    if (ids != null) {
+                        years.add(ids);
+                        yearSize += ids.size();
+                    }
+                }
+                Set<Integer> practice = practiceId > 0 ? byPractice.getOrDefault(practiceId, Set.of()) : null;
+                if (practice != null && practice.size() < yearSize) {
+                    addMatching(result, practice, practiceId, startDate, endDate);
+                } else {
+                    for (Set<Integer> ids : years) {
+                        addMatching(result, ids, practiceId, startDate, endDate);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(NEWEST_FIRST);
+        return result;
+    }
+
+    /** Максимальный ts_4_update загруженных строк (null — кэш пуст). */
+    public LocalDateTime watermark() {
+        lock.readLock().lock();
+        try {
+            return watermark;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Количество счетов в кэше. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addMatching(List<MedicalAccount> result, Set<Integer> ids,
+                             int practiceId, LocalDate startDate, LocalDate endDate) {
+        for (Integer id : ids) {
+            MedicalAccount acc = byId.get(id);
+            if (acc == null || acc.getDateCreated() == null) {
+                continue;
+            }
+            if (practiceId > 0 && acc.getPracticeId() != practiceId) {
+                continue;
+            }
+            if (acc.getDateCreated().isBefore(startDate) || acc.getDateCreated().isAfter(endDate)) {
+                continue;
+            }
+            result.add(acc.copy());
+        }
+    }
+
+    private static void index(Map<Integer, Set<Integer>> index, int key, int id) {
+        index.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+    }
+
+    private static void unindex(Map<Integer, Set<Integer>> index, int key, int id) {
+        Set<Integer> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static boolean isPaid(MedicalAccount acc) {
+        return acc.getAmountPaid() != null && acc.getAmountPaid().compareTo(BigDecimal.ZERO) > 0;
+    }
+}
@@ -0,0 +1,330 @@
+package org.example.sync;
+
+import org.example.dao.AccountDao;
+import org.example.dao.AccountDao.AccountChange;
+import org.example.dao.AccountResultCache;
+import org.example.dao.CategoryDictionary;
+import org.example.dao.QueryHandle;
+import org.example.dao.StaffDirectory;
+import org.example.dao.TaxDataRepository;
+import org.example.metrics.MetricsRegistry;
+import org.example.metrics.Timer;
+import org.example.model.MedicalAccount;
+import org.example.store.SnapshotStore;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Инкрементальная синхронизация оплаченных счетов в локальный кэш ({@link AccountCache}).
+ *
+ * • При старте кэш загружается целиком за последние {@code d4w.sync.years} лет.
+ * • Затем раз в {@code d4w.sync.pollSeconds} догружаются только строки, у которых
+ *   {@code patients_accounts.ts_4_update} не меньше отметки прошлой синхронизации
+ *   (с небольшим перекрытием — на случай транзакций, закоммиченных с более ранним временем).
+ * • Удалённые в D4W счета по отметке не видны, поэтому раз в {@code d4w.sync.fullResyncMinutes},
+ *   а также после ошибки догрузки кэш перезагружается целиком. Пока идёт перезагрузка,
+ *   запросы обслуживает старый кэш.
+ *
+ * Запросы, которые кэш не покрывает (ещё не загружен или период раньше окна кэша),
+ * выполняются через {@link AccountResultCache} — повторный запрос того же периода
+ * не повторяет выборку, если данные в БД не менялись.
+ *
+ * Если задана локальная копия ({@link SnapshotStore}), кэш при старте восстанавливается
+ * из неё (из БД читается только словарь разделов процедур) и дальше догружается только
+ * изменениями; полная загрузка перезаписывает копию (вместе со справочниками сотрудников
+ * и филиалов), догрузка — дописывает.
+ * Счета, удалённые, пока приложение было закрыто, уйдут из кэша при ближайшей полной перезагрузке.
+ */
+public class AccountSyncService {
+
+    private static final Logger LOG = Logger.getLogger(AccountSyncService.class.getName());
+
+    private static final Duration DEFAULT_POLL = Duration.ofSeconds(Long.getLong("d4w.sync.pollSeconds", 60));
+    private static final Duration DEFAULT_FULL_RESYNC = Duration.ofMinutes(Long.getLong("d4w.sync.fullResyncMinutes", 360));
+    private static final int DEFAULT_YEARS = Integer.getInteger("d4w.sync.years", 4);
+    private static final Duration OVERLAP = Duration.ofSeconds(5);
+
+    private static final AccountSyncService SHARED = new AccountSyncService(
+            TaxDataRepository.shared(), SnapshotStore.shared(), StaffDirectory.shared(),
+            DEFAULT_YEARS, DEFAULT_POLL, DEFAULT_FULL_RESYNC);
+
+    private static final Timer DELTA_SYNC = MetricsRegistry.shared().timer("sync.delta");
+    private static final Timer FULL_SYNC = MetricsRegistry.shared().timer("sync.full");
+
+    static {
+        MetricsRegistry registry = MetricsRegistry.shared();
+        registry.gauge("sync.cachedAccounts", SHARED::size);
+        registry.gauge("resultCache.hits", () -> SHARED.resultCache().getHitCount());
+        registry.gauge("resultCache.misses", () -> SHARED.resultCache().getMissCount());
+        registry.gauge("resultCache.invalidations", () -> SHARED.resultCache().getInvalidationCount());
+    }
+
+    private final TaxDataRepository repository;
+    private final SnapshotStore store;
+    private final StaffDirectory staff;
+    private final AccountResultCache resultCache;
+    private final int years;
+    private final Duration pollInterval;
+    private final Duration fullResyncInterval;
+    private final Object syncLock = new Object();
+    private volatile AccountCache cache = new AccountCache();
+    private volatile LocalDate loadedFrom;    // начало окна загруженного кэша; null — не загружен
+    private long lastFullResyncNanos;         // guarded by syncLock
+    private boolean fullResyncNeeded = true;  // guarded by syncLock
+    private boolean restoreAttempted;         // guarded by syncLock
+    private ScheduledExecutorService scheduler;
+
+    public AccountSyncService(TaxDataRepository repository, int years, Duration pollInterval, Duration fullResyncInterval) {
+        this(repository, null, null, years, pollInterval, fullResyncInterval);
+    }
+
+    /**
+     * @param store              локальная копия на диске (null — без неё)
+     * @param staff              справочник сотрудников, который заполняется из копии (null — не заполнять)
+     * @param years              сколько последних календарных лет держать в кэше (включая текущий)
+     * @param pollInterval       период догрузки изменений
+     * @param fullResyncInterval период полной перезагрузки
+     */
+    public AccountSyncService(TaxDataRepository repository, SnapshotStore store, StaffDirectory staff, int years,
+                              Duration pollInterval, Duration fullResyncInterval) {
+        this.repository = repository;
+        this.store = store;
+        this.staff = staff;
+        this.resultCache = new AccountResultCache(repository);
+        this.years = Math.max(1, years);
+        this.pollInterval = pollInterval;
+        this.fullResyncInterval = fullResyncInterval;
+    }
+
+    /** Общий сервис синхронизации приложения. */
+    public static AccountSyncService shared() {
+        return SHARED;
+    }
+
+    /** Запускает первую загрузку и периодическую догрузку изменений в фоне. */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "d4w-account-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, pollInterval.toMillis());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (SQLException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Не удалось синхронизировать счета", e);
+            }
+        }, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /** Кэш загружен и может отвечать на запросы. */
+    public boolean isReady() {
+        return loadedFrom != null;
+    }
+
+    /** Количество счетов в кэше. */
+    public int size() {
+        return cache.size();
+    }
+
+    /** Отметка последней синхронизации (максимальный ts_4_update в кэше). */
+    public LocalDateTime watermark() {
+        return cache.watermark();
+    }
+
+    /**
+     * Оплаченные счета для справки: из кэша, если он покрывает период, иначе из БД.
+     * Результат совпадает с {@link AccountDao#findAccountsForTaxReport}.
+     */
+    public List<MedicalAccount> findAccountsForTaxReport(
+            int practiceId,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer patientId,
+            QueryHandle handle
+    ) throws SQLException {
+        if (covers(startDate)) {
+            return cache.find(practiceId, startDate, endDate, patientId);
+        }
+        return resultCache.findAccountsForTaxReport(practiceId, startDate, endDate, patientId, handle);
+    }
+
+    /** Кэш результатов для периодов вне окна (для метрик). */
+    public AccountResultCache resultCache() {
+        return resultCache;
+    }
+
+    /** Покрывает ли кэш период, начинающийся с {@code startDate}. */
+    public boolean covers(LocalDate startDate) {
+        LocalDate from = loadedFrom;
+        return from != null && !startDate.isBefore(from);
+    }
+
+    /**
+     * Догружает изменения после прошлой синхронизации. Если кэш не загружен,
+     * прошлая догрузка не удалась или пора полной перезагрузки — загружает всё заново.
+     */
+    public void sync() throws SQLException {
+        synchronized (syncLock) {
+            if (!restoreAttempted) {
+                restoreAttempted = true;
+                restoreFromStore();
+            }
+            boolean due = System.nanoTime() - lastFullResyncNanos >= fullResyncInterval.toNanos();
+            LocalDateTime since = cache.watermark();
+            if (fullResyncNeeded || due || since == null || !windowStart().equals(loadedFrom)) {
+                fullResync();
+                return;
+            }
+            AccountCache current = cache;
+            List<AccountChange> changes = new ArrayList<>();
+            long start = System.nanoTime();
+            try {
+                repository.forEachAccountChange(loadedFrom, since.minus(OVERLAP), change -> {
+                    current.apply(change.account(), change.updatedAt());
+                    // Строки из перекрытия уже применены и сохранены прошлой догрузкой
+                    if (change.updatedAt() != null && change.updatedAt().isAfter(since)) {
+                        changes.add(change);
+                    }
+                });
+            } catch (SQLException | RuntimeException e) {
+                fullResyncNeeded = true; // часть изменений могла не дойти — в следующий раз всё заново
+                throw e;
+            } finally {
+                DELTA_SYNC.recordSince(start);
+            }
+            if (!changes.isEmpty()) {
+                LOG.fine("Догружено изменённых счетов: " + changes.size());
+                if (store != null) {
+                    try {
+                        store.appendAccounts(changes);
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "Не удалось дописать счета в локальную копию", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Полностью перезагружает кэш. Пока идёт загрузка, запросы обслуживает старый кэш. */
+    public void fullResync() throws SQLException {
+        synchronized (syncLock) {
+            LocalDate from = windowStart();
+            AccountCache fresh = new AccountCache();
+            List<AccountChange> rows = store != null ? new ArrayList<>() : null;
+            long start = System.nanoTime();
+            try {
+                repository.forEachAccountChange(from, null, change -> {
+                    fresh.apply(change.account(), change.updatedAt());
+                    if (rows != null) {
+                        rows.add(change);
+                    }
+                });
+            } finally {
+                FULL_SYNC.recordSince(start);
+            }
+            cache = fresh;
+            loadedFrom = from;
+            lastFullResyncNanos = System.nanoTime();
+            fullResyncNeeded = false;
+            LOG.info("Кэш счетов загружен с " + from + ": " + fresh.size() + " оплаченных счетов");
+            if (rows != null) {
+                saveToStore(from, rows);
+            }
+        }
+    }
+
+    /**
+     * Восстанавливает кэш из локальной копии, чтобы отвечать на запросы до первого обращения к БД.
+     * Разделы процедур счетов пересчитываются в биты текущего словаря; если словарь загрузить
+     * не удалось, счета восстанавливаются без разделов, а при первой возможности кэш
+     * перезагружается целиком. Сохранённым справочником сотрудников заполняется {@link StaffDirectory},
+     * если тот ещё не загрузился из БД.
+     */
+    private void restoreFromStore() {
+        if (store == null) {
+            return;
+        }
+        try {
+            CategoryDictionary categories = null;
+            try {
+                categories = repository.categoryDictionary();
+            } catch (SQLException | RuntimeException e) {
+                LOG.log(Level.WARNING, "Словарь разделов процедур недоступен, счета восстанавливаются без разделов", e);
+            }
+            CategoryDictionary dictionary = categories;
+            AccountCache restored = new AccountCache();
+            LocalDate from = store.readAccounts(change -> {
+                MedicalAccount acc = change.account();
+                if (dictionary != null) {
+                    acc.setCategoryMask(dictionary.maskOfIds(acc.getCategoryIds()));
+                    acc.setCategory(dictionary.describe(acc.getCategoryMask()));
+                }
+                restored.apply(acc, change.updatedAt());
+            });
+            if (from == null) {
+                return;
+            }
+            cache = restored;
+            loadedFrom = from;
+            // Дальше — обычная догрузка изменений с отметки копии, полная перезагрузка — по расписанию
+            lastFullResyncNanos = System.nanoTime();
+            fullResyncNeeded = dictionary == null;
+            LOG.info("Кэш счетов восстановлен из локальной копии: " + restored.size()
+                    + " счетов, отметка " + restored.watermark());
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Не удалось прочитать локальную копию счетов", e);
+        }
+        if (staff == null) {
+            return;
+        }
+        try {
+            if (staff.seed(store.readStaff())) {
+                LOG.info("Справочник сотрудников восстановлен из локальной копии");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Не удалось прочитать локальную копию сотрудников", e);
+        }
+    }
+
+    /** Перезаписывает локальную копию счетов и справочников; ошибки записи не прерывают синхронизацию. */
+    private void saveToStore(LocalDate from, List<AccountChange> rows) {
+        try {
+            store.replaceAccounts(from, rows);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Не удалось сохранить счета в локальную копию", e);
+        }
+        try {
+            store.replaceStaff(repository.loadStaff());
+            store.replacePractices(repository.loadAllPractices(null));
+        } catch (SQLException | IOException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Не удалось сохранить справочники в локальную копию", e);
+        }
+    }
+
+    private LocalDate windowStart() {
+        return LocalDate.of(LocalDate.now().getYear() - years + 1, 1, 1);
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.sync;
+
+import org.example.dao.AsyncDao;
+import org.example.dao.DaoExecutor;
+import org.example.model.MedicalAccount;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Упреждающая загрузка платежей пациента за годы, которых нет в кэше синхронизации.
+ *
+ * Когда кэш {@link AccountSyncService} загружен, он покрывает последние {@code d4w.sync.years}
+ * лет — по умолчанию весь список годов в окне, и загружать заранее нечего. Прогрев нужен, пока
+ * кэш ещё не готов (первая полная загрузка после запуска без локальной копии) и для годов
+ * раньше его окна: при выборе пациента в таблице такие годы начинают загружаться сразу,
+ * до нажатия «Показать платежи пациента», — сначала выбранный, затем остальные.
+ * Если пользователь нажмёт кнопку, пока загрузка идёт, он получит её результат,
+ * а не запустит второй такой же запрос. Готовые результаты остаются в
+ * {@link AccountSyncService#resultCache()}.
+ *
+ * Чтобы не мешать интерактивным запросам:
+ * • годы грузятся строго по одному, не больше {@code d4w.prefetch.maxYears};
+ * • очередной год не начинается, пока в {@link DaoExecutor} есть ожидающие задачи;
+ * • годы, которые кэш синхронизации уже держит (или успел загрузить, пока шёл прогрев), пропускаются;
+ * • выбор другого пациента отменяет загрузку предыдущего.
+ */
+public class PaymentPrefetcher {
+
+    private static final int MAX_YEARS = Integer.getInteger("d4w.prefetch.maxYears", 4);
+    private static final Executor BACKOFF = CompletableFuture.delayedExecutor(250, TimeUnit.MILLISECONDS);
+
+    private record Key(int patientId, int year) {
+    }
+
+    private final AsyncDao asyncDao;
+    private final AccountSyncService syncService;
+    private final DaoExecutor executor;
+    private final Map<Key, CompletableFuture<List<MedicalAccount>>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder prefetched = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private long generation;                              // guarded by this
+    private Key runningKey;                               // guarded by this
+    private CompletableFuture<List<MedicalAccount>> running; // guarded by this
+
+    public PaymentPrefetcher(AsyncDao asyncDao, AccountSyncService syncService, DaoExecutor executor) {
+        this.asyncDao = asyncDao;
+        this.syncService = syncService;
+        this.executor = executor;
+    }
+
+    /**
+     * Начинает загрузку платежей пациента за годы вне кэша синхронизации: сначала {@code currentYear},
+     * затем остальные {@code years}. Незавершённая загрузка предыдущего пациента отменяется.
+     */
+    public synchronized void prefetch(int patientId, int currentYear, Collection<Integer> years) {
+        long gen = ++generation;
+        cancelRunning();
+
+        List<Integer> order = new ArrayList<>();
+        if (isCold(currentYear)) {
+            order.add(currentYear);
+        }
+        for (Integer year : years) {
+            if (order.size() >= MAX_YEARS) {
+                break;
+            }
+            if (year != null && year != currentYear && isCold(year)) {
+                order.add(year);
+            }
+        }
+        next(gen, patientId, order, 0);
+    }
+
+    /**
+     * Платежи пациента за год для таблицы: результат упреждающей загрузки,
+     * если она ещё идёт, иначе обычный запрос.
+     */
+    public CompletableFuture<List<MedicalAccount>> load(int patientId, int year) {
+        CompletableFuture<List<MedicalAccount>> pending = inFlight.remove(new Key(patientId, year));
+        if (pending != null && !pending.isCompletedExceptionally()) {
+            reused.increment();
+            // Отдельная стадия: её отмена из UI не прерывает общий запрос
+            return pending.thenApply(Function.identity());
+        }
+        return asyncDao.call("loadPayments", handle -> syncService.findAccountsForTaxReport(
+                0, // все филиалы
+                LocalDate.of(year, 1, 1),
+                LocalDate.of(year, 12, 31),
+                patientId,
+                handle));
+    }
+
+    /** Сколько лет загружено упреждающе. */
+    public long getPrefetchedCount() {
+        return prefetched.sum();
+    }
+
+    /** Сколько нажатий получили уже начатую упреждающую загрузку. */
+    public long getReusedCount() {
+        return reused.sum();
+    }
+
+    private synchronized void next(long gen, int patientId, List<Integer> years, int index) {
+        if (gen != generation || index >= years.size()) {
+            return;
+        }
+        int year = years.get(index);
+        if (!isCold(year)) {
+            next(gen, patientId, years, index + 1); // кэш успел загрузиться — грузить нечего
+            return;
+        }
+        if (executor.getQueuedCount() > 0) {
+            // Интерактивные запросы ждут соединения — уступаем и пробуем позже
+            CompletableFuture.runAsync(() -> next(gen, patientId, years, index), BACKOFF);
+            return;
+        }
+
+        Key key = new Key(patientId, year);
+        CompletableFuture<List<MedicalAccount>> f = asyncDao.call("prefetch", handle -> syncService.findAccountsForTaxReport(
+                0, LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), patientId, handle));
+        inFlight.put(key, f);
+        runningKey = key;
+        running = f;
+        f.whenComplete((accounts, error) -> {
+            if (inFlight.remove(key, f) && error == null) {
+                prefetched.increment();
+            }
+            next(gen, patientId, years, index + 1);
+        });
+    }
+
+    /** Год не покрыт кэшем синхронизации — за ним пришлось бы идти в БД. */
+    private boolean isCold(int year) {
+        return !syncService.covers(LocalDate.of(year, 1, 1));
+    }
+
+    /** Отменяет текущую загрузку, если её результат никто не ждёт. */
+    private void cancelRunning() {
+        if (running != null && inFlight.remove(runningKey, running)) {
+            running.cancel(true);
+        }
+        running = null;
+        runningKey = null;
+    }
+}
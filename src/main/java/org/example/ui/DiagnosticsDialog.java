@@ -0,0 +1,53 @@
+package org.example.ui;
+
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.TextArea;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Font;
+import javafx.stage.Stage;
+import org.example.metrics.MetricsRegistry;
+
+/**
+ * Окно диагностики: снимок метрик процесса (время запросов по фазам, ожидание пула,
+ * очередь задач, попадания в кэши). Данные не обновляются сами — кнопка «Обновить».
+ */
+public class DiagnosticsDialog {
+    private final Stage stage;
+    private final TextArea metricsArea = new TextArea();
+
+    public DiagnosticsDialog(Stage owner) {
+        this.stage = new Stage();
+        this.stage.setTitle("Диагностика");
+
+        VBox root = new VBox(10);
+        root.setPadding(new Insets(15, 15, 15, 15));
+
+        metricsArea.setEditable(false);
+        metricsArea.setFont(Font.font("Monospaced", 12));
+        VBox.setVgrow(metricsArea, Priority.ALWAYS);
+        refresh();
+
+        root.getChildren().addAll(
+                metricsArea,
+                new HBox(10,
+                        new Button("Обновить") {{
+                            setOnAction(e -> refresh());
+                        }},
+                        new Button("Закрыть") {{
+                            setOnAction(e -> stage.close());
+                        }})
+        );
+
+        stage.setScene(new Scene(root, 800, 600));
+        stage.initOwner(owner);
+        stage.show();
+    }
+
+    private void refresh() {
+        metricsArea.setText(MetricsRegistry.shared().format());
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.ui;
 
+import javafx.animation.PauseTransition;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -8,24 +9,60 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.control.cell.CheckBoxTableCell;
 import javafx.stage.Stage;
-import org.example.dao.AccountDao;
-import org.example.dao.PracticeDao;
+import javafx.util.Callback;
+import javafx.util.Duration;
+import org.example.dao.AsyncDao;
+import org.example.dao.CategoryDictionary;
+import org.example.dao.DaoExecutor;
+import org.example.dao.TaxDataRepository;
+import org.example.metrics.UiTaskEvent;
 import org.example.model.MedicalAccount;
+import org.example.model.Money;
 import org.example.model.Patient;
 import org.example.model.TaxReferenceSettings;
-import java.sql.SQLException;
+import org.example.report.BatchProgress;
+import org.example.report.CertificateBatchJob;
+import org.example.report.PdfCertificateRenderer;
+import org.example.search.PatientSearchService;
+import org.example.store.SnapshotStore;
+import org.example.sync.AccountSyncService;
+import org.example.sync.PaymentPrefetcher;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.text.DecimalFormatSymbols;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 public class TaxReferenceView {
 
-    private final PracticeDao practiceDao = new PracticeDao();
-    private final AccountDao accountDao = new AccountDao();
+    private static final Logger LOG = Logger.getLogger(TaxReferenceView.class.getName());
+
+    private static final int SEARCH_LIMIT = 50;
+    private static final int MIN_DB_QUERY_LENGTH = 3;
+    private static final Duration SEARCH_DEBOUNCE = Duration.millis(250);
+    private static final char DECIMAL_SEPARATOR = DecimalFormatSymbols.getInstance().getDecimalSeparator();
+
+    private final TaxDataRepository repository = TaxDataRepository.shared();
+    private final AsyncDao asyncDao = new AsyncDao();
+    private final PaymentPrefetcher paymentPrefetcher =
+            new PaymentPrefetcher(asyncDao, AccountSyncService.shared(), DaoExecutor.shared());
+    private final PatientSearchService patientSearch = PatientSearchService.shared();
     private final TaxReferenceSettings settings = new TaxReferenceSettings();
     private final Label titleLabel = new Label("Справка для налоговой");
     private final Button settingsButton = new Button("Настройки справки");
+    private final Button diagnosticsButton = new Button("Диагностика");
     private final ComboBox<String> practiceComboBox = new ComboBox<>();
     private final DatePicker reportDatePicker = new DatePicker();
     private final ComboBox<Integer> yearComboBox = new ComboBox<>();
@@ -33,6 +70,8 @@ public class TaxReferenceView {
     private final Button findPatientButton = new Button("Найти");
     private final Button clearButton = new Button("Очистить");
     private final Button showPaymentsButton = new Button("Показать платежи пациента");
+    private final Button batchExportButton = new Button("Выгрузить справки за год");
+    private final Button cancelExportButton = new Button("Остановить выгрузку");
     private final CheckBox patientIsPayerCheckBox = new CheckBox("Пациент является налогоплательщиком для данной справки");
     private final TableView<MedicalAccount> paymentsTable = new TableView<>();
     private final ObservableList<MedicalAccount> paymentsData = FXCollections.observableArrayList();
@@ -49,6 +88,13 @@ public class TaxReferenceView {
     private final TableView<Patient> patientTable = new TableView<>();
     private final ObservableList<Patient> patientData = FXCollections.observableArrayList();
 
+    // Поиск по мере ввода
+    private final PauseTransition searchDebounce = new PauseTransition(SEARCH_DEBOUNCE);
+    private final AtomicLong searchGeneration = new AtomicLong();
+    private CompletableFuture<?> runningSearch;
+    private CompletableFuture<?> paymentsTask;
+    private CertificateBatchJob runningExport;
+
 
     public Scene getScene() {
         initUI();
@@ -67,6 +113,9 @@ public class TaxReferenceView {
         settingsButton.setOnAction(e -> {
             new SettingsDialog(settings, (Stage) paymentsTable.getScene().getWindow());
         });
+        diagnosticsButton.setOnAction(e -> {
+            new DiagnosticsDialog((Stage) paymentsTable.getScene().getWindow());
+        });
 
         practiceComboBox.getItems().addAll("Все филиалы", "Филиал 1", "Филиал 2");
         practiceComboBox.setValue("Все филиалы");
@@ -82,84 +131,197 @@ public class TaxReferenceView {
         reportDatePicker.setValue(LocalDate.now());
 
 
+        // Поиск по мере ввода: запрос уходит, когда пользователь перестал печатать
+        searchDebounce.setOnFinished(e -> searchPatients(false));
+        patientSearchField.textProperty().addListener((obs, old, text) -> searchDebounce.playFromStart());
+        patientSearchField.setOnAction(e -> {
+            searchDebounce.stop();
+            searchPatients(true);
+        });
         findPatientButton.setOnAction(e -> {
-            String query = patientSearchField.getText().trim();
-            if (query.isEmpty()) {
-                statusLabel.setText("Введите ФИО или номер карты");
-                return;
-            }
-
-            String selectedPractice = practiceComboBox.getValue();
-            int practiceId = 0;
-            if (selectedPractice != null && !"Все филиалы".equals(selectedPractice)) {
-                practiceId = practiceMap.get(selectedPractice);
-            }
-
-            // Заворачиваем в final-переменные
-            final int finalPracticeId = practiceId;
-            final String finalQuery = query;
-
-            new Thread(() -> {
-                try {
-                    // Используем final-копии — безопасно внутри лямбды
-                    List<Patient> patients = accountDao.findPatientsByQuery(finalPracticeId, finalQuery);
-
-                    javafx.application.Platform.runLater(() -> {
-                        if (patients.isEmpty()) {
-                            statusLabel.setText("Пациент не найден");
-                            clearPatientInfo();
-                        } else {
-                            Patient selected = patients.get(0);
-                            settings.setSelectedPatient(selected);
-                            displayPatientInfo(selected);
-                            statusLabel.setText("Найден: " + selected.getFullName());
-                        }
-                    });
-                } catch (SQLException ex) {
-                    javafx.application.Platform.runLater(() ->
-                            statusLabel.setText("Ошибка поиска: " + ex.getMessage()));
-                }
-            }).start();
+            searchDebounce.stop();
+            searchPatients(true);
         });
 
 
-        clearButton.setOnAction(e -> patientSearchField.clear());
+        clearButton.setOnAction(e -> {
+            patientSearchField.clear();
+            cancelRunningSearch();
+            clearPatientInfo();
+        });
         showPaymentsButton.setOnAction(e -> loadPayments());
+        batchExportButton.setOnAction(e -> exportAllCertificates());
+        cancelExportButton.setOnAction(e -> cancelExport());
+        cancelExportButton.setDisable(true);
         patientIsPayerCheckBox.setSelected(true);
 
 
         loadPractices();
     }
 
-    private void loadPractices() {
-        new Thread(() -> {
-            try {
-                List<String> practices = practiceDao.loadAllPractices();
-                final List<String> finalPractices = new ArrayList<>(practices);
-                javafx.application.Platform.runLater(() -> {
-                    practiceComboBox.getItems().clear();
-                    practiceComboBox.getItems().add("Все филиалы");
-                    practiceComboBox.getItems().addAll(finalPractices);
+    /**
+     * Ищет пациентов по строке из {patientSearchField} и показывает ранжированный список в {patientTable}.
+     *
+     * Показываются только результаты последнего запроса: каждый запрос получает номер,
+     * ответы устаревших запросов отбрасываются, а выполняющийся запрос к БД отменяется
+     * ({Statement.cancel}) при начале нового. Пока индекс пациентов загружается,
+     * поиск идёт запросом к БД — при наборе только от {MIN_DB_QUERY_LENGTH} символов.
+     *
+     * @param explicit поиск запущен кнопкой/Enter, а не набором текста
+     */
+    private void searchPatients(boolean explicit) {
+        String query = patientSearchField.getText().trim();
+        long generation = searchGeneration.incrementAndGet();
+        cancelRunningSearch();
+
+        if (query.isEmpty()) {
+            if (explicit) {
+                statusLabel.setText("Введите ФИО или номер карты");
+            }
+            return;
+        }
+
+        String selectedPractice = practiceComboBox.getValue();
+        int practiceId = practiceMap.getOrDefault(selectedPractice, 0);
+
+        // Индекс в памяти отвечает быстрее, чем переключение потоков — ищем сразу
+        if (patientSearch.isReady()) {
+            showSearchResults(patientSearch.search(practiceId, query, SEARCH_LIMIT));
+            return;
+        }
+        if (!explicit && query.length() < MIN_DB_QUERY_LENGTH) {
+            return;
+        }
 
+        statusLabel.setText("Поиск...");
 
-                    practiceMap.clear();
-                    practiceMap.put("Все филиалы", 0); // Все филиалы
+        // Отмена future отменяет и запрос на сервере (Statement.cancel)
+        runningSearch = onFxThread("findPatients", asyncDao.findPatientsByQuery(practiceId, query),
+                patients -> {
+                    if (generation == searchGeneration.get()) {
+                        showSearchResults(patients);
+                    }
+                },
+                ex -> {
+                    if (generation == searchGeneration.get()) {
+                        statusLabel.setText("Ошибка поиска: " + ex.getMessage());
+                    }
+                });
+    }
+
+    private void cancelRunningSearch() {
+        CompletableFuture<?> running = runningSearch;
+        runningSearch = null;
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
 
-                    practiceComboBox.setValue("Все филиалы");
+    private void showSearchResults(List<Patient> patients) {
+        if (patients.isEmpty()) {
+            statusLabel.setText("Пациент не найден");
+            clearPatientInfo();
+            return;
+        }
+        patientData.setAll(patients);
+        patientTable.getSelectionModel().selectFirst();
+        displayPatientInfo(patients.get(0));
+        statusLabel.setText(patients.size() == 1
+                ? "Найден: " + patients.get(0).getFullName()
+                : "Найдено пациентов: " + patients.size() + (patients.size() == SEARCH_LIMIT ? " (уточните запрос)" : ""));
+    }
+
+    private void loadPractices() {
+        onFxThread("loadPractices", asyncDao.loadAllPractices(),
+                this::showPractices,
+                e -> {
+                    // БД недоступна — берём филиалы из локальной копии, если она есть
+                    Map<String, Integer> saved = savedPractices();
+                    if (saved.isEmpty()) {
+                        statusLabel.setText("Ошибка загрузки филиалов: " + e.getMessage());
+                    } else {
+                        showPractices(saved);
+                        statusLabel.setText("Нет связи с БД — филиалы из локальной копии");
+                    }
                 });
-            } catch (SQLException e) {
-                javafx.application.Platform.runLater(() ->
-                        statusLabel.setText("Ошибка загрузки филиалов: " + e.getMessage())
-                );
+    }
+
+    /** @param practices название → id филиала в порядке показа */
+    private void showPractices(Map<String, Integer> practices) {
+        practiceComboBox.getItems().clear();
+        practiceComboBox.getItems().add("Все филиалы");
+        practiceComboBox.getItems().addAll(practices.keySet());
+
+
+        practiceMap.clear();
+        practiceMap.put("Все филиалы", 0); // Все филиалы
+        practiceMap.putAll(practices);
+
+        practiceComboBox.setValue("Все филиалы");
+    }
+
+    private static Map<String, Integer> savedPractices() {
+        SnapshotStore store = SnapshotStore.shared();
+        if (store == null) {
+            return Map.of();
+        }
+        try {
+            return store.readPractices();
+        } catch (IOException e) {
+            return Map.of();
+        }
+    }
+
+    /**
+     * Передаёт результат или ошибку асинхронного вызова {AsyncDao} в UI-поток.
+     * Отменённые задачи ни результата, ни ошибки не показывают.
+     * Жизненный цикл задачи пишется в JFR ({@link UiTaskEvent}).
+     *
+     * @param task имя задачи для JFR
+     * @return тот же future — его отмена отменяет и запрос к БД
+     */
+    private <T> CompletableFuture<T> onFxThread(String task,
+                                                CompletableFuture<T> future,
+                                                Consumer<T> onSuccess,
+                                                Consumer<Throwable> onError) {
+        UiTaskEvent event = new UiTaskEvent();
+        event.begin();
+        future.whenComplete((result, error) -> javafx.application.Platform.runLater(() -> {
+            if (error == null) {
+                commitTask(event, task, "ok", null);
+                onSuccess.accept(result);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                commitTask(event, task, "cancelled", null);
+                return;
             }
-        }).start();
+            if (cause instanceof TimeoutException) {
+                commitTask(event, task, "timeout", null);
+                onError.accept(new TimeoutException("сервер не ответил вовремя"));
+                return;
+            }
+            commitTask(event, task, "error", cause);
+            onError.accept(cause);
+        }));
+        return future;
+    }
+
+    private static void commitTask(UiTaskEvent event, String task, String outcome, Throwable error) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.task = task;
+            event.outcome = outcome;
+            event.error = error != null ? error.toString() : null;
+            event.commit();
+        }
     }
 
     private void displayPatientInfo(Patient patient) {
 
-        patientData.clear();
-        patientData.add(patient); // добавляем одного пациента
-        statusLabel.setText(" Найден: " + patient.getFullName());
+        settings.setSelectedPatient(patient);
 
         // Заполняем поля в секции "Сведения о пациенте"
         patientNumberField.setText(patient.getCardNumber()); // № карты
@@ -172,8 +334,6 @@ public class TaxReferenceView {
         );
         patientInnField.setText(patient.getInn()); // ИНН
 
-        // Обновляем статус
-        statusLabel.setText(" Найден пациент: " + patient.getFullName());
     }
 
 
@@ -204,7 +364,8 @@ public class TaxReferenceView {
                 new Label("Выбор филиала:"),
                 practiceComboBox,
                 new Region(), // ← пустое пространство для растяжения
-                settingsButton
+                settingsButton,
+                diagnosticsButton
         );
 
         HBox.setMargin(settingsButton, new Insets(0, 0, 0, 280));
@@ -221,7 +382,8 @@ public class TaxReferenceView {
         Label title = new Label("Сведения о пациенте");
         title.setStyle("-fx-font-weight: bold;");
 
-        patientTable.setPrefHeight(80);
+        patientTable.setPrefHeight(140);
+        patientTable.setPlaceholder(new Label("Начните вводить ФИО или № карты"));
         patientTable.setItems(patientData);
 
         TableColumn<Patient, String> cardCol = new TableColumn<>("№ карты");
@@ -236,10 +398,9 @@ public class TaxReferenceView {
         TableColumn<Patient, String> middlenameCol = new TableColumn<>("Отчество");
         middlenameCol.setCellValueFactory(p -> p.getValue().middlenameProperty());
 
-        TableColumn<Patient, String> dobCol = new TableColumn<>("Год рождения");
-        dobCol.setCellValueFactory(p ->
-                p.getValue().birthDateProperty().asString("%1$tY")
-        );
+        TableColumn<Patient, LocalDate> dobCol = new TableColumn<>("Год рождения");
+        dobCol.setCellValueFactory(p -> p.getValue().birthDateProperty());
+        dobCol.setCellFactory(formattedCell(date -> String.valueOf(date.getYear())));
 
         TableColumn<Patient, String> innCol = new TableColumn<>("ИНН");
         innCol.setCellValueFactory(p -> p.getValue().innProperty());
@@ -249,8 +410,10 @@ public class TaxReferenceView {
         // При клике на строку — заполняем поля
         patientTable.getSelectionModel().selectedItemProperty().addListener((obs, old, selected) -> {
             if (selected != null) {
-                settings.setSelectedPatient(selected);
+                displayPatientInfo(selected);
                 statusLabel.setText("Выбран: " + selected.getFullName());
+                // Платежи начинают грузиться до нажатия кнопки: выбранный год, затем остальные
+                paymentPrefetcher.prefetch(selected.getId(), yearComboBox.getValue(), yearComboBox.getItems());
             }
         });
 
@@ -290,33 +453,28 @@ public class TaxReferenceView {
         TableColumn<MedicalAccount, String> numberCol = new TableColumn<>("№ счёта");
         numberCol.setCellValueFactory(cell -> cell.getValue().numberProperty());
 
-        TableColumn<MedicalAccount, String> accountDateCol = new TableColumn<>("Дата счёта");
-        accountDateCol.setCellValueFactory(cell ->
-                cell.getValue().dateCreatedProperty().asString("%1$tY-%1$tm-%1$td")
-        );
+        // Свойства моделей кэшируются, а форматирование делает ячейка —
+        // прокрутка таблицы не создаёт новых свойств и привязок
+        TableColumn<MedicalAccount, LocalDate> accountDateCol = new TableColumn<>("Дата счёта");
+        accountDateCol.setCellValueFactory(cell -> cell.getValue().dateCreatedProperty());
+        accountDateCol.setCellFactory(formattedCell(DateTimeFormatter.ISO_LOCAL_DATE::format));
 
 
-        TableColumn<MedicalAccount, String> totalCol = new TableColumn<>("Сумма");
-        totalCol.setCellValueFactory(cell ->
-                cell.getValue().totalProperty().asString("%.2f")
-        );
+        TableColumn<MedicalAccount, BigDecimal> totalCol = new TableColumn<>("Сумма");
+        totalCol.setCellValueFactory(cell -> cell.getValue().totalProperty());
+        totalCol.setCellFactory(formattedCell(TaxReferenceView::formatAmount));
 
-        TableColumn<MedicalAccount, String> discountCol = new TableColumn<>("Скидка");
-        discountCol.setCellValueFactory(cell ->
-                cell.getValue().rebateProperty().asString("%.2f")
-        );
+        TableColumn<MedicalAccount, BigDecimal> discountCol = new TableColumn<>("Скидка");
+        discountCol.setCellValueFactory(cell -> cell.getValue().rebateProperty());
+        discountCol.setCellFactory(formattedCell(TaxReferenceView::formatAmount));
 
-        TableColumn<MedicalAccount, String> paidCol = new TableColumn<>("Оплачено");
-        paidCol.setCellValueFactory(cell ->
-                cell.getValue().amountPaidProperty().asString("%.2f")
-        );
+        TableColumn<MedicalAccount, BigDecimal> paidCol = new TableColumn<>("Оплачено");
+        paidCol.setCellValueFactory(cell -> cell.getValue().amountPaidProperty());
+        paidCol.setCellFactory(formattedCell(TaxReferenceView::formatAmount));
 
-        TableColumn<MedicalAccount, String> payDateCol = new TableColumn<>("Дата оплаты");
-        payDateCol.setCellValueFactory(cell ->
-                cell.getValue().paymentDateProperty()
-                        .asString("%1$tY-%1$tm-%1$td")
-                        .orElse("")
-        );
+        TableColumn<MedicalAccount, LocalDate> payDateCol = new TableColumn<>("Дата оплаты");
+        payDateCol.setCellValueFactory(cell -> cell.getValue().paymentDateProperty());
+        payDateCol.setCellFactory(formattedCell(DateTimeFormatter.ISO_LOCAL_DATE::format));
 
 
         paymentsTable.getColumns().setAll(
@@ -324,11 +482,62 @@ public class TaxReferenceView {
                 totalCol, discountCol, paidCol, payDateCol
         );
         paymentsTable.setItems(paymentsData);
+        paymentsTable.setEditable(true); // иначе CheckBoxTableCell не даёт менять флажок «Включить»
         paymentsTable.setPlaceholder(new Label("Нажмите «Показать платежи пациента»"));
     }
+
+    /** Ячейка таблицы, показывающая значение через {@code formatter} (null — пустая ячейка). */
+    private static <S, T> Callback<TableColumn<S, T>, TableCell<S, T>> formattedCell(Function<T, String> formatter) {
+        return column -> new TableCell<>() {
+            @Override
+            protected void updateItem(T item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : formatter.apply(item));
+            }
+        };
+    }
+
+    private static String formatAmount(BigDecimal amount) {
+        return Money.format(Money.toKopecks(amount), DECIMAL_SEPARATOR);
+    }
+
+    /**
+     * Маска разделов процедур, выбранных в настройках (пусто — отбор не нужен).
+     * Считается в исполнителе DAO: словарь разделов может потребовать запроса к БД.
+     */
+    private CompletableFuture<OptionalLong> loadCategorySelection() {
+        Set<String> categories = settings.getProcedureCategories();
+        if (categories.isEmpty()) {
+            return CompletableFuture.completedFuture(OptionalLong.empty());
+        }
+        return asyncDao.call("categorySelection",
+                        handle -> OptionalLong.of(repository.categoryDictionary().selectionMask(categories)))
+                .exceptionally(e -> {
+                    // Без словаря оставляем все счета включёнными
+                    LOG.log(Level.WARNING, "Не удалось загрузить разделы процедур, отбор счетов не применён", e);
+                    return OptionalLong.empty();
+                });
+    }
+
+    /** Снимает флажок «Включить» со счетов вне разделов процедур из маски {@code selection}. */
+    private static void markSelectedCategories(List<MedicalAccount> accounts, OptionalLong selection) {
+        if (selection.isEmpty()) {
+            return;
+        }
+        for (MedicalAccount acc : accounts) {
+            acc.setSelected(CategoryDictionary.matches(acc.getCategoryMask(), selection.getAsLong()));
+        }
+    }
+
+    /** Платежи пациента вместе с маской выбранных разделов процедур. */
+    private record LoadedPayments(List<MedicalAccount> accounts, OptionalLong selection) {
+    }
+
     /**
      * Загружает платежи выбранного пациента за указанный год.
-     * Использует {AccountDao#findAccountsForTaxReport} с фильтром по patientId.
+     * Счета берутся из локального кэша ({@link AccountSyncService}), а если он
+     * ещё не загружен или не покрывает год — через {AccountDao#findAccountsForTaxReport}.
+     * Если платежи уже загружаются упреждающе ({@link PaymentPrefetcher}), ждём эту загрузку.
      * Результат отображается в {paymentsTable}.
      */
     private void loadPayments() {
@@ -342,17 +551,18 @@ public class TaxReferenceView {
 
         int year = yearComboBox.getValue();
 
-        new Thread(() -> {
-            try {
-
-                List<MedicalAccount> accounts = accountDao.findAccountsForTaxReport(
-                        0, // все филиалы
-                        LocalDate.of(year, 1, 1),
-                        LocalDate.of(year, 12, 31),
-                        selectedPatient.getId()
-                );
+        // Повторное нажатие отменяет предыдущую загрузку, а не ставит ещё одну в очередь
+        CompletableFuture<?> previous = paymentsTask;
+        if (previous != null) {
+            previous.cancel(true);
+        }
 
-                javafx.application.Platform.runLater(() -> {
+        CompletableFuture<List<MedicalAccount>> accountsTask = paymentPrefetcher.load(selectedPatient.getId(), year);
+        paymentsTask = accountsTask; // отмена прерывает запрос платежей
+        onFxThread("loadPayments", accountsTask.thenCombine(loadCategorySelection(), LoadedPayments::new),
+                loaded -> {
+                    List<MedicalAccount> accounts = loaded.accounts();
+                    markSelectedCategories(accounts, loaded.selection());
                     paymentsData.setAll(accounts); // Загружаем данные в таблицу
                     if (accounts.isEmpty()) {
                         paymentsTable.setPlaceholder(new Label(" Найдено 0 оплаченных счетов за " + year + " г."));
@@ -361,20 +571,84 @@ public class TaxReferenceView {
                     }
                     // Очистим статус внизу окна
                     statusLabel.setText("");
-                });
-
-            } catch (SQLException e) {
-                javafx.application.Platform.runLater(() -> {
+                },
+                e -> {
                     paymentsData.clear();
                     paymentsTable.setPlaceholder(new Label(" Ошибка: " + e.getMessage()));
                     statusLabel.setText(""); // Очистим статус внизу окна
                 });
-            }
-        }).start();
 
     }
 
 
+    /**
+     * Формирует справки за выбранный год по всем пациентам выбранного филиала
+     * (см. {CertificateBatchJob}). Файлы сохраняются в папку выгрузки из настроек.
+     */
+    private void exportAllCertificates() {
+        String selectedPractice = practiceComboBox.getValue();
+        int practiceId = practiceMap.getOrDefault(selectedPractice, 0);
+        int year = yearComboBox.getValue();
+
+        CertificateBatchJob.Options options = new CertificateBatchJob.Options();
+        options.setPracticeId(practiceId);
+        options.setYear(year);
+        options.setOutputDir(Path.of(settings.getExportPath()));
+        options.setServerAggregation(true); // суммы по пациентам считает сервер
+
+        CertificateBatchJob job = new CertificateBatchJob(repository, settings, new PdfCertificateRenderer(), options,
+                progress -> javafx.application.Platform.runLater(() ->
+                        statusLabel.setText("Выгрузка справок за " + year + " г.: " + progress)));
+
+        runningExport = job;
+        batchExportButton.setDisable(true);
+        cancelExportButton.setDisable(false);
+        UiTaskEvent event = new UiTaskEvent();
+        event.begin();
+        // Выгрузка длится минуты и держит соединение всё это время — запускаем её в своём потоке,
+        // а не в DaoExecutor, чтобы не занимать разрешение, нужное поиску и платежам
+        CompletableFuture<BatchProgress> done = new CompletableFuture<>();
+        Thread worker = new Thread(() -> {
+            try {
+                done.complete(job.run());
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            }
+        }, "d4w-certificate-export");
+        worker.setDaemon(true);
+        worker.start();
+        done.whenComplete((result, error) -> javafx.application.Platform.runLater(() -> {
+            runningExport = null;
+            batchExportButton.setDisable(false);
+            cancelExportButton.setDisable(true);
+            if (job.isCancelled()) {
+                // Остановка посреди чтения может завершиться ошибкой отменённого запроса — это не сбой
+                commitTask(event, "exportCertificates", "cancelled", null);
+                statusLabel.setText(result != null
+                        ? "Выгрузка остановлена: записано " + result.written() + " справок за " + year + " г."
+                        : "Выгрузка остановлена");
+            } else if (error == null) {
+                commitTask(event, "exportCertificates", "ok", null);
+                statusLabel.setText("Готово: записано " + result.written() + " справок за " + year
+                        + " г., ошибок " + result.failed());
+            } else {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                commitTask(event, "exportCertificates", "error", cause);
+                statusLabel.setText("Ошибка выгрузки справок: " + cause.getMessage());
+            }
+        }));
+    }
+
+    /** Останавливает идущую выгрузку справок; уже записанные файлы остаются. */
+    private void cancelExport() {
+        CertificateBatchJob job = runningExport;
+        if (job != null) {
+            job.cancel();
+            cancelExportButton.setDisable(true);
+            statusLabel.setText("Останавливаем выгрузку справок…");
+        }
+    }
+
     private VBox createSearchSection() {
         VBox box = new VBox(8);
         box.setStyle("-fx-border-color: #ccc; -fx-border-width: 1px; -fx-padding: 10px;");
@@ -393,7 +667,9 @@ public class TaxReferenceView {
         dateRow.getChildren().addAll(
                 new Label("Дата справки:"), reportDatePicker,
                 new Label("Год справки:"), yearComboBox,
-                showPaymentsButton
+                showPaymentsButton,
+                batchExportButton,
+                cancelExportButton
         );
 
         box.getChildren().addAll(title, searchRow, dateRow);
@@ -0,0 +1,117 @@
+package org.example;
+
+import org.example.dao.ClinicDataGenerator;
+import org.example.dao.TaxDataRepository;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+import org.example.report.CertificateRenderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест пакетного режима: аргументы, настройки и коды завершения (без БД и JavaFX).
+ */
+class BatchMainTest {
+
+    @TempDir
+    Path dir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private static TaxDataRepository clinic() {
+        ClinicDataGenerator.Options options = new ClinicDataGenerator.Options();
+        options.setPatients(50);
+        options.setAccounts(400);
+        options.setLastYear(2024);
+        options.setYears(1);
+        return new ClinicDataGenerator(options).generate();
+    }
+
+    private static CertificateRenderer renderer(int failPatient) {
+        return new CertificateRenderer() {
+            @Override
+            public String fileExtension() {
+                return "txt";
+            }
+
+            @Override
+            public byte[] render(TaxCertificate cert, TaxReferenceSettings settings) throws IOException {
+                if (cert.getPatientId() == failPatient) {
+                    throw new IOException("сбой формирования");
+                }
+                return (settings.getInn() + ";" + cert.getAmount().toPlainString()).getBytes(StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    private int run(CertificateRenderer renderer, String... args) {
+        TaxDataRepository repository = clinic();
+        return BatchMain.run(args, new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8), () -> repository, () -> renderer);
+    }
+
+    private long files() throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.count();
+        }
+    }
+
+    @Test
+    void shouldRejectBadArgumentsWithUsageCode() {
+        assertEquals(BatchMain.EXIT_USAGE, run(renderer(-1), "--year"));
+        assertEquals(BatchMain.EXIT_USAGE, run(renderer(-1), "--year", "двадцать"));
+        assertEquals(BatchMain.EXIT_USAGE, run(renderer(-1), "--practice", "-1"));
+        assertEquals(BatchMain.EXIT_USAGE, run(renderer(-1), "--unknown"));
+        assertEquals(BatchMain.EXIT_OK, run(renderer(-1), "--help"));
+    }
+
+    @Test
+    void shouldExportWithSettingsFromFile() throws Exception {
+        Path settings = dir.resolve("clinic.properties");
+        Files.writeString(settings, "inn=7701234567\nkpp=770101001\nsignerType=2\n");
+        Path out = dir.resolve("out");
+
+        assertEquals(BatchMain.EXIT_OK, run(renderer(-1),
+                "--batch", "--year", "2024", "--out", out.toString(), "--settings", settings.toString()));
+        try (Stream<Path> list = Files.list(out)) {
+            assertTrue(list.allMatch(f -> readString(f).startsWith("7701234567;")));
+        }
+        assertTrue(this.out.toString(StandardCharsets.UTF_8).startsWith("Записано "));
+
+        TaxReferenceSettings loaded = BatchMain.loadSettings(settings);
+        assertEquals("770101001", loaded.getKpp());
+        assertEquals(2, loaded.getSignerType());
+    }
+
+    @Test
+    void shouldReportPartialFailureAndConfigErrors() throws Exception {
+        Path out = dir.resolve("out");
+        assertEquals(BatchMain.EXIT_PARTIAL, run(renderer(1), "--year", "2024", "--patient", "1", "--out", out.toString()));
+
+        Files.writeString(dir.resolve("bad.properties"), "signerType=руководитель\n");
+        assertEquals(BatchMain.EXIT_CONFIG, run(renderer(-1),
+                "--out", out.toString(), "--settings", dir.resolve("bad.properties").toString()));
+        assertEquals(BatchMain.EXIT_CONFIG, run(renderer(-1),
+                "--out", out.toString(), "--settings", dir.resolve("missing.properties").toString()));
+        assertEquals(2, files()); // только out и bad.properties
+    }
+
+    private static String readString(Path file) {
+        try {
+            return Files.readString(file);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
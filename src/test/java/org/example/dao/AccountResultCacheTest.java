@@ -0,0 +1,100 @@
+package org.example.dao;
+
+import org.example.dao.AccountDao.ChangeStamp;
+import org.example.dao.AccountResultCache.Key;
+import org.example.model.MedicalAccount;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест кэша результатов выборки счетов (без БД).
+ */
+class AccountResultCacheTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 12, 31);
+    private static final LocalDateTime T = LocalDateTime.of(2024, 6, 1, 12, 0);
+
+    /** Источник в памяти: отметка и счета пациента задаются тестом, выборки считаются. */
+    private static class FakeSource implements AccountResultCache.Source {
+        final Map<Integer, ChangeStamp> stamps = new HashMap<>();
+        final Map<Integer, Integer> accountCounts = new HashMap<>();
+        int loads;
+
+        @Override
+        public ChangeStamp stamp(Key key, QueryHandle handle) {
+            return stamps.getOrDefault(key.patientId(), new ChangeStamp(T, 1));
+        }
+
+        @Override
+        public List<MedicalAccount> load(Key key, QueryHandle handle) {
+            loads++;
+            List<MedicalAccount> result = new ArrayList<>();
+            for (int i = 0; i < accountCounts.getOrDefault(key.patientId(), 1); i++) {
+                MedicalAccount acc = new MedicalAccount();
+                acc.setId(key.patientId() * 100 + i);
+                acc.setPatientId(key.patientId());
+                result.add(acc);
+            }
+            return result;
+        }
+    }
+
+    @Test
+    void shouldServeRepeatedQueryUntilStampChanges() throws Exception {
+        FakeSource source = new FakeSource();
+        AccountResultCache cache = new AccountResultCache(source, 100);
+
+        cache.findAccountsForTaxReport(0, START, END, 1, null);
+        List<MedicalAccount> second = cache.findAccountsForTaxReport(0, START, END, 1, null);
+        assertEquals(1, source.loads);
+        assertEquals(1, second.size());
+
+        second.get(0).setSelected(false); // правка выданной копии не портит кэш
+        assertTrue(cache.findAccountsForTaxReport(0, START, END, 1, null).get(0).isSelected());
+
+        source.stamps.put(1, new ChangeStamp(T.plusSeconds(1), 1));
+        cache.findAccountsForTaxReport(0, START, END, 1, null);
+        assertEquals(2, source.loads);
+        assertEquals(1, cache.getInvalidationCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedByAccountCount() throws Exception {
+        FakeSource source = new FakeSource();
+        source.accountCounts.put(1, 4);
+        source.accountCounts.put(2, 4);
+        source.accountCounts.put(3, 4);
+        AccountResultCache cache = new AccountResultCache(source, 12); // вес результата — счета + 1
+
+        cache.findAccountsForTaxReport(0, START, END, 1, null);
+        cache.findAccountsForTaxReport(0, START, END, 2, null);
+        cache.findAccountsForTaxReport(0, START, END, 1, null); // пациент 1 запрошен недавно
+        cache.findAccountsForTaxReport(0, START, END, 3, null);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        cache.findAccountsForTaxReport(0, START, END, 1, null);
+        assertEquals(3, source.loads); // пациент 1 остался, вытеснен пациент 2
+    }
+
+    @Test
+    void shouldNotCacheResultLargerThanLimit() throws Exception {
+        FakeSource source = new FakeSource();
+        source.accountCounts.put(1, 50);
+        AccountResultCache cache = new AccountResultCache(source, 10);
+
+        assertEquals(50, cache.findAccountsForTaxReport(0, START, END, 1, null).size());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест асинхронного фасада DAO (без БД).
+ */
+class AsyncDaoTest {
+
+    private final DaoExecutor executor = new DaoExecutor(2, Duration.ZERO);
+    private final AtomicInteger queryTimeout = new AtomicInteger(-1);
+    private final AtomicBoolean statementCancelled = new AtomicBoolean();
+
+    /** Statement-заглушка: запоминает таймаут и отмену, остальные вызовы игнорирует. */
+    private final Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+            new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setQueryTimeout" -> queryTimeout.set((Integer) args[0]);
+                    case "cancel" -> statementCancelled.set(true);
+                    default -> { }
+                }
+                return method.getReturnType() == boolean.class ? false
+                        : method.getReturnType() == int.class ? 0 : null;
+            });
+
+    private AsyncDao asyncDao(int queryTimeoutSeconds) {
+        ReferenceDataService referenceData = new ReferenceDataService(
+                () -> CategoryDictionary.of(Map.of()), Map::of, new StaffDirectory(Map::of, Duration.ofMinutes(15)));
+        return new AsyncDao(new InMemoryTaxDataRepository.Builder().build(), referenceData, executor, queryTimeoutSeconds);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldCancelRunningQueryWhenFutureIsCancelled() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicReference<QueryHandle> seen = new AtomicReference<>();
+
+        CompletableFuture<String> future = asyncDao(5).call("blocking", handle -> {
+            seen.set(handle);
+            started.countDown();
+            Thread.sleep(10_000);
+            return "never";
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+
+        assertTrue(seen.get().isCancelled(), "Cancelling the future should cancel the statement handle");
+    }
+
+    @Test
+    void shouldCompleteWithResult() throws Exception {
+        assertEquals("ok", asyncDao(5).call("quick", handle -> "ok").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shouldSetQueryTimeoutOnStatement() throws Exception {
+        asyncDao(7).call("timed", handle -> {
+            QueryHandle.attach(handle, statement);
+            QueryHandle.detach(handle);
+            return null;
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(7, queryTimeout.get());
+    }
+
+    @Test
+    void shouldCancelStatementWhenTaskTimesOut() throws Exception {
+        AtomicReference<QueryHandle> seen = new AtomicReference<>();
+
+        // Таймаут задачи — удвоенный таймаут запроса, т.е. 2 с
+        CompletableFuture<String> future = asyncDao(1).call("hanging", handle -> {
+            seen.set(handle);
+            QueryHandle.attach(handle, statement);
+            try {
+                Thread.sleep(10_000);
+            } finally {
+                QueryHandle.detach(handle);
+            }
+            return "never";
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException, "Future should fail with the task timeout");
+        // Отмена выполняется обработчиком завершения future — он может отработать чуть позже get()
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!statementCancelled.get() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(seen.get().isCancelled(), "Task timeout should cancel the statement handle");
+        assertTrue(statementCancelled.get(), "Task timeout should call Statement.cancel()");
+    }
+}
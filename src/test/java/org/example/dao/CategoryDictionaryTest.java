@@ -0,0 +1,57 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест словаря категорий процедур (без БД).
+ */
+class CategoryDictionaryTest {
+
+    private final CategoryDictionary dictionary = CategoryDictionary.of(Map.of(
+            10, "Терапия",
+            11, "Хирургия",
+            12, "Терапия",       // та же категория в другой строке lev_2
+            20, "Ортодонтия"));
+
+    @Test
+    void assignsOneBitPerCategoryName() {
+        assertEquals(3, dictionary.size());
+        assertEquals(dictionary.maskOfIds("10"), dictionary.maskOfIds("12"));
+        assertNotEquals(dictionary.maskOfIds("10"), dictionary.maskOfIds("11"));
+        assertEquals(0, dictionary.maskOfIds(null));
+        assertEquals(0, dictionary.maskOfIds("999"));
+        assertEquals(Set.of("Терапия", "Хирургия"), dictionary.names(dictionary.maskOfIds("11, 10,999")));
+        assertEquals("Терапия, Хирургия", dictionary.describe(dictionary.maskOfIds("11,10")));
+        assertEquals("Без категории", dictionary.describe(0));
+    }
+
+    @Test
+    void filtersBySelectionMask() {
+        long selection = dictionary.selectionMask(List.of("Хирургия", "Неизвестная"));
+        assertTrue(CategoryDictionary.matches(dictionary.maskOfIds("11"), selection));
+        assertTrue(CategoryDictionary.matches(dictionary.maskOfIds("10,11"), selection));
+        assertFalse(CategoryDictionary.matches(dictionary.maskOfIds("10,20"), selection));
+        assertTrue(CategoryDictionary.matches(0, selection), "счёт без разделов не отбрасывается");
+        assertEquals(CategoryDictionary.ALL, dictionary.selectionMask(List.of()));
+    }
+
+    @Test
+    void categoriesBeyond64ShareTheLastBit() {
+        Map<Integer, String> many = new HashMap<>();
+        for (int i = 0; i < 70; i++) {
+            many.put(i, String.format("Раздел %02d", i));
+        }
+        CategoryDictionary big = CategoryDictionary.of(many);
+        assertEquals(70, big.size());
+        assertEquals(63, big.bitOf("Раздел 63"));
+        assertEquals(63, big.bitOf("Раздел 69"));
+        assertEquals(62, big.bitOf("Раздел 62"));
+    }
+}
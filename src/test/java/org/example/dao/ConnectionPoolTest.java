@@ -0,0 +1,97 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест пула соединений. БД не нужна — физические соединения подменяются заглушками.
+ */
+class ConnectionPoolTest {
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private Connection fakeConnection() {
+        boolean[] isClosed = {false};
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "close" -> {
+                        if (!isClosed[0]) {
+                            isClosed[0] = true;
+                            closed.incrementAndGet();
+                        }
+                        yield null;
+                    }
+                    case "isClosed" -> isClosed[0];
+                    case "isValid", "getAutoCommit" -> true;
+                    case "isReadOnly" -> false;
+                    default -> null;
+                });
+    }
+
+    private ConnectionPool newPool(int max, Duration acquireTimeout) {
+        return new ConnectionPool(() -> {
+            opened.incrementAndGet();
+            return fakeConnection();
+        }, 0, max, acquireTimeout, Duration.ofMinutes(5), Duration.ZERO);
+    }
+
+    @Test
+    void shouldReuseReturnedConnection() throws SQLException {
+        try (ConnectionPool pool = newPool(2, Duration.ofSeconds(1))) {
+            pool.borrow().close();
+            pool.borrow().close();
+            pool.borrow().close();
+
+            assertEquals(1, opened.get(), "Physical connection should be reused");
+            assertEquals(0, pool.getActiveCount());
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void shouldTimeOutWhenPoolIsExhausted() throws SQLException {
+        try (ConnectionPool pool = newPool(1, Duration.ofMillis(100))) {
+            Connection held = pool.borrow();
+            assertThrows(SQLTimeoutException.class, pool::borrow);
+            held.close();
+            assertDoesNotThrow(() -> pool.borrow().close());
+        }
+    }
+
+    @Test
+    void shouldRejectUseOfReturnedHandle() throws SQLException {
+        try (ConnectionPool pool = newPool(1, Duration.ofSeconds(1))) {
+            Connection conn = pool.borrow();
+            conn.close();
+            conn.close(); // повторное закрытие безопасно
+            assertTrue(conn.isClosed());
+            assertThrows(SQLException.class, conn::createStatement);
+            assertEquals(0, pool.getActiveCount());
+        }
+    }
+
+    @Test
+    void shouldCloseAllConnectionsOnShutdown() throws SQLException {
+        ConnectionPool pool = newPool(3, Duration.ofSeconds(1));
+        Connection a = pool.borrow();
+        Connection b = pool.borrow();
+        a.close();
+
+        pool.close(Duration.ofMillis(100));
+
+        assertEquals(2, closed.get(), "Idle and still-borrowed connections should be closed");
+        assertThrows(SQLException.class, pool::borrow);
+        b.close(); // возврат после закрытия пула не должен падать
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест исполнителя фоновых задач (без БД).
+ */
+class DaoExecutorTest {
+
+    @Test
+    void shouldLimitConcurrentTasks() throws Exception {
+        DaoExecutor executor = new DaoExecutor(2, Duration.ZERO);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int n = i;
+            futures.add(executor.submit("task", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(10);
+                running.decrementAndGet();
+                return n;
+            }));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(maxRunning.get() <= 2, "No more than 2 tasks should run at once");
+        executor.shutdown(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldInterruptTaskOnTimeout() throws Exception {
+        DaoExecutor executor = new DaoExecutor(1, Duration.ZERO);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        CompletableFuture<String> future = executor.submit("slow", () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+            return "late";
+        }, Duration.ofMillis(100));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "Task thread should be interrupted");
+
+        // Место освободилось — следующая задача выполняется
+        assertEquals("next", executor.submit("next", () -> "next").get(5, TimeUnit.SECONDS));
+        executor.shutdown(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldRejectTasksAfterShutdown() {
+        DaoExecutor executor = new DaoExecutor(1, Duration.ZERO);
+        executor.shutdown(Duration.ofMillis(100));
+        assertTrue(executor.submit("late", () -> 1).isCompletedExceptionally());
+    }
+}
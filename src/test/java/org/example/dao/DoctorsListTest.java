@@ -0,0 +1,47 @@
+package org.example.dao;
+
+import org.example.model.MedicalAccount;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест разбора doctors_list (без БД).
+ */
+class DoctorsListTest {
+
+    @Test
+    void parsesAllDoctorsInOrder() {
+        assertArrayEquals(new int[]{34}, DoctorsList.parse(",34,"));
+        assertArrayEquals(new int[]{34, 57}, DoctorsList.parse(",34,57,"));
+        assertArrayEquals(new int[]{7, 12}, DoctorsList.parse(" 7 , 12"));
+    }
+
+    @Test
+    void emptyAndNullGiveNoDoctors() {
+        assertSame(MedicalAccount.NO_DOCTORS, DoctorsList.parse(null));
+        assertSame(MedicalAccount.NO_DOCTORS, DoctorsList.parse(""));
+        assertSame(MedicalAccount.NO_DOCTORS, DoctorsList.parse(",,"));
+        assertEquals(-1, DoctorsList.first(null));
+        assertEquals(-1, DoctorsList.first(" , "));
+    }
+
+    @Test
+    void skipsMalformedTokens() {
+        assertArrayEquals(new int[]{5}, DoctorsList.parse(",a1,-3,5,"));
+        assertArrayEquals(new int[]{9}, DoctorsList.parse(",99999999999,9,"));
+        assertArrayEquals(new int[]{2147483647}, DoctorsList.parse("2147483647"));
+        assertEquals(5, DoctorsList.first(",x,5,6"));
+    }
+
+    @Test
+    void forEachVisitsSameIdsAsParse() {
+        List<Integer> ids = new ArrayList<>();
+        DoctorsList.forEach(",1, 2 ,bad,3,", ids::add);
+        assertEquals(List.of(1, 2, 3), ids);
+        assertEquals(3, DoctorsList.count(",1, 2 ,bad,3,"));
+    }
+}
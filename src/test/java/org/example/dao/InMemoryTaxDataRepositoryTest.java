@@ -0,0 +1,112 @@
+package org.example.dao;
+
+import org.example.dao.AccountDao.ChangeStamp;
+import org.example.dao.AccountDao.PatientTotals;
+import org.example.model.MedicalAccount;
+import org.example.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест генератора клиники и хранилища в памяти (без БД).
+ */
+class InMemoryTaxDataRepositoryTest {
+
+    private static final LocalDate FROM = LocalDate.of(2024, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2024, 12, 31);
+
+    private static InMemoryTaxDataRepository generate(long seed) {
+        ClinicDataGenerator.Options options = new ClinicDataGenerator.Options();
+        options.setSeed(seed);
+        options.setPatients(500);
+        options.setAccounts(5_000);
+        options.setLastYear(2025);
+        options.setYears(2);
+        return new ClinicDataGenerator(options).generate();
+    }
+
+    @Test
+    void shouldGenerateSameClinicForSameSeed() throws Exception {
+        InMemoryTaxDataRepository a = generate(7);
+        InMemoryTaxDataRepository b = generate(7);
+
+        assertEquals(500, a.patientCount());
+        assertEquals(5_000, a.accountCount());
+        assertEquals(a.loadStaff(), b.loadStaff());
+        assertEquals(a.findPatientTotalsForTaxReport(0, FROM, TO, null),
+                b.findPatientTotalsForTaxReport(0, FROM, TO, null));
+        assertNotEquals(a.findPatientTotalsForTaxReport(0, FROM, TO, null),
+                generate(8).findPatientTotalsForTaxReport(0, FROM, TO, null));
+    }
+
+    @Test
+    void shouldFilterAccountsLikeTaxReportQuery() throws Exception {
+        InMemoryTaxDataRepository repo = generate(1);
+
+        List<MedicalAccount> all = new ArrayList<>();
+        try (Stream<MedicalAccount> accounts = repo.streamAccountsByPatient(0, FROM, TO, null, 0)) {
+            accounts.forEach(all::add);
+        }
+        assertFalse(all.isEmpty());
+        for (MedicalAccount acc : all) {
+            assertTrue(acc.getAmountPaid().signum() > 0);
+            assertFalse(acc.getDateCreated().isBefore(FROM) || acc.getDateCreated().isAfter(TO));
+            assertTrue(acc.getDoctorIds().length > 0);
+            assertFalse(acc.getDoctorName().isEmpty());
+        }
+
+        // Выборка по пациенту — те же счета, что в общем потоке, от новых к старым
+        int patientId = all.get(0).getPatientId();
+        List<MedicalAccount> own = repo.findAccountsForTaxReport(0, FROM, TO, patientId);
+        assertEquals(all.stream().filter(a -> a.getPatientId() == patientId).count(), own.size());
+        for (int i = 1; i < own.size(); i++) {
+            assertFalse(own.get(i).getDateCreated().isAfter(own.get(i - 1).getDateCreated()));
+        }
+
+        int practiceId = all.get(0).getPracticeId();
+        assertTrue(repo.findAccountsForTaxReport(practiceId, FROM, TO, null).stream()
+                .allMatch(a -> a.getPracticeId() == practiceId));
+    }
+
+    @Test
+    void shouldAggregateTotalsAndStampConsistently() throws Exception {
+        InMemoryTaxDataRepository repo = generate(3);
+
+        List<PatientTotals> totals = repo.findPatientTotalsForTaxReport(0, FROM, TO, null);
+        long accounts = totals.stream().mapToLong(PatientTotals::accountCount).sum();
+        assertEquals(repo.findAccountsForTaxReport(0, FROM, TO, null).size(), accounts);
+
+        PatientTotals first = totals.get(0);
+        long paid = repo.findAccountsForTaxReport(0, FROM, TO, first.patientId()).stream()
+                .mapToLong(a -> a.getAmountPaid().movePointRight(2).longValueExact())
+                .sum();
+        assertEquals(first.amountPaidKopecks(), paid);
+
+        // Отметка считает и неоплаченные счета
+        ChangeStamp stamp = repo.findChangeStamp(0, FROM, TO, null, null);
+        assertTrue(stamp.rowCount() >= accounts);
+        assertNotNull(stamp.maxUpdate());
+        assertNull(repo.findChangeStamp(0, FROM, TO, -1, null).maxUpdate());
+    }
+
+    @Test
+    void shouldFindPatientsByCardNumberAndName() throws Exception {
+        InMemoryTaxDataRepository repo = generate(5);
+        Patient any = repo.findPatientsByQuery(0, "ов").get(0);
+
+        List<Patient> byCard = repo.findPatientsByQuery(0, any.getCardNumber());
+        assertTrue(byCard.stream().anyMatch(p -> p.getId() == any.getId()));
+
+        String part = any.getSurname().substring(0, 3).toLowerCase();
+        assertTrue(repo.findPatientsByQuery(0, part).stream().allMatch(p ->
+                p.getSurname().toLowerCase().contains(part)
+                        || p.getFirstname().toLowerCase().contains(part)
+                        || p.getMiddlename().toLowerCase().contains(part)));
+    }
+}
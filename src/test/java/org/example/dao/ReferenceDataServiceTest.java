@@ -0,0 +1,98 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест сервиса справочников (без БД).
+ */
+class ReferenceDataServiceTest {
+
+    private static final StaffDirectory NO_STAFF = new StaffDirectory(Map::of, Duration.ofMinutes(15));
+
+    @Test
+    void shouldCoalesceConcurrentLoadsIntoOneQuery() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ReferenceDataService service = new ReferenceDataService(
+                () -> CategoryDictionary.of(Map.of(1, "Терапия")),
+                () -> {
+                    queries.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                    return Map.of("Центральная", 1);
+                },
+                NO_STAFF);
+
+        List<Thread> threads = new ArrayList<>();
+        List<Map<String, Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(Thread.startVirtualThread(() -> {
+                try {
+                    Map<String, Integer> practices = service.practices();
+                    synchronized (results) {
+                        results.add(practices);
+                    }
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        Thread.sleep(100); // все потоки успели встать в ожидание
+        release.countDown();
+        for (Thread t : threads) {
+            t.join(5_000);
+        }
+
+        assertEquals(1, queries.get());
+        assertEquals(8, results.size());
+        results.forEach(r -> assertSame(results.get(0), r));
+    }
+
+    @Test
+    void shouldServeSnapshotUntilExplicitRefresh() throws Exception {
+        AtomicInteger version = new AtomicInteger();
+        ReferenceDataService service = new ReferenceDataService(
+                () -> CategoryDictionary.of(Map.of(1, "Терапия", 2, "Хирургия " + version.incrementAndGet())),
+                Map::of,
+                NO_STAFF);
+
+        CategoryDictionary first = service.categories();
+        assertSame(first, service.categories());
+        assertTrue(service.categoryNames().contains("Хирургия 1"));
+
+        service.refreshCategories();
+        assertTrue(service.categoryNames().contains("Хирургия 2"));
+        assertEquals(2, service.getLoadCount());
+    }
+
+    @Test
+    void shouldRetryAfterFailedLoad() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        ReferenceDataService service = new ReferenceDataService(
+                () -> CategoryDictionary.of(Map.of()),
+                () -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        throw new SQLException("нет соединения");
+                    }
+                    return Map.of("Северная", 2);
+                },
+                NO_STAFF);
+
+        assertThrows(SQLException.class, service::practices);
+        assertEquals(Map.of("Северная", 2), service.practices());
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест кэша справочника сотрудников (без БД).
+ */
+class StaffDirectoryTest {
+
+    @Test
+    void shouldServeNamesFromSnapshotAndCountHits() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        StaffDirectory directory = new StaffDirectory(() -> {
+            loads.incrementAndGet();
+            return Map.of(57, "Петров П.П.", 34, "Иванов И.И.");
+        }, Duration.ofHours(1));
+
+        directory.refresh();
+
+        String first = directory.findName(34);
+        assertEquals("Иванов И.И.", first);
+        assertSame(first, directory.findName(34), "Cached string should be reused");
+        assertEquals("Петров П.П.", directory.findName(57));
+        assertNull(directory.findName(99));
+
+        assertEquals(1, loads.get());
+        assertEquals(3, directory.getHitCount());
+        assertEquals(1, directory.getMissCount());
+    }
+
+    @Test
+    void shouldKeepOldSnapshotWhenRefreshFails() throws SQLException {
+        AtomicInteger loads = new AtomicInteger();
+        StaffDirectory directory = new StaffDirectory(() -> {
+            if (loads.incrementAndGet() > 1) {
+                throw new SQLException("server busy");
+            }
+            return Map.of(34, "Иванов И.И.");
+        }, Duration.ofHours(1));
+
+        directory.refresh();
+        assertThrows(SQLException.class, directory::refresh);
+
+        assertEquals("Иванов И.И.", directory.findName(34));
+        assertEquals(1, directory.getRefreshCount());
+    }
+
+    @Test
+    void shouldSeedOnlyUntilFirstLoad() throws SQLException {
+        StaffDirectory directory = new StaffDirectory(() -> Map.of(34, "Иванов И.И."), Duration.ofHours(1));
+
+        assertTrue(directory.seed(Map.of(57, "Петров П.П.")));
+        assertEquals("Петров П.П.", directory.findName(57));
+        assertFalse(directory.seed(Map.of(99, "Сидоров С.С.")));
+
+        directory.refresh();
+        assertNull(directory.findName(57));
+        assertEquals("Иванов И.И.", directory.findName(34));
+        assertFalse(directory.seed(Map.of(57, "Петров П.П.")));
+    }
+
+    @Test
+    void shouldQueueSingleReloadWhenStaleSnapshotIsHammered() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        StaffDirectory directory = new StaffDirectory(() -> {
+            if (loads.incrementAndGet() > 1) {
+                try {
+                    release.await(); // второе обновление «висит» на медленном сервере
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+            }
+            return Map.of(34, "Иванов И.И.");
+        }, Duration.ofMillis(50));
+        try {
+            directory.start();
+            await(() -> directory.getRefreshCount() == 1);
+            Thread.sleep(80); // снимок устарел
+
+            for (int i = 0; i < 10_000; i++) {
+                assertEquals("Иванов И.И.", directory.findName(34));
+            }
+            await(() -> loads.get() == 2);
+            release.countDown();
+            await(() -> directory.getRefreshCount() == 2);
+            assertEquals(2, loads.get());
+        } finally {
+            release.countDown();
+            directory.stop();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Не дождались условия");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест JFR-событий SQL-вызовов (без БД).
+ */
+class SqlExecutionEventTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldRecordQueryRowsAndParametersHash() throws Exception {
+        QueryMetrics metrics = QueryMetrics.of("jfrTest");
+        List<Object> params = List.of(42, "Иванов");
+        Path file = dir.resolve("sql.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(SqlExecutionEvent.class).withThreshold(java.time.Duration.ZERO);
+            recording.start();
+
+            QueryMetrics.Sample ok = metrics.start(params);
+            ok.executed();
+            for (int i = 0; i < 3; i++) {
+                ok.mapped(ok.mapStart());
+            }
+            ok.fetched();
+            ok.stop();
+
+            QueryMetrics.Sample failed = metrics.start();
+            failed.failed();
+            failed.stop();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.SqlExecution"))
+                .filter(e -> "jfrTest".equals(e.getString("queryId")))
+                .toList();
+        assertEquals(2, events.size());
+
+        RecordedEvent first = events.get(0);
+        assertEquals(3, first.getLong("rowCount"));
+        assertEquals(params.hashCode(), first.getInt("parametersHash"));
+        assertFalse(first.getBoolean("failed"));
+        assertTrue(events.get(1).getBoolean("failed"));
+    }
+}
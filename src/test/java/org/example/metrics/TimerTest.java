@@ -0,0 +1,54 @@
+package org.example.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест гистограммы длительностей и реестра метрик.
+ */
+class TimerTest {
+
+    @Test
+    void shouldEstimatePercentilesWithinBucket() {
+        Timer timer = new Timer("test");
+        for (int i = 0; i < 90; i++) {
+            timer.record(1_000_000);      // 1 мс
+        }
+        for (int i = 0; i < 10; i++) {
+            timer.record(100_000_000);    // 100 мс
+        }
+
+        assertEquals(100, timer.count());
+        assertEquals(100_000_000, timer.maxNanos());
+        long p50 = timer.percentileNanos(0.5);
+        assertTrue(p50 >= 1_000_000 && p50 <= 2_048_000, "p50 = " + p50);
+        long p95 = timer.percentileNanos(0.95);
+        assertTrue(p95 >= 100_000_000 / 2 && p95 <= 100_000_000, "p95 = " + p95);
+    }
+
+    @Test
+    void shouldReportEmptyTimer() {
+        Timer timer = new Timer("empty");
+        assertEquals(0, timer.percentileNanos(0.95));
+        assertEquals("n=0", timer.summary());
+    }
+
+    @Test
+    void shouldFormatOnlyNonZeroMetricsInLogLine() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.timer("sql.q.total").record(2_000_000);
+        registry.timer("sql.idle.total");
+        registry.counter("sql.q.rows").add(5);
+        registry.counter("sql.q.errors");
+        registry.gauge("pool.active", () -> 3);
+
+        String line = registry.formatLine();
+        assertTrue(line.contains("sql.q.total n=1"), line);
+        assertTrue(line.contains("sql.q.rows 5"), line);
+        assertTrue(line.contains("pool.active 3"), line);
+        assertFalse(line.contains("sql.idle.total"), line);
+        assertFalse(line.contains("errors"), line);
+        assertTrue(registry.format().contains("sql.q.errors: 0"));
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.model;
+
+import javafx.beans.property.BooleanProperty;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест лениво создаваемых FX-свойств счёта (без БД и без запуска FX).
+ */
+class MedicalAccountTest {
+
+    @Test
+    void returnsSamePropertyOnRepeatedCalls() {
+        MedicalAccount acc = new MedicalAccount();
+        assertSame(acc.selectedProperty(), acc.selectedProperty());
+    }
+
+    @Test
+    void togglingPropertyUpdatesField() {
+        MedicalAccount acc = new MedicalAccount();
+        BooleanProperty selected = acc.selectedProperty();
+        assertTrue(acc.isSelected());
+
+        selected.set(false);
+        assertFalse(acc.isSelected());
+        selected.set(true);
+        assertTrue(acc.isSelected());
+    }
+
+    @Test
+    void setterUpdatesExistingProperty() {
+        MedicalAccount acc = new MedicalAccount();
+        BooleanProperty selected = acc.selectedProperty();
+
+        acc.setSelected(false);
+        assertFalse(selected.get());
+        assertFalse(acc.isSelected());
+    }
+
+    @Test
+    void copyDoesNotShareProperties() {
+        MedicalAccount acc = new MedicalAccount();
+        acc.setSelected(false);
+        BooleanProperty original = acc.selectedProperty();
+
+        MedicalAccount copy = acc.copy();
+        assertFalse(copy.isSelected());
+        assertNotSame(original, copy.selectedProperty());
+
+        copy.selectedProperty().set(true);
+        assertTrue(copy.isSelected());
+        assertFalse(acc.isSelected());
+        assertFalse(original.get());
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест денежного типа в копейках (без БД).
+ */
+class MoneyTest {
+
+    @Test
+    void convertsBigDecimalWithHalfUpRounding() {
+        assertEquals(150_000, Money.toKopecks(new BigDecimal("1500")));
+        assertEquals(123_456, Money.toKopecks(new BigDecimal("1234.56")));
+        assertEquals(1, Money.toKopecks(new BigDecimal("0.005")));
+        assertEquals(0, Money.toKopecks(new BigDecimal("0.0049")));
+        assertEquals(-1, Money.toKopecks(new BigDecimal("-0.005")));
+        assertEquals(100_000, Money.toKopecks(new BigDecimal("1E+3")));
+        assertEquals(0, Money.toKopecks(null));
+    }
+
+    @Test
+    void formatsWithoutStringFormat() {
+        assertEquals("1234.50", Money.format(123_450, '.'));
+        assertEquals("0,05", Money.format(5, ','));
+        assertEquals("-0.05", Money.format(-5, '.'));
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE, '.'));
+        assertEquals("12.00", Money.ofRubles(12).toString());
+    }
+
+    @Test
+    void arithmeticIsExactAndDetectsOverflow() {
+        Money sum = Money.of(new BigDecimal("0.10")).plus(Money.of(new BigDecimal("0.20")));
+        assertEquals(Money.ofKopecks(30), sum);
+        assertEquals(new BigDecimal("0.30"), sum.toBigDecimal());
+        assertThrows(ArithmeticException.class, () -> Money.ofKopecks(Long.MAX_VALUE).plus(Money.ofKopecks(1)));
+        assertThrows(ArithmeticException.class, () -> Money.toKopecks(new BigDecimal("1E+30")));
+    }
+}
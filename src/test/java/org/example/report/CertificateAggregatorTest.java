@@ -0,0 +1,74 @@
+package org.example.report;
+
+import org.example.dao.AccountDao.PatientTotals;
+import org.example.dao.CategoryDictionary;
+import org.example.model.MedicalAccount;
+import org.example.model.TaxCertificate;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест годовых сумм по пациенту для справки (без БД).
+ */
+class CertificateAggregatorTest {
+
+    private static MedicalAccount account(int patientId, String paid, long categoryMask) {
+        MedicalAccount acc = new MedicalAccount();
+        acc.setPatientId(patientId);
+        acc.setSurname("Пациент" + patientId);
+        acc.setAmountPaid(paid != null ? new BigDecimal(paid) : null);
+        acc.setCategoryMask(categoryMask);
+        return acc;
+    }
+
+    @Test
+    void shouldGroupSortedAccountsAndSumInKopecks() {
+        List<MedicalAccount> accounts = List.of(
+                account(3, "1000.50", 0),
+                account(3, "99.50", 0),
+                account(3, null, 0),
+                account(7, "0.01", 0));
+        CertificateAggregator aggregator = new CertificateAggregator(2024, 2, CategoryDictionary.ALL);
+
+        List<TaxCertificate> certificates = new ArrayList<>();
+        assertTrue(CertificateAggregator.groupByPatient(accounts.iterator(),
+                group -> certificates.add(aggregator.aggregate(group))));
+
+        assertEquals(2, certificates.size());
+        assertEquals(new BigDecimal("1100.00"), certificates.get(0).getAmount());
+        assertEquals(3, certificates.get(0).getAccountCount());
+        assertEquals(2024, certificates.get(0).getYear());
+        assertEquals(2, certificates.get(0).getProcedureType());
+        assertEquals(new BigDecimal("0.01"), certificates.get(1).getAmount());
+
+        // Остановка на первом пациенте
+        List<Integer> seen = new ArrayList<>();
+        assertFalse(CertificateAggregator.groupByPatient(accounts.iterator(),
+                group -> seen.add(group.get(0).getPatientId()) && false));
+        assertEquals(List.of(3), seen);
+    }
+
+    @Test
+    void shouldApplyCategorySelectionLikeServerTotals() {
+        CertificateAggregator aggregator = new CertificateAggregator(2024, 1, 0b10);
+        assertTrue(aggregator.filtersCategories());
+
+        TaxCertificate cert = aggregator.aggregate(List.of(
+                account(5, "100", 0b01),  // другой раздел
+                account(5, "200", 0b10),
+                account(5, "300", 0)));   // раздел не определён — не отбрасываем
+        assertEquals(new BigDecimal("500.00"), cert.getAmount());
+        assertEquals(2, cert.getAccountCount());
+        assertNull(aggregator.aggregate(List.of(account(6, "100", 0b01))));
+
+        TaxCertificate fromServer = aggregator.fromTotals(
+                new PatientTotals(5, "Пациент5", null, null, null, null, 50_000, 0, 2));
+        assertEquals(cert.getAmount(), fromServer.getAmount());
+        assertEquals(cert.getAccountCount(), fromServer.getAccountCount());
+    }
+}
@@ -0,0 +1,232 @@
+package org.example.report;
+
+import org.example.dao.AccountDao;
+import org.example.dao.CategoryDictionary;
+import org.example.dao.QueryHandle;
+import org.example.dao.StaffDirectory;
+import org.example.model.MedicalAccount;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест конвейера пакетной выгрузки. Счета подставляются без БД.
+ */
+class CertificateBatchJobTest {
+
+    /** DAO-заглушка: отдаёт заранее заданные счета, упорядоченные по пациенту. */
+    private static AccountDao fakeDao(List<MedicalAccount> accounts) {
+        return new AccountDao() {
+            @Override
+            public Stream<MedicalAccount> streamAccountsByPatient(
+                    int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, int fetchSize) {
+                return accounts.stream();
+            }
+        };
+    }
+
+    private static MedicalAccount account(int patientId, String surname, String paid) {
+        MedicalAccount acc = new MedicalAccount();
+        acc.setPatientId(patientId);
+        acc.setSurname(surname);
+        acc.setAmountPaid(new BigDecimal(paid));
+        return acc;
+    }
+
+    private static final CertificateRenderer TEXT_RENDERER = new CertificateRenderer() {
+        @Override
+        public String fileExtension() {
+            return "txt";
+        }
+
+        @Override
+        public byte[] render(TaxCertificate cert, TaxReferenceSettings settings) {
+            return (cert.getPatientId() + ";" + cert.getAmount().toPlainString() + ";" + cert.getAccountCount())
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    };
+
+    @Test
+    void shouldWriteOneCertificatePerPatientWithYearlyTotals() throws Exception {
+        List<MedicalAccount> accounts = new ArrayList<>();
+        accounts.add(account(1, "Иванов", "100.50"));
+        accounts.add(account(1, "Иванов", "200.00"));
+        accounts.add(account(2, "Петров", "50.00"));
+        for (int i = 0; i < 200; i++) {
+            accounts.add(account(100 + i, "Сидоров", "10.00"));
+        }
+
+        Path dir = Files.createTempDirectory("certs");
+        CertificateBatchJob.Options options = new CertificateBatchJob.Options();
+        options.setYear(2024);
+        options.setOutputDir(dir);
+        options.setQueueCapacity(4); // маленькие очереди — проверяем back-pressure
+        options.setRenderThreads(3);
+
+        List<BatchProgress> reports = new ArrayList<>();
+        BatchProgress result = new CertificateBatchJob(
+                fakeDao(accounts), new TaxReferenceSettings(), TEXT_RENDERER, options,
+                p -> { synchronized (reports) { reports.add(p); } }).run();
+
+        assertTrue(result.finished());
+        assertEquals(202, result.patientsFetched());
+        assertEquals(202, result.written());
+        assertEquals(0, result.failed());
+        assertFalse(reports.isEmpty());
+
+        String ivanov = Files.readString(dir.resolve("Справка_Иванов_1_2024.txt"));
+        assertEquals("1;300.50;2", ivanov);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(202, files.count());
+        }
+    }
+
+    @Test
+    void shouldNotCountPatientsWithoutSelectedCategoriesAsAggregated() throws Exception {
+        CategoryDictionary categories = CategoryDictionary.of(Map.of(1, "Терапия", 2, "Ортодонтия"));
+        MedicalAccount therapy = account(1, "Иванов", "100.00");
+        therapy.setCategoryMask(categories.maskOfIds("1"));
+        MedicalAccount orthodontics = account(2, "Петров", "50.00");
+        orthodontics.setCategoryMask(categories.maskOfIds("2"));
+        AccountDao dao = new AccountDao(new StaffDirectory(Map::of, Duration.ofHours(1)), categories) {
+            @Override
+            public Stream<MedicalAccount> streamAccountsByPatient(
+                    int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, int fetchSize) {
+                return Stream.of(therapy, orthodontics);
+            }
+        };
+        TaxReferenceSettings settings = new TaxReferenceSettings();
+        settings.setProcedureCategories(Set.of("Терапия"));
+        CertificateBatchJob.Options options = new CertificateBatchJob.Options();
+        options.setOutputDir(Files.createTempDirectory("certs"));
+
+        BatchProgress result = new CertificateBatchJob(dao, settings, TEXT_RENDERER, options, null).run();
+
+        assertEquals(2, result.patientsFetched());
+        assertEquals(1, result.aggregated());
+        assertEquals(1, result.written());
+        assertEquals(0, result.failed());
+    }
+
+    @Test
+    void shouldCountFailedPatientsAndContinue() throws Exception {
+        List<MedicalAccount> accounts = List.of(
+                account(1, "Иванов", "100.00"),
+                account(2, "Петров", "50.00"),
+                account(3, "Сидоров", "70.00"));
+
+        CertificateRenderer failingForPetrov = new CertificateRenderer() {
+            @Override
+            public String fileExtension() {
+                return "txt";
+            }
+
+            @Override
+            public byte[] render(TaxCertificate cert, TaxReferenceSettings settings) throws IOException {
+                if (cert.getPatientId() == 2) {
+                    throw new IOException("render failed");
+                }
+                return TEXT_RENDERER.render(cert, settings);
+            }
+        };
+
+        CertificateBatchJob.Options options = new CertificateBatchJob.Options();
+        options.setOutputDir(Files.createTempDirectory("certs"));
+
+        BatchProgress result = new CertificateBatchJob(
+                fakeDao(accounts), new TaxReferenceSettings(), failingForPetrov, options, null).run();
+
+        assertEquals(3, result.patientsFetched());
+        assertEquals(2, result.written());
+        assertEquals(1, result.failed());
+    }
+
+    @Test
+    void shouldUseServerTotalsWhenEnabled() throws Exception {
+        AccountDao dao = new AccountDao() {
+            @Override
+            public List<PatientTotals> findPatientTotalsForTaxReport(
+                    int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle) {
+                return List.of(
+                        new PatientTotals(1, "Иванов", "Иван", null, null, null, 30_050, 0, 2),
+                        new PatientTotals(2, "Петров", "Пётр", null, null, null, 5_000, 100, 1));
+            }
+
+            @Override
+            public Stream<MedicalAccount> streamAccountsByPatient(
+                    int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, int fetchSize) {
+                throw new AssertionError("счета не должны читаться построчно");
+            }
+        };
+
+        Path dir = Files.createTempDirectory("certs");
+        CertificateBatchJob.Options options = new CertificateBatchJob.Options();
+        options.setYear(2024);
+        options.setOutputDir(dir);
+        options.setServerAggregation(true);
+
+        BatchProgress result = new CertificateBatchJob(
+                dao, new TaxReferenceSettings(), TEXT_RENDERER, options, null).run();
+
+        assertTrue(result.finished());
+        assertEquals(2, result.written());
+        assertEquals("1;300.50;2", Files.readString(dir.resolve("Справка_Иванов_1_2024.txt")));
+    }
+
+    @Test
+    void shouldCancelServerTotalsQuery() throws Exception {
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        AccountDao dao = new AccountDao() {
+            @Override
+            public List<PatientTotals> findPatientTotalsForTaxReport(
+                    int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+                    throws SQLException {
+                queryStarted.countDown();
+                // «Долгий GROUP BY»: выполняется, пока запрос не отменят
+                while (!handle.isCancelled()) {
+                    Thread.onSpinWait();
+                }
+                throw new SQLException("Запрос отменён");
+            }
+        };
+
+        CertificateBatchJob.Options options = new CertificateBatchJob.Options();
+        options.setOutputDir(Files.createTempDirectory("certs"));
+        options.setServerAggregation(true);
+        CertificateBatchJob job = new CertificateBatchJob(dao, new TaxReferenceSettings(), TEXT_RENDERER, options, null);
+
+        Thread canceller = new Thread(() -> {
+            try {
+                if (queryStarted.await(5, TimeUnit.SECONDS)) {
+                    job.cancel();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        canceller.start();
+        BatchProgress result = job.run();
+        canceller.join();
+
+        assertTrue(job.isCancelled());
+        assertEquals(0, result.written());
+    }
+}
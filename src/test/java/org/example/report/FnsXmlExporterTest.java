@@ -0,0 +1,117 @@
+package org.example.report;
+
+import org.example.dao.AccountDao.PatientTotals;
+import org.example.dao.ClinicDataGenerator;
+import org.example.dao.InMemoryTaxDataRepository;
+import org.example.model.Money;
+import org.example.model.TaxCertificate;
+import org.example.model.TaxReferenceSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест выгрузки справок в XML для ФНС (без БД).
+ */
+class FnsXmlExporterTest {
+
+    @TempDir
+    Path dir;
+
+    private static TaxReferenceSettings settings() {
+        TaxReferenceSettings settings = new TaxReferenceSettings();
+        settings.setClinicName("ООО \"Улыбка\" & партнёры");
+        settings.setInn("7701234567");
+        settings.setKpp("770101001");
+        settings.setTaxOrgCode("7701");
+        settings.setSignerType(2);
+        settings.setDocumentName("Доверенность № 5");
+        return settings;
+    }
+
+    @Test
+    void shouldSplitFilesBySizeAndKeepEveryCertificate() throws Exception {
+        ClinicDataGenerator.Options clinic = new ClinicDataGenerator.Options();
+        clinic.setPatients(300);
+        clinic.setAccounts(3_000);
+        clinic.setLastYear(2024);
+        clinic.setYears(1);
+        InMemoryTaxDataRepository repo = new ClinicDataGenerator(clinic).generate();
+
+        FnsXmlExporter.Options options = new FnsXmlExporter.Options();
+        options.setYear(2024);
+        options.setOutputDir(dir);
+        options.setMaxFileBytes(16 * 1024);
+        FnsXmlExporter.Result result = new FnsXmlExporter(repo, settings(), options).export();
+
+        List<PatientTotals> totals = repo.findPatientTotalsForTaxReport(
+                0, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31), null);
+        assertEquals(totals.size(), result.certificates());
+        assertTrue(result.files().size() > 1);
+
+        long kopecks = 0;
+        long documents = 0;
+        Set<String> numbers = new HashSet<>();
+        for (Path file : result.files()) {
+            assertTrue(Files.size(file) <= options.getMaxFileBytes(), file + " больше лимита");
+            try (InputStream in = Files.newInputStream(file)) {
+                XMLStreamReader xml = XMLInputFactory.newFactory().createXMLStreamReader(in);
+                assertEquals(FnsXmlWriter.ENCODING, xml.getCharacterEncodingScheme());
+                while (xml.hasNext()) {
+                    if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    switch (xml.getLocalName()) {
+                        case "Файл" -> assertEquals(file.getFileName().toString(),
+                                xml.getAttributeValue(null, "ИдФайл") + ".xml");
+                        case "Документ" -> {
+                            documents++;
+                            assertTrue(numbers.add(xml.getAttributeValue(null, "НомСпр")));
+                            assertEquals("7701", xml.getAttributeValue(null, "КодНО"));
+                        }
+                        case "СвОрг" -> assertEquals("ООО \"Улыбка\" & партнёры", xml.getAttributeValue(null, "НаимОрг"));
+                        case "СвПред" -> assertEquals("Доверенность № 5", xml.getAttributeValue(null, "НаимДок"));
+                        case "СумУсл" -> kopecks += Money.toKopecks(new BigDecimal(xml.getAttributeValue(null, "Сумма")));
+                        default -> { }
+                    }
+                }
+            }
+        }
+        assertEquals(result.certificates(), documents);
+        assertEquals(totals.stream().mapToLong(PatientTotals::amountPaidKopecks).sum(), kopecks);
+        try (Stream<Path> list = Files.list(dir)) {
+            assertEquals(result.files().size(), list.count()); // временных файлов не осталось
+        }
+    }
+
+    @Test
+    void shouldDropUnfinishedFileOnClose() throws Exception {
+        TaxCertificate cert = new TaxCertificate();
+        cert.setPatientId(1);
+        cert.setSurname("Иванов");
+        cert.setYear(2024);
+        cert.setAmount(new BigDecimal("100.00"));
+
+        try (FnsXmlWriter writer = new FnsXmlWriter(dir, 1024, settings(), LocalDate.of(2025, 1, 10))) {
+            writer.write(cert);
+            // finish() не вызван — как при ошибке чтения из БД
+        }
+        try (Stream<Path> list = Files.list(dir)) {
+            assertEquals(0, list.count());
+        }
+    }
+}
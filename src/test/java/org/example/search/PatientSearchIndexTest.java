@@ -0,0 +1,92 @@
+package org.example.search;
+
+import org.example.model.Patient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест индекса поиска пациентов (без БД).
+ */
+class PatientSearchIndexTest {
+
+    private PatientSearchIndex index;
+
+    private static Patient patient(int id, String surname, String first, String middle, String card) {
+        Patient p = new Patient();
+        p.setId(id);
+        p.setSurname(surname);
+        p.setFirstname(first);
+        p.setMiddlename(middle);
+        p.setCardNumber(card);
+        return p;
+    }
+
+    @BeforeEach
+    void setUp() {
+        index = new PatientSearchIndex();
+        index.upsert(patient(1, "Иванов", "Пётр", "Сергеевич", "405шR"), 1);
+        index.upsert(patient(2, "Петров", "Иван", "Иванович", "12"), 1);
+        index.upsert(patient(3, "Кадралиева", "Алия", "Маратовна", "777"), 2);
+        index.upsert(patient(4, "Иванова", "Мария", null, "4050вг"), 2);
+    }
+
+    @Test
+    void shouldFindBySubstringOfSurname() {
+        List<Patient> found = index.search(0, "дрАлие", 10);
+        assertEquals(1, found.size());
+        assertEquals(3, found.get(0).getId());
+    }
+
+    @Test
+    void shouldRankSurnameMatchesFirst() {
+        List<Patient> found = index.search(0, "иван", 10);
+        assertEquals(3, found.size());
+        // Фамилия весит больше имени и отчества
+        assertNotEquals(2, found.get(0).getId());
+        assertEquals(2, found.get(2).getId());
+    }
+
+    @Test
+    void shouldMatchAllWordsInAnyOrderAndIgnoreYo() {
+        List<Patient> found = index.search(0, "петр иванов", 10);
+        assertEquals(2, found.size());
+        assertEquals(1, found.get(0).getId(), "Surname Иванов + name Пётр should rank first");
+    }
+
+    @Test
+    void shouldFindByExactCardNumber() {
+        List<Patient> found = index.search(0, "405шr", 10);
+        assertEquals(1, found.get(0).getId());
+        assertEquals(1, index.search(0, "12", 10).size());
+    }
+
+    @Test
+    void shouldFilterByPractice() {
+        assertEquals(2, index.search(1, "иванов", 10).size()); // Иванов и Петров Иван Иванович
+        List<Patient> second = index.search(2, "иванов", 10);
+        assertEquals(1, second.size());
+        assertEquals(4, second.get(0).getId());
+    }
+
+    @Test
+    void shouldReflectIncrementalUpdates() {
+        index.upsert(patient(3, "Смирнова", "Алия", "Маратовна", "777"), 1);
+        assertTrue(index.search(0, "кадралиева", 10).isEmpty());
+        assertEquals(3, index.search(1, "смирн", 10).get(0).getId());
+        assertEquals(3, index.search(2, "смирн", 10).get(0).getId(), "Known practices are kept");
+
+        index.remove(3);
+        assertTrue(index.search(0, "смирн", 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void shouldMatchShortPrefixOnly() {
+        assertEquals(4, index.search(0, "и", 10).size() + index.search(0, "ка", 10).size());
+        assertTrue(index.search(0, "ов", 10).isEmpty(), "Two-letter tokens match word starts only");
+    }
+}
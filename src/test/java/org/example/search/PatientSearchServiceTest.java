@@ -0,0 +1,84 @@
+package org.example.search;
+
+import org.example.dao.InMemoryTaxDataRepository;
+import org.example.dao.TaxDataRepository;
+import org.example.model.Patient;
+import org.example.store.SnapshotStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест обновления индекса пациентов (без БД).
+ */
+class PatientSearchServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 3, 1, 10, 0);
+
+    @TempDir
+    Path dir;
+
+    private static Patient patient(int id, String surname, String card) {
+        Patient p = new Patient();
+        p.setId(id);
+        p.setSurname(surname);
+        p.setFirstname("Иван");
+        p.setCardNumber(card);
+        return p;
+    }
+
+    private static InMemoryTaxDataRepository repository(String surname) {
+        return new InMemoryTaxDataRepository.Builder()
+                .addPatient(patient(1, surname, "101"))
+                .addAccount(1, 1, 1, LocalDate.of(2025, 3, 1), 100_00, 0, 100_00, T0, ",1,", null)
+                .build();
+    }
+
+    /** Репозиторий, чьи данные можно подменить между обновлениями. */
+    private static TaxDataRepository switchable(AtomicReference<TaxDataRepository> target) {
+        return (TaxDataRepository) Proxy.newProxyInstance(TaxDataRepository.class.getClassLoader(),
+                new Class<?>[]{TaxDataRepository.class}, (proxy, method, args) -> {
+                    try {
+                        return method.invoke(target.get(), args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Test
+    void shouldPickUpRenameOnPeriodicFullReload() throws Exception {
+        AtomicReference<TaxDataRepository> db = new AtomicReference<>(repository("Иванов"));
+        PatientSearchService service = new PatientSearchService(
+                switchable(db), null, Duration.ofMinutes(5), Duration.ZERO);
+        service.refresh();
+        assertEquals(1, service.search(0, "Иванов", 10).size());
+
+        // Переименование не меняет счёт — дельта его не увидит, только полная перезагрузка
+        db.set(repository("Петров"));
+        service.refresh();
+        assertTrue(service.search(0, "Иванов", 10).isEmpty());
+        assertEquals(1, service.search(0, "Петров", 10).size());
+    }
+
+    @Test
+    void shouldReloadRestoredIndexOnFirstRefresh() throws Exception {
+        SnapshotStore store = new SnapshotStore(dir);
+        new PatientSearchService(repository("Иванов"), store, Duration.ofMinutes(5), Duration.ofHours(6)).refresh();
+
+        PatientSearchService restarted = new PatientSearchService(
+                repository("Петров"), store, Duration.ofMinutes(5), Duration.ofHours(6));
+        restarted.refresh();
+        assertTrue(restarted.search(0, "Иванов", 10).isEmpty());
+        assertEquals(1, restarted.search(0, "Петров", 10).size());
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.store;
+
+import org.example.dao.AccountDao.AccountChange;
+import org.example.dao.AccountDao.PatientActivity;
+import org.example.model.MedicalAccount;
+import org.example.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест локальной копии на диске (без БД).
+ */
+class SnapshotStoreTest {
+
+    private static final LocalDate WINDOW = LocalDate.of(2023, 1, 1);
+
+    @TempDir
+    Path dir;
+
+    private static AccountChange change(int id, String paid, LocalDateTime updatedAt) {
+        MedicalAccount acc = new MedicalAccount();
+        acc.setId(id);
+        acc.setPatientId(10);
+        acc.setPracticeId(2);
+        acc.setNumber(String.valueOf(id));
+        acc.setDateCreated(LocalDate.of(2024, 3, 1));
+        acc.setTotal(new BigDecimal("1500.50"));
+        acc.setRebate(null);
+        acc.setAmountPaid(new BigDecimal(paid));
+        acc.setSurname("Иванов");
+        acc.setFirstname("Пётр");
+        acc.setDoctorName("Петров И.И., Сидоров А.А.");
+        acc.setDoctorIds(new int[]{3, 7});
+        acc.setCategory("Терапия");
+        acc.setCategoryIds("3,17");
+        acc.setCategoryMask(5L);
+        return new AccountChange(acc, updatedAt);
+    }
+
+    private static List<AccountChange> readAll(SnapshotStore store) throws IOException {
+        List<AccountChange> result = new ArrayList<>();
+        assertEquals(WINDOW, store.readAccounts(result::add));
+        return result;
+    }
+
+    @Test
+    void shouldRoundTripAccountsAndAppendChanges() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir);
+        LocalDateTime t1 = LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_000_000);
+        store.replaceAccounts(WINDOW, List.of(change(1, "1500.50", t1)));
+        store.appendAccounts(List.of(change(1, "0", t1.plusMinutes(5)), change(2, "100", t1.plusMinutes(6))));
+
+        List<AccountChange> rows = readAll(new SnapshotStore(dir));
+        assertEquals(3, rows.size());
+        MedicalAccount first = rows.get(0).account();
+        assertEquals(new BigDecimal("1500.50"), first.getTotal());
+        assertNull(first.getRebate());
+        assertArrayEquals(new int[]{3, 7}, first.getDoctorIds());
+        assertEquals("Петров И.И., Сидоров А.А.", first.getDoctorName());
+        assertEquals("3,17", first.getCategoryIds());
+        assertEquals(0L, first.getCategoryMask()); // биты зависят от словаря — их пересчитывает читающий
+        assertEquals(t1, rows.get(0).updatedAt());
+        assertEquals(0, rows.get(1).account().getAmountPaid().signum());
+    }
+
+    @Test
+    void shouldDropTornTailAndKeepAppending() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir);
+        LocalDateTime t = LocalDateTime.of(2024, 3, 1, 10, 0);
+        store.replaceAccounts(WINDOW, List.of(change(1, "100", t), change(2, "200", t)));
+        // обрыв записи: длина есть, данных нет
+        Files.write(dir.resolve("accounts.seg"), new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        assertEquals(2, readAll(store).size());
+
+        store.appendAccounts(List.of(change(3, "300", t)));
+        assertEquals(List.of(1, 2, 3), readAll(store).stream().map(c -> c.account().getId()).toList());
+    }
+
+    @Test
+    void shouldKeepReferenceDataAndPatients() throws IOException {
+        SnapshotStore store = new SnapshotStore(dir);
+        assertTrue(store.readPractices().isEmpty());
+        assertNull(store.readAccounts(c -> fail("копии ещё нет")));
+
+        Map<String, Integer> practices = new LinkedHashMap<>();
+        practices.put("Центральная", 1);
+        practices.put("Северная", 2);
+        store.replacePractices(practices);
+        store.replaceStaff(Map.of(3, "Петров И.И."));
+        Patient p = new Patient();
+        p.setId(10);
+        p.setSurname("Иванов");
+        p.setCardNumber("405шR");
+        store.replacePatients(List.of(new PatientActivity(p, 2, null)));
+
+        assertEquals(List.of("Центральная", "Северная"), List.copyOf(store.readPractices().keySet()));
+        assertEquals(practices, store.readPractices());
+        assertEquals(Map.of(3, "Петров И.И."), store.readStaff());
+        List<PatientActivity> patients = new ArrayList<>();
+        store.readPatients(patients::add);
+        assertEquals("405шR", patients.get(0).patient().getCardNumber());
+        assertEquals(2, patients.get(0).practiceId());
+    }
+}
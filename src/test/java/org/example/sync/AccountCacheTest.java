@@ -0,0 +1,80 @@
+package org.example.sync;
+
+import org.example.model.MedicalAccount;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест локального кэша счетов (без БД).
+ */
+class AccountCacheTest {
+
+    private static final LocalDate YEAR_START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate YEAR_END = LocalDate.of(2024, 12, 31);
+
+    private static MedicalAccount account(int id, int patientId, int practiceId, LocalDate created, String paid) {
+        MedicalAccount acc = new MedicalAccount();
+        acc.setId(id);
+        acc.setPatientId(patientId);
+        acc.setPracticeId(practiceId);
+        acc.setDateCreated(created);
+        acc.setAmountPaid(new BigDecimal(paid));
+        return acc;
+    }
+
+    @Test
+    void shouldFilterByPatientPracticeAndPeriodNewestFirst() {
+        AccountCache cache = new AccountCache();
+        cache.apply(account(1, 10, 1, LocalDate.of(2024, 3, 1), "100"), null);
+        cache.apply(account(2, 10, 2, LocalDate.of(2024, 5, 1), "200"), null);
+        cache.apply(account(3, 10, 1, LocalDate.of(2023, 12, 31), "300"), null);
+        cache.apply(account(4, 11, 1, LocalDate.of(2024, 6, 1), "400"), null);
+
+        List<MedicalAccount> all = cache.find(0, YEAR_START, YEAR_END, 10);
+        assertEquals(List.of(2, 1), all.stream().map(MedicalAccount::getId).toList());
+
+        List<MedicalAccount> practice = cache.find(1, YEAR_START, YEAR_END, null);
+        assertEquals(List.of(4, 1), practice.stream().map(MedicalAccount::getId).toList());
+    }
+
+    @Test
+    void shouldReplaceAndRemoveOnUpdate() {
+        AccountCache cache = new AccountCache();
+        cache.apply(account(1, 10, 1, LocalDate.of(2024, 3, 1), "100"), null);
+        cache.apply(account(1, 12, 1, LocalDate.of(2024, 3, 1), "150"), null); // счёт перенесли на другого пациента
+
+        assertTrue(cache.find(0, YEAR_START, YEAR_END, 10).isEmpty());
+        assertEquals(new BigDecimal("150"), cache.find(0, YEAR_START, YEAR_END, 12).get(0).getAmountPaid());
+
+        cache.apply(account(1, 12, 1, LocalDate.of(2024, 3, 1), "0"), null); // оплату отменили
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldAdvanceWatermarkOnlyForward() {
+        AccountCache cache = new AccountCache();
+        assertNull(cache.watermark());
+
+        LocalDateTime later = LocalDateTime.of(2024, 6, 1, 12, 0);
+        cache.apply(account(1, 10, 1, LocalDate.of(2024, 3, 1), "100"), later);
+        cache.apply(account(2, 10, 1, LocalDate.of(2024, 3, 2), "100"), later.minusHours(1));
+
+        assertEquals(later, cache.watermark());
+    }
+
+    @Test
+    void shouldReturnCopies() {
+        AccountCache cache = new AccountCache();
+        cache.apply(account(1, 10, 1, LocalDate.of(2024, 3, 1), "100"), null);
+
+        cache.find(0, YEAR_START, YEAR_END, 10).get(0).setSelected(false);
+
+        assertTrue(cache.find(0, YEAR_START, YEAR_END, 10).get(0).isSelected());
+    }
+}
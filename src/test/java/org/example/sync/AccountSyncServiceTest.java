@@ -0,0 +1,166 @@
+package org.example.sync;
+
+import org.example.dao.AccountDao.AccountChange;
+import org.example.dao.InMemoryTaxDataRepository;
+import org.example.dao.StaffDirectory;
+import org.example.dao.TaxDataRepository;
+import org.example.model.MedicalAccount;
+import org.example.store.SnapshotStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест синхронизации кэша счетов и его локальной копии (без БД).
+ */
+class AccountSyncServiceTest {
+
+    private static final int YEAR = LocalDate.now().getYear();
+    private static final LocalDateTime T0 = LocalDateTime.of(YEAR, 1, 15, 10, 0);
+
+    @TempDir
+    Path dir;
+
+    /** Репозиторий с оплаченными счетами пациента 10; {@code updatedAt[i]} — отметка счёта i + 1. */
+    private static InMemoryTaxDataRepository repository(LocalDateTime... updatedAt) {
+        InMemoryTaxDataRepository.Builder b = new InMemoryTaxDataRepository.Builder();
+        for (int i = 0; i < updatedAt.length; i++) {
+            b.addAccount(i + 1, 10, 1, LocalDate.of(YEAR, 1, 15), 100_00, 0, 100_00, updatedAt[i], ",3,", null);
+        }
+        return b.build();
+    }
+
+    /** Репозиторий, который между синхронизациями можно подменить (или сделать недоступным). */
+    private static TaxDataRepository switchable(AtomicReference<TaxDataRepository> target) {
+        return (TaxDataRepository) Proxy.newProxyInstance(TaxDataRepository.class.getClassLoader(),
+                new Class<?>[]{TaxDataRepository.class}, (proxy, method, args) -> {
+                    TaxDataRepository current = target.get();
+                    if (current == null) {
+                        throw new SQLException("нет соединения");
+                    }
+                    try {
+                        return method.invoke(current, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static int storedRecords(SnapshotStore store) throws Exception {
+        int[] count = {0};
+        store.readAccounts(change -> count[0]++);
+        return count[0];
+    }
+
+    private static List<Integer> cachedIds(AccountSyncService sync) throws Exception {
+        return sync.findAccountsForTaxReport(0, LocalDate.of(YEAR, 1, 1), LocalDate.of(YEAR, 12, 31), null, null)
+                .stream().map(MedicalAccount::getId).sorted().toList();
+    }
+
+    @Test
+    void shouldAppendOnlyRowsNewerThanWatermark() throws Exception {
+        AtomicReference<TaxDataRepository> db = new AtomicReference<>(repository(T0));
+        SnapshotStore store = new SnapshotStore(dir);
+        AccountSyncService sync = new AccountSyncService(switchable(db), store, null, 1,
+                Duration.ofMinutes(1), Duration.ofHours(6));
+        sync.sync();
+        assertEquals(1, storedRecords(store));
+
+        // Новый счёт двумя секундами позже: прежний попадает в перекрытие и читается снова
+        db.set(repository(T0, T0.plusSeconds(2)));
+        sync.sync();
+        assertEquals(List.of(1, 2), cachedIds(sync));
+        assertEquals(T0.plusSeconds(2), sync.watermark());
+        assertEquals(2, storedRecords(store));
+
+        // Без изменений копия не растёт, хотя последний счёт снова в перекрытии
+        sync.sync();
+        assertEquals(2, storedRecords(store));
+    }
+
+    @Test
+    void shouldReloadEverythingAfterFailedDelta() throws Exception {
+        AtomicReference<TaxDataRepository> db = new AtomicReference<>(repository(T0, T0));
+        AccountSyncService sync = new AccountSyncService(switchable(db), 1, Duration.ofMinutes(1), Duration.ofHours(6));
+        sync.sync();
+        assertEquals(List.of(1, 2), cachedIds(sync));
+
+        db.set(null);
+        assertThrows(SQLException.class, sync::sync);
+
+        // Счёт 2 удалили в D4W: догрузка удаление не видит, полная перезагрузка — видит
+        db.set(repository(T0));
+        sync.sync();
+        assertEquals(List.of(1), cachedIds(sync));
+    }
+
+    @Test
+    void shouldReloadWhenWindowRolledOverSinceCopyWasSaved() throws Exception {
+        MedicalAccount old = new MedicalAccount();
+        old.setId(7);
+        old.setPatientId(10);
+        old.setPracticeId(1);
+        old.setDateCreated(LocalDate.of(YEAR - 1, 6, 1));
+        old.setAmountPaid(new BigDecimal("50.00"));
+        SnapshotStore store = new SnapshotStore(dir);
+        // Копия записана в прошлом году — её окно начинается на год раньше нынешнего
+        store.replaceAccounts(LocalDate.of(YEAR - 1, 1, 1),
+                List.of(new AccountChange(old, LocalDateTime.of(YEAR - 1, 6, 1, 9, 0))));
+
+        AccountSyncService sync = new AccountSyncService(repository(T0), store, null, 1,
+                Duration.ofMinutes(1), Duration.ofHours(6));
+        sync.sync();
+
+        assertFalse(sync.covers(LocalDate.of(YEAR - 1, 1, 1)));
+        assertTrue(sync.covers(LocalDate.of(YEAR, 1, 1)));
+        assertEquals(List.of(1), cachedIds(sync));
+        assertEquals(LocalDate.of(YEAR, 1, 1), store.readAccounts(change -> { }));
+    }
+
+    @Test
+    void shouldRecomputeCategoryMasksWithCurrentDictionaryOnRestore() throws Exception {
+        int year = LocalDate.now().getYear();
+        MedicalAccount acc = new MedicalAccount();
+        acc.setId(1);
+        acc.setPatientId(10);
+        acc.setPracticeId(1);
+        acc.setDateCreated(LocalDate.of(year, 1, 15));
+        acc.setAmountPaid(new BigDecimal("100.00"));
+        acc.setCategoryIds("1");
+        acc.setCategoryMask(1L); // бит «Терапии» в словаре, с которым копия записана
+        SnapshotStore store = new SnapshotStore(dir);
+        store.replaceAccounts(LocalDate.of(year, 1, 1),
+                List.of(new AccountChange(acc, LocalDateTime.of(year, 1, 15, 10, 0))));
+        store.replaceStaff(Map.of(3, "Петров И.И."));
+
+        // С тех пор в D4W добавили раздел, который по алфавиту идёт раньше: «Терапия» сдвинулась на бит 1
+        InMemoryTaxDataRepository repository = new InMemoryTaxDataRepository.Builder()
+                .addCategory(1, "Терапия")
+                .addCategory(2, "Имплантация")
+                .build();
+        StaffDirectory staff = new StaffDirectory(Map::of, Duration.ofMinutes(15));
+        AccountSyncService sync = new AccountSyncService(repository, store, staff, 1, Duration.ofHours(1), Duration.ofHours(6));
+        sync.sync();
+        assertEquals("Петров И.И.", staff.findName(3)); // сотрудники — в переданный справочник, а не в общий
+
+        List<MedicalAccount> restored = sync.findAccountsForTaxReport(
+                0, LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), 10, null);
+        assertEquals(1, restored.size());
+        long therapy = repository.categoryDictionary().selectionMask(List.of("Терапия"));
+        assertEquals(therapy, restored.get(0).getCategoryMask());
+        assertEquals("Терапия", restored.get(0).getCategory());
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.sync;
+
+import org.example.dao.AccountDao;
+import org.example.dao.AsyncDao;
+import org.example.dao.CategoryDictionary;
+import org.example.dao.DaoExecutor;
+import org.example.dao.QueryHandle;
+import org.example.dao.ReferenceDataService;
+import org.example.dao.StaffDirectory;
+import org.example.model.MedicalAccount;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Модульный тест упреждающей загрузки платежей (без БД). Кэш синхронизации не загружен,
+ * если тест не загрузил его сам, поэтому годы «холодные» и идут в DAO.
+ */
+class PaymentPrefetcherTest {
+
+    private static final int YEAR = 2020;
+
+    private final DaoExecutor executor = new DaoExecutor(2, Duration.ZERO);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final BlockingQueue<Integer> started = new LinkedBlockingQueue<>();
+    private final Map<Integer, QueryHandle> handles = new ConcurrentHashMap<>();
+
+    /** DAO-заглушка: запрос счетов ждёт {@link #release} или отмены. */
+    private final AccountDao dao = new AccountDao() {
+        @Override
+        public ChangeStamp findChangeStamp(
+                int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle) {
+            return new ChangeStamp(null, 0);
+        }
+
+        @Override
+        public List<MedicalAccount> findAccountsForTaxReport(
+                int practiceId, LocalDate startDate, LocalDate endDate, Integer patientId, QueryHandle handle)
+                throws SQLException {
+            loads.incrementAndGet();
+            handles.put(patientId, handle);
+            started.add(patientId);
+            try {
+                while (!release.await(10, TimeUnit.MILLISECONDS)) {
+                    if (handle.isCancelled()) {
+                        throw new SQLException("Запрос отменён");
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            MedicalAccount acc = new MedicalAccount();
+            acc.setPatientId(patientId);
+            acc.setAmountPaid(new BigDecimal("100.00"));
+            return List.of(acc);
+        }
+
+        @Override
+        public void forEachAccountChange(LocalDate createdFrom, LocalDateTime changedSince, Consumer<AccountChange> consumer) {
+            // в окне кэша счетов нет
+        }
+    };
+
+    private final AccountSyncService syncService = new AccountSyncService(dao, 1, Duration.ofHours(1), Duration.ofHours(6));
+    private final PaymentPrefetcher prefetcher = new PaymentPrefetcher(
+            new AsyncDao(dao, new ReferenceDataService(() -> CategoryDictionary.of(Map.of()), Map::of,
+                    new StaffDirectory(Map::of, Duration.ofMinutes(15))), executor, 0),
+            syncService, executor);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldHandRunningPrefetchToButton() throws Exception {
+        prefetcher.prefetch(10, YEAR, List.of(YEAR));
+        assertEquals(Integer.valueOf(10), started.poll(5, TimeUnit.SECONDS));
+
+        CompletableFuture<List<MedicalAccount>> shown = prefetcher.load(10, YEAR);
+        release.countDown();
+
+        assertEquals(10, shown.get(5, TimeUnit.SECONDS).get(0).getPatientId());
+        assertEquals(1, loads.get(), "нажатие не должно запускать второй запрос");
+        assertEquals(1, prefetcher.getReusedCount());
+    }
+
+    @Test
+    void shouldCancelPrefetchOfPreviousPatientOnReselect() throws Exception {
+        prefetcher.prefetch(10, YEAR, List.of(YEAR));
+        assertEquals(Integer.valueOf(10), started.poll(5, TimeUnit.SECONDS));
+
+        prefetcher.prefetch(11, YEAR, List.of(YEAR));
+        assertEquals(Integer.valueOf(11), started.poll(5, TimeUnit.SECONDS));
+
+        assertTrue(handles.get(10).isCancelled(), "запрос прежнего пациента должен быть отменён");
+        assertFalse(handles.get(11).isCancelled());
+    }
+
+    @Test
+    void shouldSkipYearsCoveredBySyncCache() throws Exception {
+        syncService.fullResync();
+        int currentYear = LocalDate.now().getYear();
+
+        prefetcher.prefetch(10, currentYear, List.of(currentYear, YEAR));
+        assertEquals(Integer.valueOf(10), started.poll(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals(1, loads.get(), "текущий год уже в кэше, загружается только " + YEAR);
+    }
+}